@@ -4,6 +4,12 @@ import com.example.animales.Client.UsuarioClient;
 import com.example.animales.Client.UsuarioResponse;
 import com.example.animales.model.Animal;
 import com.example.animales.service.AnimalService;
+import com.example.animales.storage.HashesImagen;
+import com.example.animales.storage.ImagenTamano;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -12,6 +18,7 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/animales")
@@ -192,24 +199,74 @@ public class AnimalController {
     // ============================
     // OBTENER IMAGEN
     // ============================
+    // El ETag es el hash del archivo: si el cliente ya lo tiene se responde 304
+    // sin tocar el disco. Con ?v= igual al hash actual y la variante ya generada la
+    // URL no cambia nunca de contenido y se puede cachear como inmutable (si todavía
+    // se sirve la original en su lugar, va con no-cache). El cuerpo sale como Resource,
+    // así Spring atiende Range (206) sin cargar la imagen en memoria.
     @GetMapping(
             value = "/{id}/imagen",
             produces = {
                     MediaType.IMAGE_JPEG_VALUE,
                     MediaType.IMAGE_PNG_VALUE,
-                    MediaType.IMAGE_GIF_VALUE
+                    MediaType.IMAGE_GIF_VALUE,
+                    "image/webp",
+                    MediaType.APPLICATION_OCTET_STREAM_VALUE
             }
     )
-    public ResponseEntity<byte[]> obtenerImagen(@PathVariable Long id) {
-        Animal animal = animalService.obtenerPorId(id);
+    public ResponseEntity<Resource> obtenerImagen(
+            @PathVariable Long id,
+            @RequestParam(value = "size", defaultValue = "full") String size,
+            @RequestParam(value = "v", required = false) String version,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        ImagenTamano tamano;
+        try {
+            tamano = ImagenTamano.desde(size);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        HashesImagen hashes = animalService.obtenerHashesImagen(id);
+        String hash = hashes != null ? hashes.paraTamano(tamano) : null;
+
+        if (hash == null) {
+            return ResponseEntity.notFound().build();
+        }
 
-        if (animal == null || animal.getImagen() == null) {
+        String etag = "\"" + hash + "\"";
+        CacheControl cache = hashes.esVersion(version, tamano)
+                ? CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable()
+                : CacheControl.noCache().cachePublic();
+
+        if (coincideEtag(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cache).build();
+        }
+
+        Resource imagen = animalService.recursoImagen(hash);
+        if (imagen == null) {
             return ResponseEntity.notFound().build();
         }
 
-        return ResponseEntity.ok()
-                .contentType(MediaType.IMAGE_JPEG)
-                .body(animal.getImagen());
+        try {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(animalService.tipoImagen(hash)))
+                    .eTag(etag)
+                    .cacheControl(cache)
+                    .body(imagen);
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    private boolean coincideEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidato : ifNoneMatch.split(",")) {
+            String valor = candidato.trim();
+            if (valor.startsWith("W/")) valor = valor.substring(2);
+            if (valor.equals("*") || valor.equals(etag)) return true;
+        }
+        return false;
     }
 
     // ============================
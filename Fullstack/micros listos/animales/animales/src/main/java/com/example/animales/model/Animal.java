@@ -1,5 +1,7 @@
 package com.example.animales.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
@@ -44,12 +46,38 @@ public class Animal {
     @Schema(description = "Descripción del animal", example = "Perro cariñoso y juguetón")
     private String descripcion;
 
-    @Lob
-    @Column(name = "imagen", columnDefinition = "LONGBLOB")
-    @Schema(description = "Imagen del animal almacenada como BLOB")
-    private byte[] imagen;
+    // Solo lo asigna el servidor al guardar la imagen: un hash enviado por el cliente
+    // podría apuntar a la imagen de otro registro
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(name = "imagen_hash", length = 64)
+    @Schema(description = "Hash SHA-256 de la imagen en el almacén de imágenes", accessMode = Schema.AccessMode.READ_ONLY)
+    private String imagenHash;
 
     @Column(nullable = false)
     @Schema(description = "Estado de adopción", example = "false")
     private Boolean isAdoptado = false;
-}
\ No newline at end of file
+
+    @JsonIgnore
+    @Column(name = "imagen_thumb_hash", length = 64)
+    private String imagenThumbHash;
+
+    @JsonIgnore
+    @Column(name = "imagen_medium_hash", length = 64)
+    private String imagenMediumHash;
+
+    @JsonIgnore
+    @Column(name = "imagen_full_hash", length = 64)
+    private String imagenFullHash;
+
+    @Schema(description = "URL de la imagen del animal", accessMode = Schema.AccessMode.READ_ONLY)
+    public String getImageUrl() {
+        if (id == null || imagenHash == null) return null;
+        return "/animales/" + id + "/imagen?v=" + imagenHash.substring(0, 12);
+    }
+
+    @Schema(description = "URL de la miniatura del animal", accessMode = Schema.AccessMode.READ_ONLY)
+    public String getThumbnailUrl() {
+        String url = getImageUrl();
+        return url != null ? url + "&size=thumb" : null;
+    }
+}
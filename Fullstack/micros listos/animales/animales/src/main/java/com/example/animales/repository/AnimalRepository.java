@@ -1,14 +1,35 @@
 package com.example.animales.repository;
 
 import com.example.animales.model.Animal;
+import com.example.animales.storage.HashesImagen;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface AnimalRepository extends JpaRepository<Animal, Long> {
     List<Animal> findByEspecie(String especie);
     List<Animal> findByIsAdoptado(Boolean isAdoptado);
     List<Animal> findByNombreContainingIgnoreCase(String nombre);
-}
\ No newline at end of file
+
+    @Query("SELECT a FROM Animal a WHERE a.id > :desdeId AND a.imagenHash IS NOT NULL " +
+           "AND a.imagenThumbHash IS NULL ORDER BY a.id")
+    List<Animal> findPendientesDeDerivados(Long desdeId, Pageable pagina);
+
+    @Query("SELECT new com.example.animales.storage.HashesImagen(a.imagenHash, a.imagenThumbHash, " +
+           "a.imagenMediumHash, a.imagenFullHash) FROM Animal a WHERE a.id = :id")
+    Optional<HashesImagen> findHashesImagenById(Long id);
+
+    // Solo las columnas de las variantes, y solo si la original no cambió mientras se generaban
+    @Transactional
+    @Modifying
+    @Query("UPDATE Animal a SET a.imagenThumbHash = :thumb, a.imagenMediumHash = :medium, " +
+           "a.imagenFullHash = :full WHERE a.id = :id AND a.imagenHash = :original")
+    int asignarDerivados(Long id, String original, String thumb, String medium, String full);
+}
@@ -2,20 +2,33 @@ package com.example.animales.service;
 
 import com.example.animales.model.Animal;
 import com.example.animales.repository.AnimalRepository;
+import com.example.animales.storage.HashesImagen;
+import com.example.animales.storage.ImagenDerivados;
+import com.example.animales.storage.ImagenStore;
+import com.example.animales.storage.ImagenTamano;
 import jakarta.annotation.PostConstruct;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class AnimalService {
 
     private final AnimalRepository animalRepository;
+    private final ImagenStore imagenStore;
+    private final ImagenDerivados imagenDerivados;
 
-    public AnimalService(AnimalRepository animalRepository) {
+    public AnimalService(AnimalRepository animalRepository,
+                         ImagenStore imagenStore,
+                         ImagenDerivados imagenDerivados) {
         this.animalRepository = animalRepository;
+        this.imagenStore = imagenStore;
+        this.imagenDerivados = imagenDerivados;
     }
 
     public List<Animal> obtenerTodos() {
@@ -61,15 +74,53 @@ public class AnimalService {
         return null;
     }
 
-    public boolean actualizarImagen(Long id, byte[] nuevaImagen) {
+    public boolean actualizarImagen(Long id, byte[] nuevaImagen) throws IOException {
         Animal animal = animalRepository.findById(id).orElse(null);
         if (animal == null) return false;
 
-        animal.setImagen(nuevaImagen);
+        animal.setImagenHash(imagenStore.guardar(nuevaImagen));
+        asignarDerivados(animal, nuevaImagen);
         animalRepository.save(animal);
         return true;
     }
 
+    // Regenera las variantes a partir de la imagen original ya guardada. El animal viene
+    // de una lectura anterior: guardarlo entero pisaría lo que se editó mientras tanto
+    public void generarDerivados(Animal animal) throws IOException {
+        asignarDerivados(animal, imagenStore.leer(animal.getImagenHash()));
+        // Sin variantes no hay nada que escribir; el backfill la vuelve a intentar al próximo arranque
+        if (animal.getImagenThumbHash() == null) return;
+        animalRepository.asignarDerivados(animal.getId(), animal.getImagenHash(),
+                animal.getImagenThumbHash(), animal.getImagenMediumHash(), animal.getImagenFullHash());
+    }
+
+    // Solo los hashes de la imagen, sin cargar el animal completo
+    public HashesImagen obtenerHashesImagen(Long id) {
+        return animalRepository.findHashesImagenById(id).orElse(null);
+    }
+
+    // Archivo de la imagen para enviarlo por streaming (null si no existe)
+    public Resource recursoImagen(String hash) {
+        return imagenStore.existe(hash) ? new FileSystemResource(imagenStore.ruta(hash)) : null;
+    }
+
+    public String tipoImagen(String hash) throws IOException {
+        return ImagenDerivados.detectarTipo(imagenStore.leerCabecera(hash, 12));
+    }
+
+    private void asignarDerivados(Animal animal, byte[] original) throws IOException {
+        Map<ImagenTamano, byte[]> variantes = imagenDerivados.generar(original);
+
+        // Si el formato no se puede decodificar las variantes quedan en null y se sirve la original
+        animal.setImagenThumbHash(guardarVariante(variantes.get(ImagenTamano.THUMB)));
+        animal.setImagenMediumHash(guardarVariante(variantes.get(ImagenTamano.MEDIUM)));
+        animal.setImagenFullHash(guardarVariante(variantes.get(ImagenTamano.FULL)));
+    }
+
+    private String guardarVariante(byte[] variante) throws IOException {
+        return variante != null ? imagenStore.guardar(variante) : null;
+    }
+
     public boolean marcarComoAdoptado(Long id) {
         Animal animal = animalRepository.findById(id).orElse(null);
         if (animal == null) return false;
@@ -87,12 +138,14 @@ public class AnimalService {
         return false;
     }
 
-    private byte[] cargarImagen(String nombre) throws IOException {
+    private String cargarImagen(String nombre) throws IOException {
         InputStream input = getClass().getClassLoader().getResourceAsStream("static/" + nombre);
         if (input == null) {
             throw new IOException("No se encontró la imagen: " + nombre);
         }
-        return input.readAllBytes();
+        try (input) {
+            return imagenStore.guardar(input);
+        }
     }
 
     @PostConstruct
@@ -105,7 +158,7 @@ public class AnimalService {
                         .raza("Labrador")
                         .edad("3 años")
                         .descripcion("Perro cariñoso y juguetón, ideal para familias con niños")
-                        .imagen(cargarImagen("max.jpg"))
+                        .imagenHash(cargarImagen("max.jpg"))
                         .isAdoptado(false)
                         .build();
 
@@ -115,7 +168,7 @@ public class AnimalService {
                         .raza("Siamés")
                         .edad("2 años")
                         .descripcion("Gata tranquila y afectuosa, perfecta para apartamentos")
-                        .imagen(cargarImagen("luna.jpg"))
+                        .imagenHash(cargarImagen("luna.jpg"))
                         .isAdoptado(false)
                         .build();
 
@@ -125,7 +178,7 @@ public class AnimalService {
                         .raza("Pastor Alemán")
                         .edad("5 años")
                         .descripcion("Perro guardián, entrenado y muy leal")
-                        .imagen(cargarImagen("rocky.jpg"))
+                        .imagenHash(cargarImagen("rocky.jpg"))
                         .isAdoptado(false)
                         .build();
 
@@ -135,7 +188,7 @@ public class AnimalService {
                         .raza("Persa")
                         .edad("1 año")
                         .descripcion("Gatita juguetona y curiosa, le encanta explorar")
-                        .imagen(cargarImagen("mimi.jpg"))
+                        .imagenHash(cargarImagen("mimi.jpg"))
                         .isAdoptado(false)
                         .build();
 
@@ -145,7 +198,7 @@ public class AnimalService {
                         .raza("Beagle")
                         .edad("4 años")
                         .descripcion("Perro energético y sociable, excelente con otros animales")
-                        .imagen(cargarImagen("toby.jpg"))
+                        .imagenHash(cargarImagen("toby.jpg"))
                         .isAdoptado(false)
                         .build();
 
@@ -0,0 +1,72 @@
+package com.example.animales.storage;
+
+import com.example.animales.model.Animal;
+import com.example.animales.repository.AnimalRepository;
+import com.example.animales.service.AnimalService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Genera las variantes (thumb, medium, full) de las imágenes subidas antes de
+ * que existieran. Corre en segundo plano al arrancar y avanza por id; como solo
+ * toma animales sin miniatura, si se interrumpe retoma donde quedó.
+ */
+@Component
+public class BackfillDerivados {
+
+    private static final Logger log = LoggerFactory.getLogger(BackfillDerivados.class);
+    private static final int LOTE = 20;
+
+    private final AnimalRepository animalRepository;
+    private final AnimalService animalService;
+    private final boolean habilitado;
+
+    public BackfillDerivados(AnimalRepository animalRepository,
+                             AnimalService animalService,
+                             @Value("${animales.imagenes.backfill-derivados:true}") boolean habilitado) {
+        this.animalRepository = animalRepository;
+        this.animalService = animalService;
+        this.habilitado = habilitado;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        if (!habilitado) return;
+
+        Thread hilo = new Thread(this::ejecutar, "backfill-imagenes");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    public int ejecutar() {
+        long ultimoId = 0;
+        int procesados = 0;
+
+        while (true) {
+            List<Animal> pendientes = animalRepository.findPendientesDeDerivados(ultimoId, PageRequest.of(0, LOTE));
+            if (pendientes.isEmpty()) break;
+
+            for (Animal animal : pendientes) {
+                try {
+                    animalService.generarDerivados(animal);
+                    procesados++;
+                } catch (Exception e) {
+                    log.warn("No se pudieron generar las variantes del animal {}: {}", animal.getId(), e.getMessage());
+                }
+                ultimoId = animal.getId();
+            }
+        }
+
+        if (procesados > 0) {
+            log.info("Variantes de imagen generadas para {} animales", procesados);
+        }
+        return procesados;
+    }
+}
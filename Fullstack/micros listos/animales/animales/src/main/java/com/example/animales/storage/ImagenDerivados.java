@@ -0,0 +1,120 @@
+package com.example.animales.storage;
+
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Genera las variantes redimensionadas de una imagen (thumb, medium, full).
+ * Las variantes se codifican en JPEG, o en PNG si la imagen tiene transparencia.
+ */
+@Component
+public class ImagenDerivados {
+
+    private static final float CALIDAD_JPEG = 0.82f;
+
+    // Devuelve las variantes codificadas, o un mapa vacío si el formato no se puede decodificar
+    public Map<ImagenTamano, byte[]> generar(byte[] original) throws IOException {
+        Map<ImagenTamano, byte[]> variantes = new EnumMap<>(ImagenTamano.class);
+
+        // ImageIO devuelve null si no reconoce el formato y lanza excepción con JPEG CMYK/YCCK
+        // o archivos dañados; en ambos casos la subida sigue valiendo y se sirve la original
+        BufferedImage imagen;
+        try {
+            imagen = ImageIO.read(new ByteArrayInputStream(original));
+        } catch (IOException | RuntimeException e) {
+            return variantes;
+        }
+        if (imagen == null) {
+            return variantes;
+        }
+
+        boolean transparente = imagen.getColorModel().hasAlpha();
+        int ladoOriginal = Math.max(imagen.getWidth(), imagen.getHeight());
+
+        for (ImagenTamano tamano : ImagenTamano.values()) {
+            BufferedImage escalada = escalar(imagen, tamano.getLadoMaximo(), transparente);
+            byte[] codificada = transparente ? codificarPng(escalada) : codificarJpeg(escalada);
+
+            // Si la original ya cabe en este tamaño y pesa menos, no vale la pena recodificarla
+            boolean originalCabe = ladoOriginal <= tamano.getLadoMaximo();
+            variantes.put(tamano, originalCabe && original.length <= codificada.length ? original : codificada);
+        }
+        return variantes;
+    }
+
+    // Tipo MIME según la cabecera del archivo
+    public static String detectarTipo(byte[] cabecera) {
+        if (cabecera.length >= 3 && (cabecera[0] & 0xFF) == 0xFF && (cabecera[1] & 0xFF) == 0xD8) {
+            return "image/jpeg";
+        }
+        if (cabecera.length >= 8 && (cabecera[0] & 0xFF) == 0x89 && cabecera[1] == 'P' && cabecera[2] == 'N' && cabecera[3] == 'G') {
+            return "image/png";
+        }
+        if (cabecera.length >= 4 && cabecera[0] == 'G' && cabecera[1] == 'I' && cabecera[2] == 'F') {
+            return "image/gif";
+        }
+        if (cabecera.length >= 12 && cabecera[0] == 'R' && cabecera[1] == 'I' && cabecera[2] == 'F' && cabecera[3] == 'F'
+                && cabecera[8] == 'W' && cabecera[9] == 'E' && cabecera[10] == 'B' && cabecera[11] == 'P') {
+            return "image/webp";
+        }
+        return "application/octet-stream";
+    }
+
+    private BufferedImage escalar(BufferedImage imagen, int ladoMaximo, boolean transparente) {
+        int ancho = imagen.getWidth();
+        int alto = imagen.getHeight();
+        double factor = Math.min(1.0, (double) ladoMaximo / Math.max(ancho, alto));
+
+        int nuevoAncho = Math.max(1, (int) Math.round(ancho * factor));
+        int nuevoAlto = Math.max(1, (int) Math.round(alto * factor));
+
+        BufferedImage destino = new BufferedImage(nuevoAncho, nuevoAlto,
+                transparente ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = destino.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.drawImage(imagen, 0, 0, nuevoAncho, nuevoAlto, null);
+        } finally {
+            g.dispose();
+        }
+        return destino;
+    }
+
+    private byte[] codificarJpeg(BufferedImage imagen) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(salida)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(CALIDAD_JPEG);
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.write(null, new IIOImage(imagen, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return salida.toByteArray();
+    }
+
+    private byte[] codificarPng(BufferedImage imagen) throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        ImageIO.write(imagen, "png", salida);
+        return salida.toByteArray();
+    }
+}
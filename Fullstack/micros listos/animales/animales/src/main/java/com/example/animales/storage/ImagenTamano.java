@@ -0,0 +1,32 @@
+package com.example.animales.storage;
+
+/**
+ * Tamaños de imagen que se precalculan al subir una foto.
+ * El lado mayor se reduce a "ladoMaximo" conservando la proporción.
+ */
+public enum ImagenTamano {
+
+    THUMB(200),
+    MEDIUM(600),
+    FULL(1600);
+
+    private final int ladoMaximo;
+
+    ImagenTamano(int ladoMaximo) {
+        this.ladoMaximo = ladoMaximo;
+    }
+
+    public int getLadoMaximo() {
+        return ladoMaximo;
+    }
+
+    // Convierte el parámetro ?size= (thumb, medium, full)
+    public static ImagenTamano desde(String valor) {
+        if (valor == null || valor.isBlank()) return FULL;
+        try {
+            return valueOf(valor.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Tamaño de imagen no válido: " + valor);
+        }
+    }
+}
@@ -2,10 +2,13 @@ package com.example.animales.service;
 
 import com.example.animales.model.Animal;
 import com.example.animales.repository.AnimalRepository;
+import com.example.animales.storage.ImagenDerivados;
+import com.example.animales.storage.ImagenStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,12 +18,14 @@ import static org.mockito.Mockito.*;
 public class AnimalServiceTest {
 
     private AnimalRepository animalRepository;
+    private ImagenStore imagenStore;
     private AnimalService animalService;
 
     @BeforeEach
     void setup() {
         animalRepository = mock(AnimalRepository.class);
-        animalService = new AnimalService(animalRepository);
+        imagenStore = mock(ImagenStore.class);
+        animalService = new AnimalService(animalRepository, imagenStore, new ImagenDerivados());
     }
 
     // ===============================================================
@@ -124,7 +129,7 @@ public class AnimalServiceTest {
     // 5) ACTUALIZAR IMAGEN
     // ===============================================================
     @Test
-    void actualizarImagen_Exitoso() {
+    void actualizarImagen_Exitoso() throws IOException {
 
         Animal existente = new Animal();
         existente.setId(1L);
@@ -132,15 +137,21 @@ public class AnimalServiceTest {
         when(animalRepository.findById(1L)).thenReturn(Optional.of(existente));
 
         byte[] imagen = new byte[]{1, 2, 3};
+        String hash = "cd".repeat(32);
+        when(imagenStore.guardar(imagen)).thenReturn(hash);
+
         boolean ok = animalService.actualizarImagen(1L, imagen);
 
         assertTrue(ok);
-        assertArrayEquals(imagen, existente.getImagen());
+        assertEquals(hash, existente.getImagenHash());
+        // Bytes que no son una imagen decodificable: sin variantes, se sirve la original
+        assertNull(existente.getImagenThumbHash());
+        assertEquals("/animales/1/imagen?v=cdcdcdcdcdcd", existente.getImageUrl());
         verify(animalRepository).save(existente);
     }
 
     @Test
-    void actualizarImagen_NoExiste() {
+    void actualizarImagen_NoExiste() throws IOException {
 
         when(animalRepository.findById(1L)).thenReturn(Optional.empty());
 
@@ -1,31 +1,76 @@
 package com.example.carrito.Client;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Component
 public class ProductoClient {
     
+    private static final String SERVICIO = "catalogo";
+    // Tope de ids por llamada que acepta /productos/batch en el catálogo
+    static final int MAXIMO_IDS_POR_CONSULTA = 500;
+    
     private final WebClient webClient;
+    private final Duration timeout;
+    private final ResilienciaClientes resiliencia;
     
-    public ProductoClient(@Value("${catalogo-service.url}") String catalogoUrl) {
-        this.webClient = WebClient.builder()
-                .baseUrl(catalogoUrl)
-                .build();
+    public ProductoClient(@Value("${catalogo-service.url}") String catalogoUrl,
+                          @Value("${catalogo-service.timeout:2s}") Duration timeout,
+                          ResilienciaClientes resiliencia) {
+        this.webClient = resiliencia.webClient(catalogoUrl, timeout);
+        this.timeout = timeout;
+        this.resiliencia = resiliencia;
     }
     
     public Map<String, Object> obtenerProductoPorId(Long id) {
+        return buscarProducto(id).block();
+    }
+
+    // Varios productos por llamadas a /productos/batch de hasta MAXIMO_IDS_POR_CONSULTA ids:
+    // id -> producto. Los que no existen no aparecen; devuelve null si el catálogo no responde.
+    public Map<Long, Map<String, Object>> obtenerProductosPorIds(Collection<Long> ids) {
+        List<Long> pendientes = List.copyOf(ids);
+        Map<Long, Map<String, Object>> productos = new HashMap<>();
         try {
-            return this.webClient.get()
-                    .uri("/productos/{id}", id)
-                    .retrieve()
-                    .bodyToMono(Map.class)
-                    .block();
+            for (int desde = 0; desde < pendientes.size(); desde += MAXIMO_IDS_POR_CONSULTA) {
+                List<Long> tramo = pendientes.subList(desde, Math.min(desde + MAXIMO_IDS_POR_CONSULTA, pendientes.size()));
+                Map<String, Object> respuesta = resiliencia.proteger(SERVICIO, this.webClient.post()
+                        .uri("/productos/batch")
+                        .bodyValue(tramo)
+                        .retrieve()
+                        .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                        .timeout(timeout))
+                        .block();
+                
+                for (Object producto : (List<?>) respuesta.get("productos")) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> datos = (Map<String, Object>) producto;
+                    productos.put(((Number) datos.get("id")).longValue(), datos);
+                }
+            }
+            return productos;
         } catch (Exception e) {
             return null;
         }
     }
-}
\ No newline at end of file
+    
+    // Versión sin bloqueo: se completa vacío si el producto no existe, el catálogo no
+    // responde a tiempo o su circuito está abierto
+    public Mono<Map<String, Object>> buscarProducto(Long id) {
+        return resiliencia.proteger(SERVICIO, this.webClient.get()
+                        .uri("/productos/{id}", id)
+                        .retrieve()
+                        .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                        .timeout(timeout))
+                .onErrorResume(e -> Mono.empty());
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.carrito.Client;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Protección de las llamadas a otros servicios. Cada servicio tiene su circuito
+ * y su límite de llamadas simultáneas: si está caído o lento, las peticiones
+ * fallan al instante en vez de quedarse esperando y acumular hilos.
+ */
+@Component
+public class ResilienciaClientes {
+    
+    private final Duration timeoutConexion;
+    private final CircuitBreakerConfig configCircuito;
+    private final BulkheadConfig configConcurrencia;
+    
+    private final Map<String, Proteccion> servicios = new ConcurrentHashMap<>();
+    
+    public ResilienciaClientes(@Value("${carrito.clientes.timeout-conexion:500ms}") Duration timeoutConexion,
+                               @Value("${carrito.clientes.circuito.porcentaje-fallos:50}") float porcentajeFallos,
+                               @Value("${carrito.clientes.circuito.ventana:20}") int ventana,
+                               @Value("${carrito.clientes.circuito.espera-abierto:10s}") Duration esperaAbierto,
+                               @Value("${carrito.clientes.concurrencia.maximo:50}") int maximoConcurrentes) {
+        this.timeoutConexion = timeoutConexion;
+        this.configCircuito = CircuitBreakerConfig.custom()
+                .failureRateThreshold(porcentajeFallos)
+                .slidingWindowSize(ventana)
+                .minimumNumberOfCalls(Math.min(ventana, 10))
+                .waitDurationInOpenState(esperaAbierto)
+                .permittedNumberOfCallsInHalfOpenState(3)
+                // Un 4xx es una respuesta válida (usuario o producto inexistente, pedido rechazado),
+                // no una falla del servicio: no cuenta para abrir el circuito
+                .ignoreException(e -> e instanceof WebClientResponseException respuesta
+                        && respuesta.getStatusCode().is4xxClientError())
+                .build();
+        // Sin espera: si no hay lugar se rechaza enseguida
+        this.configConcurrencia = BulkheadConfig.custom()
+                .maxConcurrentCalls(maximoConcurrentes)
+                .maxWaitDuration(Duration.ZERO)
+                .build();
+    }
+    
+    // WebClient con tiempo máximo para conectar y para recibir la respuesta
+    public WebClient webClient(String baseUrl, Duration timeoutRespuesta) {
+        HttpClient httpClient = HttpClient.create()
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) timeoutConexion.toMillis())
+                .responseTimeout(timeoutRespuesta);
+        return WebClient.builder()
+                .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+    
+    // Aplica el circuito y el límite del servicio a una llamada. Los errores siguen
+    // pasando, incluidos CallNotPermittedException y BulkheadFullException.
+    public <T> Mono<T> proteger(String servicio, Mono<T> llamada) {
+        Proteccion proteccion = servicios.computeIfAbsent(servicio, this::crear);
+        return llamada
+                .transformDeferred(CircuitBreakerOperator.of(proteccion.circuito()))
+                .transformDeferred(BulkheadOperator.of(proteccion.limite()));
+    }
+    
+    private Proteccion crear(String servicio) {
+        Bulkhead limite = Bulkhead.of(servicio, configConcurrencia);
+        LongAdder rechazadas = new LongAdder();
+        limite.getEventPublisher().onCallRejected(evento -> rechazadas.increment());
+        return new Proteccion(CircuitBreaker.of(servicio, configCircuito), limite, rechazadas);
+    }
+    
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> datos = new LinkedHashMap<>();
+        servicios.forEach((servicio, proteccion) -> {
+            CircuitBreaker circuito = proteccion.circuito();
+            CircuitBreaker.Metrics metricas = circuito.getMetrics();
+            Bulkhead.Metrics concurrencia = proteccion.limite().getMetrics();
+            Map<String, Object> porServicio = new LinkedHashMap<>();
+            porServicio.put("estado", circuito.getState().name());
+            porServicio.put("tasaFallos", metricas.getFailureRate());
+            porServicio.put("tasaLentas", metricas.getSlowCallRate());
+            porServicio.put("llamadasExitosas", metricas.getNumberOfSuccessfulCalls());
+            porServicio.put("llamadasFallidas", metricas.getNumberOfFailedCalls());
+            porServicio.put("rechazadasPorCircuito", metricas.getNumberOfNotPermittedCalls());
+            porServicio.put("concurrentesDisponibles", concurrencia.getAvailableConcurrentCalls());
+            porServicio.put("concurrentesMaximo", concurrencia.getMaxAllowedConcurrentCalls());
+            porServicio.put("rechazadasPorConcurrencia", proteccion.rechazadas().sum());
+            datos.put(servicio, porServicio);
+        });
+        return datos;
+    }
+    
+    private record Proteccion(CircuitBreaker circuito, Bulkhead limite, LongAdder rechazadas) {}
+}
@@ -1,31 +1,96 @@
 package com.example.carrito.Client;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Optional;
 
 @Component
 public class UsuarioClient {
     
+    private static final String SERVICIO = "usuarios";
+    
     private final WebClient webClient;
+    private final Duration timeout;
+    private final ResilienciaClientes resiliencia;
+
+    // Usuarios ya validados. Optional.empty() marca un usuario que no existe (404),
+    // que se guarda menos tiempo por si se registra enseguida.
+    private final AsyncCache<Long, Optional<Map<String, Object>>> usuarios;
     
-    public UsuarioClient(@Value("${auth-service.url}") String authUrl) {
-        this.webClient = WebClient.builder()
-                .baseUrl(authUrl)
-                .build();
+    public UsuarioClient(@Value("${auth-service.url}") String authUrl,
+                         @Value("${auth-service.timeout:2s}") Duration timeout,
+                         @Value("${carrito.cache.usuarios.maximo:10000}") long maximo,
+                         @Value("${carrito.cache.usuarios.ttl:10m}") Duration ttl,
+                         @Value("${carrito.cache.usuarios.ttl-inexistentes:30s}") Duration ttlInexistentes,
+                         ResilienciaClientes resiliencia) {
+        this.webClient = resiliencia.webClient(authUrl, timeout);
+        this.timeout = timeout;
+        this.resiliencia = resiliencia;
+        this.usuarios = Caffeine.newBuilder()
+                .maximumSize(maximo)
+                .expireAfter(new Expiry<Long, Optional<Map<String, Object>>>() {
+                    @Override
+                    public long expireAfterCreate(Long id, Optional<Map<String, Object>> usuario, long ahora) {
+                        return (usuario.isPresent() ? ttl : ttlInexistentes).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long id, Optional<Map<String, Object>> usuario, long ahora, long restante) {
+                        return expireAfterCreate(id, usuario, ahora);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long id, Optional<Map<String, Object>> usuario, long ahora, long restante) {
+                        return restante;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
     }
     
     public Map<String, Object> obtenerUsuarioPorId(Long id) {
-        try {
-            return this.webClient.get()
-                    .uri("/usuarios/{id}", id)
-                    .retrieve()
-                    .bodyToMono(Map.class)
-                    .block();
-        } catch (Exception e) {
-            return null;
-        }
+        Optional<Map<String, Object>> usuario = buscarUsuario(id).block();
+        return usuario != null ? usuario.orElse(null) : null;
+    }
+
+    // Versión sin bloqueo: emite el usuario, Optional.empty() si no existe, o nada si el servicio falló
+    public Mono<Optional<Map<String, Object>>> buscarUsuario(Long id) {
+        return Mono.fromFuture(() -> usuarios.get(id, (clave, executor) -> consultar(clave).toFuture()), true);
+    }
+
+    // Si el servicio de usuarios falla (red, 5xx, timeout, circuito abierto) se completa
+    // vacío y la caché no guarda nada
+    private Mono<Optional<Map<String, Object>>> consultar(Long id) {
+        return resiliencia.proteger(SERVICIO, this.webClient.get()
+                        .uri("/usuarios/{id}", id)
+                        .retrieve()
+                        .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                        .timeout(timeout))
+                .map(Optional::of)
+                .onErrorResume(WebClientResponseException.NotFound.class, e -> Mono.just(Optional.empty()))
+                .onErrorResume(e -> Mono.empty());
+    }
+
+    public Map<String, Object> estadisticasCache() {
+        CacheStats stats = usuarios.synchronous().stats();
+        Map<String, Object> datos = new LinkedHashMap<>();
+        datos.put("tamano", usuarios.synchronous().estimatedSize());
+        datos.put("aciertos", stats.hitCount());
+        datos.put("fallos", stats.missCount());
+        datos.put("tasaAciertos", stats.hitRate());
+        datos.put("desalojos", stats.evictionCount());
+        return datos;
     }
-}
\ No newline at end of file
+}
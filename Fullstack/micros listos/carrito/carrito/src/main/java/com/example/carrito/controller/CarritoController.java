@@ -1,12 +1,16 @@
 package com.example.carrito.controller;
 
+import com.example.carrito.Client.ResilienciaClientes;
 import com.example.carrito.model.ItemCarrito;
 import com.example.carrito.service.CarritoService;
+import com.example.carrito.service.ConflictoCarritoException;
+import com.example.carrito.tareas.CompactacionCarritos;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -15,9 +19,15 @@ import java.util.Map;
 public class CarritoController {
     
     private final CarritoService carritoService;
+    private final CompactacionCarritos compactacionCarritos;
+    private final ResilienciaClientes resilienciaClientes;
     
-    public CarritoController(CarritoService carritoService) {
+    public CarritoController(CarritoService carritoService,
+                             CompactacionCarritos compactacionCarritos,
+                             ResilienciaClientes resilienciaClientes) {
         this.carritoService = carritoService;
+        this.compactacionCarritos = compactacionCarritos;
+        this.resilienciaClientes = resilienciaClientes;
     }
     
     @Operation(summary = "Obtener carrito de un usuario")
@@ -60,6 +70,44 @@ public class CarritoController {
         }
     }
     
+    @Operation(summary = "Reemplazar el carrito completo",
+               description = "Recibe {\"items\": [{\"productoId\": 1, \"cantidad\": 2}, ...], \"version\": 3}. " +
+                             "Los productos que no vienen en la lista se quitan. La versión es opcional: " +
+                             "si viene y el carrito cambió desde entonces se responde 409.")
+    @ApiResponse(responseCode = "200", description = "Carrito reemplazado")
+    @ApiResponse(responseCode = "409", description = "El carrito fue modificado por otra petición")
+    @PutMapping("/usuario/{usuarioId}")
+    public ResponseEntity<?> reemplazarCarrito(@PathVariable Long usuarioId,
+                                               @RequestBody Map<String, Object> request) {
+        try {
+            Map<Long, Integer> deseado = new HashMap<>();
+            Object items = request.get("items");
+            if (!(items instanceof List<?> lineas)) {
+                throw new IllegalArgumentException("Falta la lista de items");
+            }
+            for (Object linea : lineas) {
+                Map<?, ?> datos = (Map<?, ?>) linea;
+                Long productoId = Long.valueOf(datos.get("productoId").toString());
+                Integer cantidad = Integer.valueOf(datos.get("cantidad").toString());
+                // Si un producto viene repetido se suman sus cantidades
+                deseado.merge(productoId, cantidad, Integer::sum);
+            }
+            Long version = request.get("version") != null
+                    ? Long.valueOf(request.get("version").toString())
+                    : null;
+            
+            return ResponseEntity.ok(carritoService.reemplazarCarrito(usuarioId, deseado, version));
+        } catch (ConflictoCarritoException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage(), "version", e.getVersionActual()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (ClassCastException | NullPointerException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Formato de items inválido"));
+        }
+    }
+    
     @Operation(summary = "Actualizar cantidad de un item")
     @ApiResponse(responseCode = "200", description = "Cantidad actualizada")
     @PutMapping("/item/{itemId}")
@@ -105,4 +153,25 @@ public class CarritoController {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
+    
+    @Operation(summary = "Estadísticas de la caché de usuarios")
+    @ApiResponse(responseCode = "200", description = "Aciertos, fallos y desalojos")
+    @GetMapping("/cache/usuarios")
+    public Map<String, Object> estadisticasCacheUsuarios() {
+        return carritoService.estadisticasCacheUsuarios();
+    }
+    
+    @Operation(summary = "Estadísticas de la limpieza de carritos abandonados")
+    @ApiResponse(responseCode = "200", description = "Ejecuciones, filas eliminadas y duración")
+    @GetMapping("/compactacion/estadisticas")
+    public Map<String, Object> estadisticasCompactacion() {
+        return compactacionCarritos.estadisticas();
+    }
+    
+    @Operation(summary = "Estado de las llamadas a otros servicios")
+    @ApiResponse(responseCode = "200", description = "Circuito, tasa de fallos y concurrencia por servicio")
+    @GetMapping("/clientes/estadisticas")
+    public Map<String, Object> estadisticasClientes() {
+        return resilienciaClientes.estadisticas();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,546 @@
+package com.example.carrito.memoria;
+
+import com.example.carrito.model.Carrito;
+import com.example.carrito.model.ItemCarrito;
+import com.example.carrito.repository.CarritoJdbcRepository;
+import com.example.carrito.repository.CarritoRepository;
+import com.example.carrito.repository.ItemCarritoJdbcRepository;
+import com.example.carrito.repository.ItemCarritoRepository;
+import com.example.carrito.service.ConflictoCarritoException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Carritos activos en memoria con escritura diferida a MySQL.
+ *
+ * Cada carrito se carga de la base la primera vez que se usa (así se recupera
+ * el estado después de un reinicio) y desde ahí las lecturas y cambios se hacen
+ * en memoria. Cada "carrito.memoria.ventana" los carritos modificados se guardan
+ * por lotes: varios cambios seguidos al mismo carrito terminan en una sola
+ * escritura. Si el proceso se cae se pierden, como mucho, los cambios de la
+ * última ventana. Solo sirve con una instancia de carrito (o con las peticiones
+ * de cada usuario siempre en la misma), porque cada instancia tiene su copia.
+ *
+ * Los carritos se reparten en franjas con un candado cada una: dos usuarios de
+ * franjas distintas no se esperan entre sí. La carga desde MySQL se hace con el
+ * candado suelto, así que tampoco se esperan mientras otro carrito se carga.
+ *
+ * Cada lote se escribe en una transacción. Si falla por los datos de algún carrito
+ * se reintenta de a un carrito por transacción, y el carrito que sigue fallando
+ * solo se descarta de memoria después de MAXIMO_FALLOS intentos (queda lo último
+ * que se guardó). Los errores de conexión o de bloqueos solo se reintentan.
+ *
+ * Las líneas nuevas reciben su id al agregarse (ver IdsItemsCarrito) y las
+ * operaciones por id de línea se resuelven contra la memoria, no contra MySQL,
+ * que puede ir hasta una ventana atrasado.
+ */
+@Component
+@ConditionalOnProperty(name = "carrito.memoria.habilitada", havingValue = "true")
+public class AlmacenCarritos {
+    
+    private static final Logger log = LoggerFactory.getLogger(AlmacenCarritos.class);
+    private static final int LOTE = 200;
+    private static final int MAXIMO_FALLOS = 3;
+    
+    private final ConcurrentHashMap<Long, CarritoEnMemoria> carritos = new ConcurrentHashMap<>();
+    // Usuarios cuyo carrito se está leyendo de la base; se tocan con el candado de su franja
+    private final Set<Long> cargando = ConcurrentHashMap.newKeySet();
+    // Usuarios cuyo carrito está borrando la compactación; no se cargan hasta que termine
+    private final Set<Long> compactando = ConcurrentHashMap.newKeySet();
+    // id de línea -> usuario, para las líneas de los carritos cargados
+    private final ConcurrentHashMap<Long, Long> duenos = new ConcurrentHashMap<>();
+    private final ReentrantLock[] franjas;
+    // Una por franja: avisa que terminó una carga o una compactación
+    private final Condition[] cargas;
+    private final int maximo;
+    
+    private final ItemCarritoRepository itemCarritoRepository;
+    private final CarritoRepository carritoRepository;
+    private final ItemCarritoJdbcRepository itemCarritoJdbcRepository;
+    private final CarritoJdbcRepository carritoJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final IdsItemsCarrito ids;
+    
+    public AlmacenCarritos(@Value("${carrito.memoria.franjas:64}") int franjas,
+                           @Value("${carrito.memoria.maximo:50000}") int maximo,
+                           ItemCarritoRepository itemCarritoRepository,
+                           CarritoRepository carritoRepository,
+                           ItemCarritoJdbcRepository itemCarritoJdbcRepository,
+                           CarritoJdbcRepository carritoJdbcRepository,
+                           TransactionTemplate transactionTemplate,
+                           IdsItemsCarrito ids) {
+        this.franjas = new ReentrantLock[franjas];
+        this.cargas = new Condition[franjas];
+        for (int i = 0; i < franjas; i++) {
+            this.franjas[i] = new ReentrantLock();
+            this.cargas[i] = this.franjas[i].newCondition();
+        }
+        this.maximo = maximo;
+        this.itemCarritoRepository = itemCarritoRepository;
+        this.carritoRepository = carritoRepository;
+        this.itemCarritoJdbcRepository = itemCarritoJdbcRepository;
+        this.carritoJdbcRepository = carritoJdbcRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.ids = ids;
+    }
+    
+    public boolean estaCargado(Long usuarioId) {
+        return carritos.containsKey(usuarioId);
+    }
+    
+    // Reserva los carritos que no están en memoria ni cargándose y corre "accion" con ellos.
+    // Mientras dura no se cargan: quien los pida espera y después los lee de la base, ya
+    // borrados o no. Así la compactación no borra un carrito que alguien acaba de cargar.
+    public <T> T sinCargar(List<Long> usuarioIds, Function<List<Long>, T> accion) {
+        List<Long> reservados = new ArrayList<>();
+        for (Long usuarioId : usuarioIds) {
+            ReentrantLock candado = franja(usuarioId);
+            candado.lock();
+            try {
+                if (!carritos.containsKey(usuarioId) && !cargando.contains(usuarioId) && compactando.add(usuarioId)) {
+                    reservados.add(usuarioId);
+                }
+            } finally {
+                candado.unlock();
+            }
+        }
+        
+        try {
+            return accion.apply(reservados);
+        } finally {
+            for (Long usuarioId : reservados) {
+                ReentrantLock candado = franja(usuarioId);
+                candado.lock();
+                try {
+                    compactando.remove(usuarioId);
+                    cargas[indice(usuarioId)].signalAll();
+                } finally {
+                    candado.unlock();
+                }
+            }
+        }
+    }
+    
+    public List<ItemCarrito> items(Long usuarioId) {
+        return conCarrito(usuarioId, CarritoEnMemoria::copiaLineas);
+    }
+    
+    public Carrito resumen(Long usuarioId) {
+        return conCarrito(usuarioId, CarritoEnMemoria::resumen);
+    }
+    
+    // Líneas y resumen con el mismo candado: la versión es la de esas líneas
+    public <T> T leer(Long usuarioId, BiFunction<List<ItemCarrito>, Carrito, T> lectura) {
+        return conCarrito(usuarioId, carrito -> lectura.apply(carrito.copiaLineas(), carrito.resumen()));
+    }
+    
+    // Crea la línea o suma la cantidad; la línea conserva el precio con que se agregó
+    public ItemCarrito agregar(Long usuarioId, Long productoId, String nombre, Double precio,
+                               Integer cantidad, String imageUrl) {
+        ids.asegurar(1);
+        return conCarrito(usuarioId, carrito -> {
+            ItemCarrito item = carrito.lineas.get(productoId);
+            if (item == null) {
+                item = new ItemCarrito(ids.siguiente(), usuarioId, productoId, nombre, precio, cantidad, imageUrl);
+                agregarLinea(carrito, item);
+            } else {
+                item.setCantidad(item.getCantidad() + cantidad);
+            }
+            carrito.cambio();
+            return CarritoEnMemoria.copiar(item);
+        });
+    }
+    
+    // Vacío si la línea no existe o si se eliminó por quedar en cantidad 0
+    public Optional<ItemCarrito> actualizarCantidad(Long itemId, Integer cantidad) {
+        Long usuarioId = dueno(itemId);
+        if (usuarioId == null) return Optional.empty();
+        return conCarrito(usuarioId, carrito -> {
+            ItemCarrito item = carrito.porId(itemId);
+            if (item == null) return Optional.empty();
+            
+            carrito.cambio();
+            if (cantidad <= 0) {
+                quitarLinea(carrito, item);
+                return Optional.empty();
+            }
+            item.setCantidad(cantidad);
+            return Optional.of(CarritoEnMemoria.copiar(item));
+        });
+    }
+    
+    public boolean eliminarItem(Long itemId) {
+        Long usuarioId = dueno(itemId);
+        if (usuarioId == null) return false;
+        return conCarrito(usuarioId, carrito -> {
+            ItemCarrito item = carrito.porId(itemId);
+            if (item == null) return false;
+            quitarLinea(carrito, item);
+            carrito.cambio();
+            return true;
+        });
+    }
+    
+    public void vaciar(Long usuarioId) {
+        conCarrito(usuarioId, carrito -> {
+            List.copyOf(carrito.lineas.values()).forEach(item -> quitarLinea(carrito, item));
+            carrito.cambio();
+            return null;
+        });
+    }
+    
+    // Deja el carrito con las cantidades indicadas (productoId -> cantidad > 0);
+    // nuevaLinea arma las líneas de productos que todavía no estaban (el id lo pone el almacén)
+    public Carrito reemplazar(Long usuarioId, Map<Long, Integer> cantidades,
+                              Function<Long, ItemCarrito> nuevaLinea, Long versionEsperada) {
+        ids.asegurar(cantidades.size());
+        return conCarrito(usuarioId, carrito -> {
+            if (versionEsperada != null && versionEsperada != carrito.version) {
+                throw new ConflictoCarritoException(carrito.version);
+            }
+            for (ItemCarrito item : List.copyOf(carrito.lineas.values())) {
+                Integer cantidad = cantidades.get(item.getProductoId());
+                if (cantidad == null) {
+                    quitarLinea(carrito, item);
+                } else {
+                    item.setCantidad(cantidad);
+                }
+            }
+            for (Long productoId : cantidades.keySet()) {
+                if (carrito.lineas.containsKey(productoId)) continue;
+                ItemCarrito item = nuevaLinea.apply(productoId);
+                item.setId(ids.siguiente());
+                agregarLinea(carrito, item);
+            }
+            carrito.cambio();
+            return carrito.resumen();
+        });
+    }
+    
+    // Pasa a las líneas en memoria los datos nuevos del catálogo (productoId -> producto).
+    // La base ya se actualizó aparte; acá solo se corrigen los carritos cargados.
+    public void aplicarDatosProductos(Map<Long, Map<String, Object>> productos) {
+        for (Long usuarioId : carritos.keySet()) {
+            ReentrantLock candado = franja(usuarioId);
+            candado.lock();
+            try {
+                CarritoEnMemoria carrito = carritos.get(usuarioId);
+                if (carrito == null) continue;
+                boolean cambio = false;
+                for (ItemCarrito item : carrito.lineas.values()) {
+                    Map<String, Object> producto = productos.get(item.getProductoId());
+                    if (producto == null) continue;
+                    item.setProductoNombre((String) producto.get("nombre"));
+                    item.setProductoPrecio(((Number) producto.get("precio")).doubleValue());
+                    item.setImageUrl((String) producto.get("imageUrl"));
+                    cambio = true;
+                }
+                if (cambio) carrito.datosProductos();
+            } finally {
+                candado.unlock();
+            }
+        }
+    }
+    
+    // Guarda los carritos modificados desde la escritura anterior
+    @Scheduled(fixedDelayString = "${carrito.memoria.ventana:1s}")
+    public synchronized void escribirPendientes() {
+        List<Instantanea> lote = new ArrayList<>();
+        for (Long usuarioId : carritos.keySet()) {
+            Instantanea instantanea = tomarInstantanea(usuarioId);
+            if (instantanea == null) continue;
+            // Un carrito que ya falló va solo, para no volver a tirar abajo un lote entero
+            if (instantanea.fallos() > 0) {
+                escribirSolo(instantanea);
+                continue;
+            }
+            lote.add(instantanea);
+            if (lote.size() == LOTE) {
+                escribir(lote);
+                lote = new ArrayList<>();
+            }
+        }
+        if (!lote.isEmpty()) escribir(lote);
+        desalojar();
+    }
+    
+    @PreDestroy
+    public void cerrar() {
+        escribirPendientes();
+    }
+    
+    private <T> T conCarrito(Long usuarioId, Function<CarritoEnMemoria, T> accion) {
+        ReentrantLock candado = franja(usuarioId);
+        candado.lock();
+        try {
+            CarritoEnMemoria carrito = obtener(usuarioId, candado);
+            carrito.ultimoAcceso = System.nanoTime();
+            return accion.apply(carrito);
+        } finally {
+            candado.unlock();
+        }
+    }
+    
+    // Se llama con el candado de la franja tomado y lo devuelve tomado. Mientras se lee
+    // la base el candado se suelta; si otro hilo ya está cargando el mismo carrito se
+    // espera a que termine en lugar de leerlo dos veces. También se espera mientras la
+    // compactación lo está borrando.
+    private CarritoEnMemoria obtener(Long usuarioId, ReentrantLock candado) {
+        Condition carga = cargas[indice(usuarioId)];
+        while (true) {
+            CarritoEnMemoria carrito = carritos.get(usuarioId);
+            if (carrito != null) return carrito;
+            if (!compactando.contains(usuarioId) && cargando.add(usuarioId)) break;
+            carga.awaitUninterruptibly();
+        }
+        
+        CarritoEnMemoria cargado = null;
+        candado.unlock();
+        try {
+            cargado = cargar(usuarioId);
+        } finally {
+            candado.lock();
+            cargando.remove(usuarioId);
+            if (cargado != null) {
+                carritos.put(usuarioId, cargado);
+                for (ItemCarrito item : cargado.lineas.values()) {
+                    duenos.put(item.getId(), usuarioId);
+                }
+            }
+            carga.signalAll();
+        }
+        return cargado;
+    }
+    
+    private CarritoEnMemoria cargar(Long usuarioId) {
+        return transactionTemplate.execute(estado -> {
+            if (!carritoRepository.existsById(usuarioId)) {
+                carritoRepository.crearDesdeItems(usuarioId);
+            }
+            Carrito resumen = carritoRepository.findById(usuarioId).orElseThrow();
+            return new CarritoEnMemoria(usuarioId, itemCarritoRepository.findByUsuarioId(usuarioId),
+                    resumen.getVersion(), resumen.getActualizadoEn());
+        });
+    }
+    
+    // Usuario dueño de una línea. Si el carrito está cargado la memoria manda; si no,
+    // la base está al día (solo se desalojan carritos ya guardados).
+    private Long dueno(Long itemId) {
+        Long usuarioId = duenos.get(itemId);
+        if (usuarioId != null) return usuarioId;
+        return itemCarritoRepository.findById(itemId).map(ItemCarrito::getUsuarioId).orElse(null);
+    }
+    
+    private void agregarLinea(CarritoEnMemoria carrito, ItemCarrito item) {
+        carrito.agregar(item);
+        duenos.put(item.getId(), carrito.usuarioId);
+    }
+    
+    private void quitarLinea(CarritoEnMemoria carrito, ItemCarrito item) {
+        carrito.quitar(item);
+        duenos.remove(item.getId());
+    }
+    
+    private ReentrantLock franja(Long usuarioId) {
+        return franjas[indice(usuarioId)];
+    }
+    
+    private int indice(Long usuarioId) {
+        return Math.floorMod(usuarioId.hashCode(), franjas.length);
+    }
+    
+    // Copia lo que hay que escribir de un carrito y lo marca como guardado
+    private Instantanea tomarInstantanea(Long usuarioId) {
+        ReentrantLock candado = franja(usuarioId);
+        candado.lock();
+        try {
+            CarritoEnMemoria carrito = carritos.get(usuarioId);
+            if (carrito == null || !carrito.pendiente) return null;
+            
+            List<ItemCarrito> guardadas = new ArrayList<>();
+            List<ItemCarrito> nuevas = new ArrayList<>();
+            for (ItemCarrito item : carrito.copiaLineas()) {
+                (carrito.nuevas.contains(item.getId()) ? nuevas : guardadas).add(item);
+            }
+            Instantanea instantanea = new Instantanea(carrito.resumen(), guardadas, nuevas,
+                    List.copyOf(carrito.eliminados), carrito.fallos);
+            // Desde acá, quitar una de estas líneas la anota para borrar: ya se está insertando
+            carrito.nuevas.clear();
+            carrito.eliminados.clear();
+            carrito.pendiente = false;
+            return instantanea;
+        } finally {
+            candado.unlock();
+        }
+    }
+    
+    private void escribir(List<Instantanea> lote) {
+        try {
+            guardar(lote);
+        } catch (RuntimeException e) {
+            if (esTransitorio(e)) {
+                log.warn("No se pudieron guardar {} carritos, se reintenta en la próxima escritura", lote.size(), e);
+                lote.forEach(this::devolver);
+                return;
+            }
+            // Un solo carrito con datos inválidos haría fallar el lote en cada reintento
+            log.warn("Falló la escritura de un lote de {} carritos, se guardan de a uno", lote.size(), e);
+            lote.forEach(this::escribirSolo);
+        }
+    }
+    
+    private void escribirSolo(Instantanea instantanea) {
+        try {
+            guardar(List.of(instantanea));
+        } catch (RuntimeException e) {
+            if (esTransitorio(e)) {
+                devolver(instantanea);
+            } else {
+                fallo(instantanea, e);
+            }
+            return;
+        }
+        if (instantanea.fallos() > 0) reiniciarFallos(instantanea.resumen().getUsuarioId());
+    }
+    
+    private void guardar(List<Instantanea> lote) {
+        transactionTemplate.executeWithoutResult(estado -> {
+            List<Long> eliminar = new ArrayList<>();
+            Map<Long, Integer> cantidades = new HashMap<>();
+            List<ItemCarrito> nuevas = new ArrayList<>();
+            List<Carrito> resumenes = new ArrayList<>(lote.size());
+            
+            for (Instantanea instantanea : lote) {
+                eliminar.addAll(instantanea.eliminados());
+                for (ItemCarrito item : instantanea.guardadas()) {
+                    cantidades.put(item.getId(), item.getCantidad());
+                }
+                nuevas.addAll(instantanea.nuevas());
+                resumenes.add(instantanea.resumen());
+            }
+            
+            itemCarritoJdbcRepository.eliminar(eliminar);
+            itemCarritoJdbcRepository.actualizarCantidades(cantidades);
+            itemCarritoJdbcRepository.insertarConIds(nuevas);
+            carritoJdbcRepository.guardar(resumenes);
+        });
+    }
+    
+    // Conexión caída, tiempo de espera o bloqueo: se arregla solo y no es culpa del carrito
+    private static boolean esTransitorio(RuntimeException e) {
+        return e instanceof TransactionException
+                || e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException;
+    }
+    
+    // La escritura falló: el carrito vuelve a quedar pendiente con lo que faltaba borrar e insertar
+    private void devolver(Instantanea instantanea) {
+        Long usuarioId = instantanea.resumen().getUsuarioId();
+        ReentrantLock candado = franja(usuarioId);
+        candado.lock();
+        try {
+            CarritoEnMemoria carrito = carritos.get(usuarioId);
+            if (carrito != null) reencolar(carrito, instantanea);
+        } finally {
+            candado.unlock();
+        }
+    }
+    
+    private static void reencolar(CarritoEnMemoria carrito, Instantanea instantanea) {
+        carrito.eliminados.addAll(instantanea.eliminados());
+        for (ItemCarrito nueva : instantanea.nuevas()) {
+            // Si se quitó mientras tanto quedó anotada para borrar, pero nunca se insertó
+            if (!carrito.eliminados.remove(nueva.getId())) carrito.nuevas.add(nueva.getId());
+        }
+        carrito.pendiente = true;
+    }
+    
+    // El carrito falló solo en su transacción. Se reintenta hasta MAXIMO_FALLOS veces y
+    // después se saca de memoria: el próximo acceso lo carga con lo último guardado.
+    private void fallo(Instantanea instantanea, RuntimeException error) {
+        Long usuarioId = instantanea.resumen().getUsuarioId();
+        ReentrantLock candado = franja(usuarioId);
+        candado.lock();
+        try {
+            CarritoEnMemoria carrito = carritos.get(usuarioId);
+            if (carrito == null) return;
+            if (++carrito.fallos < MAXIMO_FALLOS) {
+                log.warn("No se pudo guardar el carrito del usuario {} (intento {} de {})",
+                        usuarioId, carrito.fallos, MAXIMO_FALLOS, error);
+                reencolar(carrito, instantanea);
+                return;
+            }
+            carritos.remove(usuarioId);
+            carrito.lineas.values().forEach(item -> duenos.remove(item.getId()));
+            log.error("Se descartan los cambios sin guardar del carrito del usuario {} después de {} intentos: {}",
+                    usuarioId, MAXIMO_FALLOS, instantanea, error);
+        } finally {
+            candado.unlock();
+        }
+    }
+    
+    private void reiniciarFallos(Long usuarioId) {
+        ReentrantLock candado = franja(usuarioId);
+        candado.lock();
+        try {
+            CarritoEnMemoria carrito = carritos.get(usuarioId);
+            if (carrito != null) carrito.fallos = 0;
+        } finally {
+            candado.unlock();
+        }
+    }
+    
+    // Si hay más carritos que el máximo se sacan de memoria los guardados usados hace más tiempo
+    private void desalojar() {
+        int exceso = carritos.size() - maximo;
+        if (exceso <= 0) return;
+        
+        record Acceso(Long usuarioId, long ultimoAcceso) {}
+        List<Acceso> candidatos = new ArrayList<>();
+        carritos.forEach((usuarioId, carrito) -> {
+            if (!carrito.pendiente) candidatos.add(new Acceso(usuarioId, carrito.ultimoAcceso));
+        });
+        candidatos.sort(Comparator.comparingLong(Acceso::ultimoAcceso));
+        
+        for (Acceso acceso : candidatos.subList(0, Math.min(exceso, candidatos.size()))) {
+            ReentrantLock candado = franja(acceso.usuarioId());
+            candado.lock();
+            try {
+                CarritoEnMemoria carrito = carritos.get(acceso.usuarioId());
+                if (carrito != null && !carrito.pendiente) {
+                    carritos.remove(acceso.usuarioId());
+                    carrito.lineas.values().forEach(item -> duenos.remove(item.getId()));
+                }
+            } finally {
+                candado.unlock();
+            }
+        }
+    }
+    
+    private record Instantanea(Carrito resumen, List<ItemCarrito> guardadas,
+                               List<ItemCarrito> nuevas, List<Long> eliminados, int fallos) {}
+}
@@ -0,0 +1,94 @@
+package com.example.carrito.memoria;
+
+import com.example.carrito.model.Carrito;
+import com.example.carrito.model.ItemCarrito;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Estado de un carrito en memoria. Solo se toca con el candado de su franja
+ * tomado (ver AlmacenCarritos).
+ */
+final class CarritoEnMemoria {
+    
+    final Long usuarioId;
+    // productoId -> línea; todas tienen id, aunque todavía no estén en la base
+    final Map<Long, ItemCarrito> lineas = new LinkedHashMap<>();
+    // ids de líneas agregadas que falta insertar
+    final Set<Long> nuevas = new HashSet<>();
+    // ids de líneas ya guardadas que se quitaron y falta borrar
+    final Set<Long> eliminados = new HashSet<>();
+    long version;
+    LocalDateTime actualizadoEn;
+    volatile boolean pendiente;
+    volatile long ultimoAcceso;
+    // Escrituras seguidas que fallaron con el carrito solo en su transacción
+    int fallos;
+    
+    CarritoEnMemoria(Long usuarioId, List<ItemCarrito> items, long version, LocalDateTime actualizadoEn) {
+        this.usuarioId = usuarioId;
+        items.forEach(item -> lineas.put(item.getProductoId(), item));
+        this.version = version;
+        this.actualizadoEn = actualizadoEn;
+    }
+    
+    ItemCarrito porId(Long itemId) {
+        for (ItemCarrito item : lineas.values()) {
+            if (itemId.equals(item.getId())) return item;
+        }
+        return null;
+    }
+    
+    void agregar(ItemCarrito item) {
+        lineas.put(item.getProductoId(), item);
+        nuevas.add(item.getId());
+    }
+    
+    // Una línea que nunca llegó a la base no hace falta borrarla
+    void quitar(ItemCarrito item) {
+        lineas.remove(item.getProductoId());
+        if (!nuevas.remove(item.getId())) eliminados.add(item.getId());
+    }
+    
+    void cambio() {
+        version++;
+        actualizadoEn = LocalDateTime.now();
+        pendiente = true;
+    }
+    
+    // Cambiaron los datos del catálogo: hay que escribirlo, pero no es un cambio del
+    // usuario, así que no mueve la versión ni actualizadoEn
+    void datosProductos() {
+        pendiente = true;
+    }
+    
+    double total() {
+        double total = 0;
+        for (ItemCarrito item : lineas.values()) {
+            total += item.getProductoPrecio() * item.getCantidad();
+        }
+        return total;
+    }
+    
+    Carrito resumen() {
+        return new Carrito(usuarioId, total(), lineas.size(), version, actualizadoEn);
+    }
+    
+    // Copias, para que nadie fuera del candado vea las líneas cambiar
+    List<ItemCarrito> copiaLineas() {
+        List<ItemCarrito> copia = new ArrayList<>(lineas.size());
+        lineas.values().forEach(item -> copia.add(copiar(item)));
+        return copia;
+    }
+    
+    static ItemCarrito copiar(ItemCarrito item) {
+        return new ItemCarrito(item.getId(), item.getUsuarioId(), item.getProductoId(),
+                item.getProductoNombre(), item.getProductoPrecio(), item.getCantidad(), item.getImageUrl());
+    }
+}
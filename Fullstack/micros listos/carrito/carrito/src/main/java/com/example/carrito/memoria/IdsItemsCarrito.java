@@ -0,0 +1,66 @@
+package com.example.carrito.memoria;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Ids para las líneas nuevas de los carritos en memoria. Se reservan de a bloques
+ * en la tabla id_generadores, así una línea tiene su id desde que se agrega y el
+ * cliente puede usarlo antes de que se escriba en MySQL.
+ *
+ * Cada bloque empieza por encima del mayor id de items_carrito, para no chocar con
+ * las líneas que se crearon con AUTO_INCREMENT antes de habilitar los carritos en memoria.
+ */
+@Component
+@ConditionalOnProperty(name = "carrito.memoria.habilitada", havingValue = "true")
+public class IdsItemsCarrito {
+
+    private static final String GENERADOR = "items_carrito";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int bloque;
+
+    // Ids reservados y sin usar: [siguiente, tope)
+    private long siguiente;
+    private long tope;
+
+    public IdsItemsCarrito(JdbcTemplate jdbcTemplate,
+                           TransactionTemplate transactionTemplate,
+                           @Value("${carrito.memoria.bloque-ids:1000}") int bloque) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.bloque = bloque;
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS id_generadores " +
+                "(nombre VARCHAR(64) NOT NULL PRIMARY KEY, siguiente BIGINT NOT NULL)");
+    }
+
+    // Deja reservados al menos "cantidad" ids. Se llama antes de tomar el candado de
+    // una franja, para que la consulta a la base no haga esperar a otros usuarios.
+    public synchronized void asegurar(int cantidad) {
+        if (tope - siguiente >= cantidad) return;
+        reservar(Math.max(bloque, cantidad));
+    }
+
+    public synchronized long siguiente() {
+        asegurar(1);
+        return siguiente++;
+    }
+
+    private void reservar(int cantidad) {
+        // LAST_INSERT_ID(expr) deja el valor nuevo en la conexión: la reserva y la lectura son atómicas
+        Long ultimo = transactionTemplate.execute(estado -> {
+            jdbcTemplate.update("INSERT IGNORE INTO id_generadores (nombre, siguiente) VALUES (?, 0)", GENERADOR);
+            jdbcTemplate.update(
+                    "UPDATE id_generadores SET siguiente = LAST_INSERT_ID(" +
+                    "GREATEST(siguiente, (SELECT COALESCE(MAX(id), 0) FROM items_carrito)) + ?) WHERE nombre = ?",
+                    cantidad, GENERADOR);
+            return jdbcTemplate.queryForObject("SELECT LAST_INSERT_ID()", Long.class);
+        });
+        siguiente = ultimo - cantidad + 1;
+        tope = ultimo + 1;
+    }
+}
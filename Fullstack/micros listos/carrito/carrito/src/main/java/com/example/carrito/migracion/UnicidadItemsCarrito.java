@@ -0,0 +1,57 @@
+package com.example.carrito.migracion;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Crea el índice único (usuario_id, producto_id) de items_carrito en bases que
+ * ya tenían líneas repetidas. Hibernate no puede agregarlo mientras existan
+ * duplicados, así que primero se juntan en la línea más antigua sumando las
+ * cantidades. Si el índice ya existe no hace nada.
+ *
+ * Corre antes de que arranque el servidor web: agregarAlCarrito se apoya en el
+ * índice y no puede recibir pedidos mientras todavía falta.
+ */
+@Component
+public class UnicidadItemsCarrito implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(UnicidadItemsCarrito.class);
+    private static final String INDICE = "uk_items_carrito_usuario_producto";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UnicidadItemsCarrito(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (existeIndice()) return;
+
+        int unificadas = jdbcTemplate.update(
+                "UPDATE items_carrito i JOIN (" +
+                "  SELECT MIN(id) AS id, SUM(cantidad) AS total FROM items_carrito " +
+                "  GROUP BY usuario_id, producto_id HAVING COUNT(*) > 1" +
+                ") d ON i.id = d.id SET i.cantidad = d.total");
+
+        int eliminadas = jdbcTemplate.update(
+                "DELETE i FROM items_carrito i JOIN items_carrito k " +
+                "ON i.usuario_id = k.usuario_id AND i.producto_id = k.producto_id AND i.id > k.id");
+
+        jdbcTemplate.execute("ALTER TABLE items_carrito ADD CONSTRAINT " + INDICE + " UNIQUE (usuario_id, producto_id)");
+
+        log.info("Índice único de items_carrito creado ({} líneas unificadas, {} duplicadas eliminadas)",
+                unificadas, eliminadas);
+    }
+
+    private boolean existeIndice() {
+        Integer indices = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.STATISTICS " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'items_carrito' AND INDEX_NAME = ?",
+                Integer.class, INDICE);
+        return indices != null && indices > 0;
+    }
+}
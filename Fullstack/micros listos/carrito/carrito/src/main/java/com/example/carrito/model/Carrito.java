@@ -0,0 +1,39 @@
+package com.example.carrito.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "carritos", indexes = {
+        // Para encontrar los carritos abandonados sin recorrer toda la tabla
+        @Index(name = "idx_carritos_actualizado_en", columnList = "actualizado_en")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Resumen del carrito de un usuario, se actualiza junto con sus items")
+public class Carrito {
+    
+    @Id
+    @Schema(description = "ID del usuario dueño del carrito")
+    private Long usuarioId;
+    
+    @Column(nullable = false)
+    @Schema(description = "Total del carrito (precio por cantidad de cada item)")
+    private Double total;
+    
+    @Column(nullable = false)
+    @Schema(description = "Cantidad de líneas del carrito")
+    private Integer cantidadItems;
+    
+    @Column(nullable = false)
+    @Schema(description = "Versión del carrito, aumenta con cada cambio")
+    private Long version;
+    
+    @Column(nullable = false)
+    @Schema(description = "Fecha del último cambio")
+    private LocalDateTime actualizadoEn;
+}
@@ -5,7 +5,13 @@ import jakarta.persistence.*;
 import lombok.*;
 
 @Entity
-@Table(name = "items_carrito")
+@Table(name = "items_carrito", uniqueConstraints = {
+        // Una sola línea por producto en cada carrito; también sirve de índice para buscar por usuario
+        @UniqueConstraint(name = "uk_items_carrito_usuario_producto", columnNames = {"usuario_id", "producto_id"})
+}, indexes = {
+        // La revalidación de precios recorre los producto_id distintos y actualiza las líneas por producto
+        @Index(name = "idx_items_carrito_producto", columnList = "producto_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,37 @@
+package com.example.carrito.repository;
+
+import com.example.carrito.model.Carrito;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Escritura por lotes de los resúmenes de carrito, para guardar muchos a la vez.
+ */
+@Repository
+public class CarritoJdbcRepository {
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public CarritoJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    // Crea o sobrescribe cada resumen con los valores indicados, versión incluida
+    public void guardar(List<Carrito> carritos) {
+        if (carritos.isEmpty()) return;
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO carritos (usuario_id, total, cantidad_items, version, actualizado_en) VALUES (?, ?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE total = VALUES(total), cantidad_items = VALUES(cantidad_items), " +
+                "version = VALUES(version), actualizado_en = VALUES(actualizado_en)",
+                carritos, carritos.size(), (ps, carrito) -> {
+                    ps.setLong(1, carrito.getUsuarioId());
+                    ps.setDouble(2, carrito.getTotal());
+                    ps.setInt(3, carrito.getCantidadItems());
+                    ps.setLong(4, carrito.getVersion());
+                    ps.setTimestamp(5, Timestamp.valueOf(carrito.getActualizadoEn()));
+                });
+    }
+}
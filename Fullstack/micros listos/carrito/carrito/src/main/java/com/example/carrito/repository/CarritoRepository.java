@@ -0,0 +1,46 @@
+package com.example.carrito.repository;
+
+import com.example.carrito.model.Carrito;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface CarritoRepository extends JpaRepository<Carrito, Long> {
+    
+    // Crea el resumen a partir de los items actuales (carritos anteriores a la tabla carritos)
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO carritos (usuario_id, total, cantidad_items, version, actualizado_en) " +
+                   "SELECT :usuarioId, COALESCE(SUM(producto_precio * cantidad), 0), COUNT(*), 0, NOW() " +
+                   "FROM items_carrito WHERE usuario_id = :usuarioId",
+           nativeQuery = true)
+    int crearDesdeItems(Long usuarioId);
+    
+    @Modifying
+    @Query(value = "UPDATE carritos SET total = total + :diferenciaTotal, cantidad_items = cantidad_items + :diferenciaItems, " +
+                   "version = version + 1, actualizado_en = NOW() WHERE usuario_id = :usuarioId",
+           nativeQuery = true)
+    int aplicarCambio(Long usuarioId, double diferenciaTotal, int diferenciaItems);
+    
+    // Bloquea el resumen hasta el fin de la transacción: serializa los cambios completos del carrito
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Carrito c WHERE c.usuarioId = :usuarioId")
+    Optional<Carrito> bloquear(Long usuarioId);
+    
+    @Modifying
+    @Query(value = "UPDATE carritos SET total = :total, cantidad_items = :cantidadItems, " +
+                   "version = version + 1, actualizado_en = NOW() WHERE usuario_id = :usuarioId",
+           nativeQuery = true)
+    int reemplazar(Long usuarioId, double total, int cantidadItems);
+    
+    @Modifying
+    @Query(value = "UPDATE carritos SET total = 0, cantidad_items = 0, version = version + 1, actualizado_en = NOW() " +
+                   "WHERE usuario_id = :usuarioId",
+           nativeQuery = true)
+    int vaciar(Long usuarioId);
+}
@@ -0,0 +1,102 @@
+package com.example.carrito.repository;
+
+import com.example.carrito.model.ItemCarrito;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Escrituras de varias líneas del carrito a la vez por JDBC. Con
+ * rewriteBatchedStatements=true el driver de MySQL agrupa cada lote en una
+ * sola sentencia. Se usa dentro de la transacción de JPA del servicio.
+ */
+@Repository
+public class ItemCarritoJdbcRepository {
+    
+    private static final String INSERTAR =
+            "INSERT INTO items_carrito (usuario_id, producto_id, producto_nombre, producto_precio, cantidad, image_url) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public ItemCarritoJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    // Inserta las líneas y asigna a cada una el id generado por la base
+    public void insertar(List<ItemCarrito> items) {
+        if (items.isEmpty()) return;
+        KeyHolder ids = new GeneratedKeyHolder();
+        
+        jdbcTemplate.batchUpdate(
+                con -> con.prepareStatement(INSERTAR, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ItemCarrito item = items.get(i);
+                        ps.setLong(1, item.getUsuarioId());
+                        ps.setLong(2, item.getProductoId());
+                        ps.setString(3, item.getProductoNombre());
+                        ps.setDouble(4, item.getProductoPrecio());
+                        ps.setInt(5, item.getCantidad());
+                        ps.setString(6, item.getImageUrl());
+                    }
+                    
+                    @Override
+                    public int getBatchSize() {
+                        return items.size();
+                    }
+                },
+                ids);
+        
+        List<Map<String, Object>> generados = ids.getKeyList();
+        for (int i = 0; i < items.size() && i < generados.size(); i++) {
+            Number id = (Number) generados.get(i).values().iterator().next();
+            items.get(i).setId(id.longValue());
+        }
+    }
+    
+    // Inserta las líneas con el id que ya traen (reservado de antemano, ver IdsItemsCarrito)
+    public void insertarConIds(List<ItemCarrito> items) {
+        if (items.isEmpty()) return;
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO items_carrito (id, usuario_id, producto_id, producto_nombre, producto_precio, cantidad, image_url) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?)",
+                items, items.size(), (ps, item) -> {
+                    ps.setLong(1, item.getId());
+                    ps.setLong(2, item.getUsuarioId());
+                    ps.setLong(3, item.getProductoId());
+                    ps.setString(4, item.getProductoNombre());
+                    ps.setDouble(5, item.getProductoPrecio());
+                    ps.setInt(6, item.getCantidad());
+                    ps.setString(7, item.getImageUrl());
+                });
+    }
+    
+    // itemId -> nueva cantidad
+    public void actualizarCantidades(Map<Long, Integer> cantidades) {
+        if (cantidades.isEmpty()) return;
+        List<Map.Entry<Long, Integer>> cambios = List.copyOf(cantidades.entrySet());
+        jdbcTemplate.batchUpdate(
+                "UPDATE items_carrito SET cantidad = ? WHERE id = ?",
+                cambios, cambios.size(), (ps, cambio) -> {
+                    ps.setInt(1, cambio.getValue());
+                    ps.setLong(2, cambio.getKey());
+                });
+    }
+    
+    public void eliminar(List<Long> itemIds) {
+        if (itemIds.isEmpty()) return;
+        jdbcTemplate.batchUpdate(
+                "DELETE FROM items_carrito WHERE id = ?",
+                itemIds, itemIds.size(), (ps, id) -> ps.setLong(1, id));
+    }
+}
@@ -1,9 +1,13 @@
 package com.example.carrito.repository;
 
 import com.example.carrito.model.ItemCarrito;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -17,6 +21,26 @@ public interface ItemCarritoRepository extends JpaRepository<ItemCarrito, Long>
     
     void deleteByUsuarioId(Long usuarioId);
     
-    @Query("SELECT SUM(i.productoPrecio * i.cantidad) FROM ItemCarrito i WHERE i.usuarioId = :usuarioId")
-    Double calcularTotal(Long usuarioId);
+    // Lectura con bloqueo (SELECT ... FOR UPDATE): ve la línea confirmada más reciente
+    // aunque la transacción ya haya leído antes
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT i FROM ItemCarrito i WHERE i.id = :id")
+    Optional<ItemCarrito> bloquearPorId(Long id);
+    
+    // Solo el dueño de la línea, sin cargar la entidad: si quedara en el contexto de
+    // persistencia, la lectura con bloqueo posterior devolvería esa copia y no la fila actual
+    @Query("SELECT i.usuarioId FROM ItemCarrito i WHERE i.id = :id")
+    Optional<Long> findUsuarioIdById(Long id);
+    
+    // Agrega la línea o suma la cantidad si ya existe, en una sola sentencia atómica
+    // (se apoya en el índice único usuario_id + producto_id). MySQL devuelve 1 si insertó
+    // y 2 si actualizó una línea existente
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO items_carrito (usuario_id, producto_id, producto_nombre, producto_precio, cantidad, image_url) " +
+                   "VALUES (:usuarioId, :productoId, :productoNombre, :productoPrecio, :cantidad, :imageUrl) " +
+                   "ON DUPLICATE KEY UPDATE cantidad = cantidad + :cantidad",
+           nativeQuery = true)
+    int agregarOSumar(Long usuarioId, Long productoId, String productoNombre,
+                      Double productoPrecio, Integer cantidad, String imageUrl);
 }
\ No newline at end of file
@@ -2,28 +2,53 @@ package com.example.carrito.service;
 
 import com.example.carrito.Client.ProductoClient;
 import com.example.carrito.Client.UsuarioClient;
+import com.example.carrito.memoria.AlmacenCarritos;
+import com.example.carrito.model.Carrito;
 import com.example.carrito.model.ItemCarrito;
+import com.example.carrito.repository.CarritoRepository;
+import com.example.carrito.repository.ItemCarritoJdbcRepository;
 import com.example.carrito.repository.ItemCarritoRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeSet;
 
 @Service
 public class CarritoService {
     
     private final ItemCarritoRepository itemCarritoRepository;
+    private final ItemCarritoJdbcRepository itemCarritoJdbcRepository;
+    private final CarritoRepository carritoRepository;
     private final ProductoClient productoClient;
     private final UsuarioClient usuarioClient;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate lecturaTemplate;
+    // Solo existe con carrito.memoria.habilitada=true; si es null se trabaja directo sobre MySQL
+    private final AlmacenCarritos almacen;
     
-    public CarritoService(ItemCarritoRepository itemCarritoRepository, 
+    public CarritoService(ItemCarritoRepository itemCarritoRepository,
+                         ItemCarritoJdbcRepository itemCarritoJdbcRepository,
+                         CarritoRepository carritoRepository,
                          ProductoClient productoClient,
-                         UsuarioClient usuarioClient) {
+                         UsuarioClient usuarioClient,
+                         TransactionTemplate transactionTemplate,
+                         Optional<AlmacenCarritos> almacen) {
         this.itemCarritoRepository = itemCarritoRepository;
+        this.itemCarritoJdbcRepository = itemCarritoJdbcRepository;
+        this.carritoRepository = carritoRepository;
         this.productoClient = productoClient;
         this.usuarioClient = usuarioClient;
+        this.transactionTemplate = transactionTemplate;
+        this.lecturaTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.lecturaTemplate.setReadOnly(true);
+        this.almacen = almacen.orElse(null);
     }
     
     // Obtener items del carrito de un usuario
@@ -34,91 +59,240 @@ public class CarritoService {
             throw new IllegalArgumentException("Usuario no encontrado");
         }
         
+        if (almacen != null) return almacen.items(usuarioId);
         return itemCarritoRepository.findByUsuarioId(usuarioId);
     }
     
     // Agregar producto al carrito
-    @Transactional
+    // La transacción empieza después de consultar a los otros servicios, así no
+    // se tiene una conexión tomada mientras se espera la respuesta
     public ItemCarrito agregarAlCarrito(Long usuarioId, Long productoId, Integer cantidad) {
+        if (cantidad == null || cantidad <= 0) {
+            throw new IllegalArgumentException("La cantidad debe ser mayor a 0");
+        }
+        
+        // Usuario y producto se consultan a la vez: la espera es la del más lento, no la suma
+        var consultas = Mono.zip(
+                usuarioClient.buscarUsuario(usuarioId).defaultIfEmpty(Optional.empty()),
+                productoClient.buscarProducto(productoId).map(Optional::of).defaultIfEmpty(Optional.empty())
+        ).block();
+        
         // Validar que el usuario existe
-        Map<String, Object> usuario = usuarioClient.obtenerUsuarioPorId(usuarioId);
-        if (usuario == null) {
+        if (consultas.getT1().isEmpty()) {
             throw new IllegalArgumentException("Usuario no encontrado");
         }
         
         // Validar que el producto existe en el microservicio de Catálogo
-        Map<String, Object> producto = productoClient.obtenerProductoPorId(productoId);
+        Map<String, Object> producto = consultas.getT2().orElse(null);
         if (producto == null) {
             throw new IllegalArgumentException("Producto no encontrado");
         }
         
-        // Verificar si el producto ya está en el carrito
-        Optional<ItemCarrito> itemExistente = itemCarritoRepository.findByUsuarioIdAndProductoId(usuarioId, productoId);
-        
-        if (itemExistente.isPresent()) {
-            // Actualizar cantidad
-            ItemCarrito item = itemExistente.get();
-            item.setCantidad(item.getCantidad() + cantidad);
-            return itemCarritoRepository.save(item);
-        } else {
-            // Crear nuevo item
-            ItemCarrito nuevoItem = new ItemCarrito();
-            nuevoItem.setUsuarioId(usuarioId);
-            nuevoItem.setProductoId(productoId);
-            nuevoItem.setProductoNombre((String) producto.get("nombre"));
+        // Manejo seguro del precio (puede venir como Integer o Double)
+        Object precioObj = producto.get("precio");
+        Double precio = precioObj instanceof Integer 
+            ? ((Integer) precioObj).doubleValue() 
+            : (Double) precioObj;
+        
+        if (almacen != null) {
+            return almacen.agregar(usuarioId, productoId, (String) producto.get("nombre"), precio,
+                    cantidad, (String) producto.get("imageUrl"));
+        }
+        
+        return transactionTemplate.execute(estado -> {
+            asegurarResumen(usuarioId);
             
-            // Manejo seguro del precio (puede venir como Integer o Double)
-            Object precioObj = producto.get("precio");
-            Double precio = precioObj instanceof Integer 
-                ? ((Integer) precioObj).doubleValue() 
-                : (Double) precioObj;
-            nuevoItem.setProductoPrecio(precio);
+            // El resumen se bloquea antes de tocar la línea, en el mismo orden que los demás
+            // cambios al carrito, para que dos de ellos no se esperen mutuamente
+            carritoRepository.bloquear(usuarioId);
             
-            nuevoItem.setCantidad(cantidad);
-            nuevoItem.setImageUrl((String) producto.get("imageUrl"));
+            // 1 fila afectada: la línea es nueva; 2: ya existía y se sumó la cantidad
+            int filas = itemCarritoRepository.agregarOSumar(
+                    usuarioId,
+                    productoId,
+                    (String) producto.get("nombre"),
+                    precio,
+                    cantidad,
+                    (String) producto.get("imageUrl"));
             
-            return itemCarritoRepository.save(nuevoItem);
+            // La línea existente conserva el precio con que se agregó la primera vez:
+            // el total se suma con el precio guardado, no con el actual del catálogo
+            ItemCarrito item = itemCarritoRepository.findByUsuarioIdAndProductoId(usuarioId, productoId).orElseThrow();
+            carritoRepository.aplicarCambio(usuarioId, item.getProductoPrecio() * cantidad, filas == 1 ? 1 : 0);
+            return item;
+        });
+    }
+    
+    // Reemplazar el carrito completo por el estado deseado (productoId -> cantidad).
+    // Los productos que no están en el mapa, o con cantidad 0, se quitan. Si se indica
+    // versionEsperada y el carrito cambió desde entonces se lanza ConflictoCarritoException.
+    public Map<String, Object> reemplazarCarrito(Long usuarioId, Map<Long, Integer> deseado, Long versionEsperada) {
+        Map<String, Object> usuario = usuarioClient.obtenerUsuarioPorId(usuarioId);
+        if (usuario == null) {
+            throw new IllegalArgumentException("Usuario no encontrado");
+        }
+        
+        Map<Long, Integer> cantidades = new HashMap<>();
+        deseado.forEach((productoId, cantidad) -> {
+            if (cantidad < 0) {
+                throw new IllegalArgumentException("Cantidad inválida para el producto " + productoId);
+            }
+            if (cantidad > 0) cantidades.put(productoId, cantidad);
+        });
+        
+        // Todos los productos en una sola consulta al catálogo, antes de abrir la transacción
+        Map<Long, Map<String, Object>> productos = cantidades.isEmpty()
+                ? Map.of()
+                : productoClient.obtenerProductosPorIds(cantidades.keySet());
+        if (productos == null) {
+            throw new IllegalStateException("No se pudo consultar el catálogo");
+        }
+        TreeSet<Long> noEncontrados = new TreeSet<>(cantidades.keySet());
+        noEncontrados.removeAll(productos.keySet());
+        if (!noEncontrados.isEmpty()) {
+            throw new IllegalArgumentException("Productos no encontrados: " + noEncontrados);
         }
+        
+        if (almacen != null) {
+            Carrito resumen = almacen.reemplazar(usuarioId, cantidades,
+                    productoId -> nuevaLinea(usuarioId, productoId, cantidades.get(productoId), productos.get(productoId)),
+                    versionEsperada);
+            return detalles(usuario, almacen.items(usuarioId), resumen);
+        }
+        
+        EstadoCarrito reemplazado = transactionTemplate.execute(estado -> {
+            asegurarResumen(usuarioId);
+            Carrito actual = carritoRepository.bloquear(usuarioId).orElseThrow();
+            if (versionEsperada != null && !versionEsperada.equals(actual.getVersion())) {
+                throw new ConflictoCarritoException(actual.getVersion());
+            }
+            
+            List<Long> eliminar = new ArrayList<>();
+            Map<Long, Integer> actualizar = new HashMap<>();
+            Map<Long, Integer> pendientes = new HashMap<>(cantidades);
+            // Estado final del carrito. Las entidades leídas no se tocan: los cambios van por
+            // JDBC y esas entidades siguen en el contexto de persistencia con las cantidades viejas
+            List<ItemCarrito> items = new ArrayList<>();
+            double total = 0;
+            
+            for (ItemCarrito item : itemCarritoRepository.findByUsuarioId(usuarioId)) {
+                Integer cantidad = pendientes.remove(item.getProductoId());
+                if (cantidad == null) {
+                    eliminar.add(item.getId());
+                    continue;
+                }
+                if (!cantidad.equals(item.getCantidad())) {
+                    actualizar.put(item.getId(), cantidad);
+                }
+                items.add(new ItemCarrito(item.getId(), usuarioId, item.getProductoId(), item.getProductoNombre(),
+                        item.getProductoPrecio(), cantidad, item.getImageUrl()));
+                // Igual que al agregar, las líneas existentes conservan su precio
+                total += item.getProductoPrecio() * cantidad;
+            }
+            
+            List<ItemCarrito> nuevos = new ArrayList<>();
+            pendientes.forEach((productoId, cantidad) ->
+                    nuevos.add(nuevaLinea(usuarioId, productoId, cantidad, productos.get(productoId))));
+            for (ItemCarrito item : nuevos) {
+                total += item.getProductoPrecio() * item.getCantidad();
+            }
+            
+            itemCarritoJdbcRepository.eliminar(eliminar);
+            itemCarritoJdbcRepository.actualizarCantidades(actualizar);
+            itemCarritoJdbcRepository.insertar(nuevos);
+            items.addAll(nuevos);
+            carritoRepository.reemplazar(usuarioId, total, cantidades.size());
+            return new EstadoCarrito(
+                    new Carrito(usuarioId, total, cantidades.size(), actual.getVersion() + 1, null), items);
+        });
+        
+        return detalles(usuario, reemplazado.items(), reemplazado.resumen());
+    }
+    
+    private record EstadoCarrito(Carrito resumen, List<ItemCarrito> items) {}
+    
+    private static ItemCarrito nuevaLinea(Long usuarioId, Long productoId, Integer cantidad, Map<String, Object> producto) {
+        double precio = ((Number) producto.get("precio")).doubleValue();
+        return new ItemCarrito(null, usuarioId, productoId,
+                (String) producto.get("nombre"), precio, cantidad, (String) producto.get("imageUrl"));
     }
     
     // Actualizar cantidad de un item
+    @Transactional
     public Optional<ItemCarrito> actualizarCantidad(Long itemId, Integer nuevaCantidad) {
-        Optional<ItemCarrito> item = itemCarritoRepository.findById(itemId);
+        // La línea puede existir solo en memoria, o estar quitada en memoria y todavía en la base
+        if (almacen != null) return almacen.actualizarCantidad(itemId, nuevaCantidad);
+        
+        Optional<ItemCarrito> item = bloquearLinea(itemId);
         
         if (item.isPresent()) {
             ItemCarrito itemActual = item.get();
             
             if (nuevaCantidad <= 0) {
                 itemCarritoRepository.delete(itemActual);
+                carritoRepository.aplicarCambio(itemActual.getUsuarioId(),
+                        -itemActual.getProductoPrecio() * itemActual.getCantidad(), -1);
                 return Optional.empty();
             }
             
+            double diferencia = itemActual.getProductoPrecio() * (nuevaCantidad - itemActual.getCantidad());
             itemActual.setCantidad(nuevaCantidad);
-            return Optional.of(itemCarritoRepository.save(itemActual));
+            ItemCarrito guardado = itemCarritoRepository.save(itemActual);
+            carritoRepository.aplicarCambio(itemActual.getUsuarioId(), diferencia, 0);
+            return Optional.of(guardado);
         }
         
         return Optional.empty();
     }
     
     // Eliminar item del carrito
+    @Transactional
     public boolean eliminarItem(Long itemId) {
-        if (itemCarritoRepository.existsById(itemId)) {
-            itemCarritoRepository.deleteById(itemId);
+        if (almacen != null) return almacen.eliminarItem(itemId);
+        
+        Optional<ItemCarrito> item = bloquearLinea(itemId);
+        
+        if (item.isPresent()) {
+            ItemCarrito itemActual = item.get();
+            itemCarritoRepository.delete(itemActual);
+            carritoRepository.aplicarCambio(itemActual.getUsuarioId(),
+                    -itemActual.getProductoPrecio() * itemActual.getCantidad(), -1);
             return true;
         }
         return false;
     }
     
+    // Bloquea el resumen y después la línea, en el mismo orden que agregarAlCarrito.
+    // La línea se lee con bloqueo: la diferencia que se aplica al resumen se calcula
+    // sobre la cantidad confirmada, no sobre la de una lectura anterior
+    private Optional<ItemCarrito> bloquearLinea(Long itemId) {
+        Optional<Long> usuarioId = itemCarritoRepository.findUsuarioIdById(itemId);
+        if (usuarioId.isEmpty()) return Optional.empty();
+        
+        asegurarResumen(usuarioId.get());
+        carritoRepository.bloquear(usuarioId.get());
+        // Puede haberse quitado entre las dos lecturas
+        return itemCarritoRepository.bloquearPorId(itemId);
+    }
+    
     // Vaciar carrito completo de un usuario
-    @Transactional
     public void vaciarCarrito(Long usuarioId) {
-        // Validar que el usuario existe
+        // Validar que el usuario existe, antes de abrir la transacción
         Map<String, Object> usuario = usuarioClient.obtenerUsuarioPorId(usuarioId);
         if (usuario == null) {
             throw new IllegalArgumentException("Usuario no encontrado");
         }
         
-        itemCarritoRepository.deleteByUsuarioId(usuarioId);
+        if (almacen != null) {
+            almacen.vaciar(usuarioId);
+            return;
+        }
+        transactionTemplate.executeWithoutResult(estado -> {
+            asegurarResumen(usuarioId);
+            carritoRepository.bloquear(usuarioId);
+            itemCarritoRepository.deleteByUsuarioId(usuarioId);
+            carritoRepository.vaciar(usuarioId);
+        });
     }
     
     // Calcular total del carrito
@@ -129,8 +303,29 @@ public class CarritoService {
             throw new IllegalArgumentException("Usuario no encontrado");
         }
         
-        Double total = itemCarritoRepository.calcularTotal(usuarioId);
-        return total != null ? total : 0.0;
+        return totalDelCarrito(usuarioId);
+    }
+    
+    // Total sin volver a validar al usuario: se lee del resumen, sin sumar los items
+    private Double totalDelCarrito(Long usuarioId) {
+        return obtenerResumen(usuarioId).getTotal();
+    }
+    
+    // Resumen del carrito (total, cantidad de items, versión); se crea la primera vez que se pide
+    public Carrito obtenerResumen(Long usuarioId) {
+        if (almacen != null) return almacen.resumen(usuarioId);
+        return carritoRepository.findById(usuarioId).orElseGet(() -> transactionTemplate.execute(estado -> {
+            carritoRepository.crearDesdeItems(usuarioId);
+            return carritoRepository.findById(usuarioId).orElseThrow();
+        }));
+    }
+    
+    // Debe llamarse dentro de la transacción y antes de tocar los items: si el resumen
+    // no existía se arma con el estado anterior y después se le aplica la diferencia
+    private void asegurarResumen(Long usuarioId) {
+        if (!carritoRepository.existsById(usuarioId)) {
+            carritoRepository.crearDesdeItems(usuarioId);
+        }
     }
     
     // Método auxiliar para obtener información del usuario y producto juntos
@@ -140,14 +335,33 @@ public class CarritoService {
             throw new IllegalArgumentException("Usuario no encontrado");
         }
         
-        List<ItemCarrito> items = itemCarritoRepository.findByUsuarioId(usuarioId);
-        Double total = calcularTotal(usuarioId);
-        
+        // Líneas y versión tienen que salir de la misma lectura: con una versión más nueva
+        // que las líneas, vaciar el carrito con esa versión borraría lo agregado en el medio
+        if (almacen != null) {
+            return almacen.leer(usuarioId, (items, resumen) -> detalles(usuario, items, resumen));
+        }
+        EstadoCarrito leido = lecturaTemplate.execute(estado -> {
+            List<ItemCarrito> items = itemCarritoRepository.findByUsuarioId(usuarioId);
+            // Sin resumen se arma desde las mismas líneas, como lo haría crearDesdeItems
+            Carrito resumen = carritoRepository.findById(usuarioId).orElseGet(() -> new Carrito(usuarioId,
+                    items.stream().mapToDouble(item -> item.getProductoPrecio() * item.getCantidad()).sum(),
+                    items.size(), 0L, null));
+            return new EstadoCarrito(resumen, items);
+        });
+        return detalles(usuario, leido.items(), leido.resumen());
+    }
+    
+    private static Map<String, Object> detalles(Map<String, Object> usuario, List<ItemCarrito> items, Carrito resumen) {
         return Map.of(
             "usuario", usuario,
             "items", items,
-            "total", total,
-            "cantidadItems", items.size()
+            "total", resumen.getTotal(),
+            "cantidadItems", resumen.getCantidadItems(),
+            "version", resumen.getVersion()
         );
     }
+    
+    public Map<String, Object> estadisticasCacheUsuarios() {
+        return usuarioClient.estadisticasCache();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.example.carrito.service;
+
+/**
+ * El carrito cambió desde la versión que tenía el cliente. Se responde 409 para
+ * que vuelva a leerlo antes de reenviar sus cambios.
+ */
+public class ConflictoCarritoException extends RuntimeException {
+    
+    private final long versionActual;
+    
+    public ConflictoCarritoException(long versionActual) {
+        super("El carrito fue modificado, versión actual: " + versionActual);
+        this.versionActual = versionActual;
+    }
+    
+    public long getVersionActual() {
+        return versionActual;
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.carrito.tareas;
+
+import com.example.carrito.memoria.AlmacenCarritos;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Borra los carritos abandonados: los que no cambian desde hace más de
+ * "carrito.compactacion.ttl" según carritos.actualizado_en. Trabaja de a lotes
+ * chicos, cada uno en su propia transacción, para no bloquear muchas filas a la vez.
+ */
+@Component
+public class CompactacionCarritos {
+    
+    private static final Logger log = LoggerFactory.getLogger(CompactacionCarritos.class);
+    
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final AlmacenCarritos almacen;
+    private final boolean habilitada;
+    private final Duration ttl;
+    private final int lote;
+    
+    private final AtomicLong ejecuciones = new AtomicLong();
+    private final AtomicLong carritosEliminados = new AtomicLong();
+    private final AtomicLong itemsEliminados = new AtomicLong();
+    private final AtomicLong milisegundosTotales = new AtomicLong();
+    private volatile long milisegundosUltima;
+    private volatile LocalDateTime ultimaEjecucion;
+    
+    public CompactacionCarritos(NamedParameterJdbcTemplate jdbc,
+                                TransactionTemplate transactionTemplate,
+                                Optional<AlmacenCarritos> almacen,
+                                @Value("${carrito.compactacion.habilitada:true}") boolean habilitada,
+                                @Value("${carrito.compactacion.ttl:30d}") Duration ttl,
+                                @Value("${carrito.compactacion.lote:500}") int lote) {
+        this.jdbc = jdbc;
+        this.transactionTemplate = transactionTemplate;
+        this.almacen = almacen.orElse(null);
+        this.habilitada = habilitada;
+        this.ttl = ttl;
+        this.lote = lote;
+    }
+    
+    @Scheduled(initialDelayString = "${carrito.compactacion.intervalo:1h}",
+               fixedDelayString = "${carrito.compactacion.intervalo:1h}")
+    public void compactar() {
+        if (!habilitada) return;
+        long inicio = System.nanoTime();
+        
+        // Carritos anteriores a la tabla carritos: se les crea el resumen y cuentan desde ahora
+        jdbc.getJdbcTemplate().update(
+                "INSERT IGNORE INTO carritos (usuario_id, total, cantidad_items, version, actualizado_en) " +
+                "SELECT i.usuario_id, SUM(i.producto_precio * i.cantidad), COUNT(*), 0, NOW() " +
+                "FROM items_carrito i LEFT JOIN carritos c ON c.usuario_id = i.usuario_id " +
+                "WHERE c.usuario_id IS NULL GROUP BY i.usuario_id");
+        
+        Timestamp limite = Timestamp.valueOf(LocalDateTime.now().minus(ttl));
+        long carritos = 0;
+        long items = 0;
+        long ultimoId = 0;
+        
+        // Se avanza por clave primaria: los carritos que se saltean no vuelven a aparecer
+        while (true) {
+            List<Long> candidatos = jdbc.queryForList(
+                    "SELECT usuario_id FROM carritos WHERE usuario_id > :desde AND actualizado_en < :limite " +
+                    "ORDER BY usuario_id LIMIT :lote",
+                    new MapSqlParameterSource("desde", ultimoId).addValue("limite", limite).addValue("lote", lote),
+                    Long.class);
+            if (candidatos.isEmpty()) break;
+            ultimoId = candidatos.get(candidatos.size() - 1);
+            
+            // Los carritos cargados en memoria están en uso aunque la base todavía no lo refleje.
+            // Los demás quedan reservados en el almacén mientras se borran, para que no se
+            // carguen entre la comprobación y el borrado
+            long[] eliminados = almacen == null
+                    ? eliminar(candidatos, limite)
+                    : almacen.sinCargar(candidatos, libres -> eliminar(libres, limite));
+            carritos += eliminados[0];
+            items += eliminados[1];
+            if (candidatos.size() < lote) break;
+        }
+        
+        long milisegundos = Duration.ofNanos(System.nanoTime() - inicio).toMillis();
+        ejecuciones.incrementAndGet();
+        carritosEliminados.addAndGet(carritos);
+        itemsEliminados.addAndGet(items);
+        milisegundosTotales.addAndGet(milisegundos);
+        milisegundosUltima = milisegundos;
+        ultimaEjecucion = LocalDateTime.now();
+        
+        if (carritos > 0) {
+            log.info("Compactación: {} carritos abandonados eliminados ({} items) en {} ms", carritos, items, milisegundos);
+        }
+    }
+    
+    // Vuelve a comprobar la fecha con la fila bloqueada: si el carrito se tocó
+    // entre la búsqueda y el borrado, se deja
+    private long[] eliminar(List<Long> candidatos, Timestamp limite) {
+        if (candidatos.isEmpty()) return new long[]{0, 0};
+        return transactionTemplate.execute(estado -> {
+            MapSqlParameterSource parametros = new MapSqlParameterSource("ids", candidatos).addValue("limite", limite);
+            List<Long> vencidos = jdbc.queryForList(
+                    "SELECT usuario_id FROM carritos WHERE usuario_id IN (:ids) AND actualizado_en < :limite FOR UPDATE",
+                    parametros, Long.class);
+            if (vencidos.isEmpty()) return new long[]{0, 0};
+            
+            MapSqlParameterSource ids = new MapSqlParameterSource("ids", vencidos);
+            int items = jdbc.update("DELETE FROM items_carrito WHERE usuario_id IN (:ids)", ids);
+            int carritos = jdbc.update("DELETE FROM carritos WHERE usuario_id IN (:ids)", ids);
+            return new long[]{carritos, items};
+        });
+    }
+    
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> datos = new LinkedHashMap<>();
+        datos.put("habilitada", habilitada);
+        datos.put("ttl", ttl.toString());
+        datos.put("ejecuciones", ejecuciones.get());
+        datos.put("carritosEliminados", carritosEliminados.get());
+        datos.put("itemsEliminados", itemsEliminados.get());
+        datos.put("milisegundosUltima", milisegundosUltima);
+        datos.put("milisegundosTotales", milisegundosTotales.get());
+        datos.put("ultimaEjecucion", ultimaEjecucion);
+        return datos;
+    }
+}
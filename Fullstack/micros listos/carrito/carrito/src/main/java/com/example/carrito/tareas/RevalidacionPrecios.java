@@ -0,0 +1,158 @@
+package com.example.carrito.tareas;
+
+import com.example.carrito.Client.ProductoClient;
+import com.example.carrito.memoria.AlmacenCarritos;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Actualiza nombre, precio e imagen de las líneas de carrito con los datos
+ * actuales del catálogo. Recorre los productos distintos que hay en carritos
+ * de a lotes, pide cada lote en una sola llamada a /productos/batch y corrige
+ * solo las líneas que quedaron desactualizadas, junto con el resumen de sus
+ * carritos. Así las lecturas del carrito no tienen que consultar al catálogo.
+ *
+ * El recálculo no toca la versión ni actualizado_en del carrito: las dos reflejan
+ * los cambios del usuario. Si se movieran, la compactación nunca vencería un
+ * carrito abandonado y un PUT con la versión leída recibiría un 409 que el
+ * usuario no provocó.
+ */
+@Component
+@ConditionalOnProperty(name = "carrito.precios.habilitada", havingValue = "true", matchIfMissing = true)
+public class RevalidacionPrecios {
+    
+    private static final Logger log = LoggerFactory.getLogger(RevalidacionPrecios.class);
+    
+    private final NamedParameterJdbcTemplate jdbc;
+    private final ProductoClient productoClient;
+    private final TransactionTemplate transactionTemplate;
+    private final AlmacenCarritos almacen;
+    private final int lote;
+    
+    public RevalidacionPrecios(NamedParameterJdbcTemplate jdbc,
+                               ProductoClient productoClient,
+                               TransactionTemplate transactionTemplate,
+                               Optional<AlmacenCarritos> almacen,
+                               @Value("${carrito.precios.lote:500}") int lote) {
+        this.jdbc = jdbc;
+        this.productoClient = productoClient;
+        this.transactionTemplate = transactionTemplate;
+        this.almacen = almacen.orElse(null);
+        this.lote = lote;
+    }
+    
+    @Scheduled(initialDelayString = "${carrito.precios.intervalo:15m}",
+               fixedDelayString = "${carrito.precios.intervalo:15m}")
+    public void revalidar() {
+        long ultimoId = 0;
+        int productos = 0;
+        int carritos = 0;
+        
+        while (true) {
+            List<Long> ids = jdbc.queryForList(
+                    "SELECT DISTINCT producto_id FROM items_carrito WHERE producto_id > :desde " +
+                    "ORDER BY producto_id LIMIT :lote",
+                    new MapSqlParameterSource("desde", ultimoId).addValue("lote", lote),
+                    Long.class);
+            if (ids.isEmpty()) break;
+            
+            Map<Long, Map<String, Object>> catalogo = productoClient.obtenerProductosPorIds(ids);
+            if (catalogo == null) {
+                // Se reintenta entero en la próxima ejecución
+                log.warn("Revalidación de precios interrumpida: el catálogo no respondió");
+                return;
+            }
+            
+            Map<Long, Map<String, Object>> cambiados = desactualizados(ids, catalogo);
+            if (!cambiados.isEmpty()) {
+                carritos += transactionTemplate.execute(estado -> actualizar(cambiados));
+                if (almacen != null) almacen.aplicarDatosProductos(cambiados);
+                productos += cambiados.size();
+            }
+            ultimoId = ids.get(ids.size() - 1);
+        }
+        
+        if (productos > 0) {
+            log.info("Revalidación de precios: {} productos cambiados, {} carritos recalculados", productos, carritos);
+        }
+    }
+    
+    // Productos del lote cuyas líneas tienen algún dato distinto al del catálogo.
+    // Los que ya no existen en el catálogo se dejan como están.
+    private Map<Long, Map<String, Object>> desactualizados(List<Long> ids, Map<Long, Map<String, Object>> catalogo) {
+        Map<Long, Map<String, Object>> cambiados = new HashMap<>();
+        jdbc.query(
+                "SELECT DISTINCT producto_id, producto_nombre, producto_precio, image_url " +
+                "FROM items_carrito WHERE producto_id IN (:ids)",
+                new MapSqlParameterSource("ids", ids),
+                rs -> {
+                    long productoId = rs.getLong("producto_id");
+                    Map<String, Object> producto = catalogo.get(productoId);
+                    if (producto == null) return;
+                    if (!Objects.equals(rs.getString("producto_nombre"), producto.get("nombre"))
+                            || rs.getDouble("producto_precio") != precio(producto)
+                            || !Objects.equals(rs.getString("image_url"), producto.get("imageUrl"))) {
+                        cambiados.put(productoId, producto);
+                    }
+                });
+        return cambiados;
+    }
+    
+    // Devuelve cuántos carritos se recalcularon
+    private int actualizar(Map<Long, Map<String, Object>> cambiados) {
+        List<Long> usuarios = jdbc.queryForList(
+                "SELECT DISTINCT usuario_id FROM items_carrito WHERE producto_id IN (:ids) ORDER BY usuario_id",
+                new MapSqlParameterSource("ids", cambiados.keySet()),
+                Long.class);
+        if (usuarios.isEmpty()) return 0;
+        
+        // Primero los resúmenes y después las líneas, en el mismo orden que los cambios
+        // del usuario; al revés, un agregado al carrito y esta tarea podían trabarse
+        MapSqlParameterSource deUsuarios = new MapSqlParameterSource("usuarios", usuarios);
+        jdbc.queryForList(
+                "SELECT usuario_id FROM carritos WHERE usuario_id IN (:usuarios) ORDER BY usuario_id FOR UPDATE",
+                deUsuarios, Long.class);
+        
+        // Solo las líneas de esos carritos: una agregada después de la consulta se corrige
+        // en la próxima ejecución, sin cambiarle el precio a un carrito que no está bloqueado
+        List<MapSqlParameterSource> parametros = new ArrayList<>(cambiados.size());
+        cambiados.forEach((productoId, producto) -> parametros.add(new MapSqlParameterSource()
+                .addValue("productoId", productoId)
+                .addValue("nombre", producto.get("nombre"))
+                .addValue("precio", precio(producto))
+                .addValue("imageUrl", producto.get("imageUrl"))
+                .addValue("usuarios", usuarios)));
+        
+        jdbc.batchUpdate(
+                "UPDATE items_carrito SET producto_nombre = :nombre, producto_precio = :precio, image_url = :imageUrl " +
+                "WHERE producto_id = :productoId AND usuario_id IN (:usuarios)",
+                parametros.toArray(MapSqlParameterSource[]::new));
+        
+        // Los carritos con alguno de esos productos recalculan su resumen desde las líneas
+        return jdbc.update(
+                "UPDATE carritos c JOIN (" +
+                "  SELECT usuario_id, SUM(producto_precio * cantidad) AS total, COUNT(*) AS lineas " +
+                "  FROM items_carrito WHERE usuario_id IN (:usuarios) GROUP BY usuario_id" +
+                ") t ON c.usuario_id = t.usuario_id " +
+                "SET c.total = t.total, c.cantidad_items = t.lineas",
+                deUsuarios);
+    }
+    
+    private static double precio(Map<String, Object> producto) {
+        return ((Number) producto.get("precio")).doubleValue();
+    }
+}
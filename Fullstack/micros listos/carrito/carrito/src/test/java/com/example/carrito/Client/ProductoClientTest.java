@@ -0,0 +1,63 @@
+package com.example.carrito.Client;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ProductoClientTest {
+
+    @Test
+    void obtenerProductosPorIds_parteLosLotesGrandes() {
+        AtomicInteger llamadas = new AtomicInteger();
+        ProductoClient cliente = cliente(llamadas, "{\"productos\": [{\"id\": 1, \"nombre\": \"Mouse\", \"precio\": 100}]}");
+
+        List<Long> ids = LongStream.rangeClosed(1, 1200).boxed().toList();
+        Map<Long, Map<String, Object>> productos = cliente.obtenerProductosPorIds(ids);
+
+        // 500 + 500 + 200
+        assertEquals(3, llamadas.get());
+        assertEquals(1, productos.size());
+        assertEquals("Mouse", productos.get(1L).get("nombre"));
+    }
+
+    @Test
+    void obtenerProductosPorIds_sinIds_noLlamaAlCatalogo() {
+        AtomicInteger llamadas = new AtomicInteger();
+        ProductoClient cliente = cliente(llamadas, "{\"productos\": []}");
+
+        assertEquals(Map.of(), cliente.obtenerProductosPorIds(List.of()));
+        assertEquals(0, llamadas.get());
+    }
+
+    // El WebClient responde siempre el mismo cuerpo y cuenta las llamadas
+    @SuppressWarnings("unchecked")
+    private static ProductoClient cliente(AtomicInteger llamadas, String cuerpo) {
+        WebClient webClient = WebClient.builder()
+                .exchangeFunction(pedido -> {
+                    llamadas.incrementAndGet();
+                    return Mono.just(ClientResponse.create(HttpStatus.OK)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .body(cuerpo)
+                            .build());
+                })
+                .build();
+        ResilienciaClientes resiliencia = mock(ResilienciaClientes.class);
+        when(resiliencia.webClient(anyString(), any())).thenReturn(webClient);
+        when(resiliencia.proteger(anyString(), any(Mono.class))).thenAnswer(invocacion -> invocacion.getArgument(1));
+        return new ProductoClient("http://catalogo", Duration.ofSeconds(2), resiliencia);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.carrito.Client;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResilienciaClientesTest {
+
+    private ResilienciaClientes resiliencia;
+
+    @BeforeEach
+    void setUp() {
+        resiliencia = new ResilienciaClientes(Duration.ofMillis(500), 50, 10, Duration.ofSeconds(10), 50);
+    }
+
+    @Test
+    void respuestas4xx_noAbrenElCircuito() {
+        for (int status : new int[]{400, 404, 409, 422}) {
+            for (int i = 0; i < 5; i++) {
+                llamarConError("catalogo", status);
+            }
+        }
+
+        assertEquals("CLOSED", estado("catalogo"));
+    }
+
+    @Test
+    void respuestas5xx_abrenElCircuito() {
+        for (int i = 0; i < 10; i++) {
+            llamarConError("catalogo", 503);
+        }
+
+        assertEquals("OPEN", estado("catalogo"));
+    }
+
+    private void llamarConError(String servicio, int status) {
+        Mono<Object> llamada = Mono.error(WebClientResponseException.create(status, "error", HttpHeaders.EMPTY, new byte[0], null));
+        assertThrows(WebClientResponseException.class, () -> resiliencia.proteger(servicio, llamada).block());
+    }
+
+    @SuppressWarnings("unchecked")
+    private String estado(String servicio) {
+        return (String) ((Map<String, Object>) resiliencia.estadisticas().get(servicio)).get("estado");
+    }
+}
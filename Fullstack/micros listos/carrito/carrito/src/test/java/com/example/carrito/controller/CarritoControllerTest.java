@@ -0,0 +1,82 @@
+package com.example.carrito.controller;
+
+import com.example.carrito.Client.ResilienciaClientes;
+import com.example.carrito.model.ItemCarrito;
+import com.example.carrito.service.CarritoService;
+import com.example.carrito.service.ConflictoCarritoException;
+import com.example.carrito.tareas.CompactacionCarritos;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(CarritoController.class)
+class CarritoControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CarritoService carritoService;
+
+    @MockBean
+    private CompactacionCarritos compactacionCarritos;
+
+    @MockBean
+    private ResilienciaClientes resilienciaClientes;
+
+    @Test
+    void reemplazarCarrito_exito() throws Exception {
+        when(carritoService.reemplazarCarrito(1L, Map.of(10L, 3, 20L, 1), 4L)).thenReturn(Map.of(
+                "items", List.of(new ItemCarrito(7L, 1L, 10L, "Mouse", 100.0, 3, null)),
+                "total", 350.0,
+                "cantidadItems", 2,
+                "version", 5L));
+
+        // El producto 10 viene repetido y se suman sus cantidades
+        mockMvc.perform(put("/carrito/usuario/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"version": 4, "items": [
+                                  {"productoId": 10, "cantidad": 2},
+                                  {"productoId": 20, "cantidad": 1},
+                                  {"productoId": 10, "cantidad": 1}
+                                ]}"""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(5))
+                .andExpect(jsonPath("$.items[0].cantidad").value(3));
+    }
+
+    @Test
+    void reemplazarCarrito_versionVieja_conflicto() throws Exception {
+        when(carritoService.reemplazarCarrito(eq(1L), anyMap(), eq(4L)))
+                .thenThrow(new ConflictoCarritoException(6L));
+
+        mockMvc.perform(put("/carrito/usuario/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"version\": 4, \"items\": [{\"productoId\": 10, \"cantidad\": 1}]}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.version").value(6));
+    }
+
+    @Test
+    void reemplazarCarrito_sinItems_error() throws Exception {
+        mockMvc.perform(put("/carrito/usuario/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"version\": 4}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Falta la lista de items"));
+
+        verifyNoInteractions(carritoService);
+    }
+}
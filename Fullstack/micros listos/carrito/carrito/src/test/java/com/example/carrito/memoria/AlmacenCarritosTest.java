@@ -0,0 +1,295 @@
+package com.example.carrito.memoria;
+
+import com.example.carrito.model.Carrito;
+import com.example.carrito.model.ItemCarrito;
+import com.example.carrito.repository.CarritoJdbcRepository;
+import com.example.carrito.repository.CarritoRepository;
+import com.example.carrito.repository.ItemCarritoJdbcRepository;
+import com.example.carrito.repository.ItemCarritoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AlmacenCarritosTest {
+
+    @Mock
+    private ItemCarritoRepository itemCarritoRepository;
+
+    @Mock
+    private CarritoRepository carritoRepository;
+
+    @Mock
+    private ItemCarritoJdbcRepository itemCarritoJdbcRepository;
+
+    @Mock
+    private CarritoJdbcRepository carritoJdbcRepository;
+
+    @Mock
+    private IdsItemsCarrito ids;
+
+    @Captor
+    private ArgumentCaptor<List<ItemCarrito>> lineasCaptor;
+
+    @Captor
+    private ArgumentCaptor<List<Carrito>> resumenesCaptor;
+
+    private final AtomicLong ultimoId = new AtomicLong(1000);
+
+    private AlmacenCarritos almacen;
+
+    @BeforeEach
+    void setUp() {
+        // Cuatro franjas: los usuarios 1 y 5 comparten candado
+        almacen = new AlmacenCarritos(4, 100, itemCarritoRepository, carritoRepository,
+                itemCarritoJdbcRepository, carritoJdbcRepository,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), ids);
+
+        lenient().when(ids.siguiente()).thenAnswer(invocacion -> ultimoId.incrementAndGet());
+        lenient().when(carritoRepository.existsById(anyLong())).thenReturn(true);
+        lenient().when(carritoRepository.findById(anyLong())).thenAnswer(invocacion ->
+                Optional.of(new Carrito(invocacion.getArgument(0), 0.0, 0, 0L, LocalDateTime.now())));
+        lenient().when(itemCarritoRepository.findByUsuarioId(anyLong())).thenReturn(List.of());
+    }
+
+    @Test
+    void agregar_devuelveLineaConId_yVariosCambiosSeEscribenUnaVez() {
+        ItemCarrito primera = almacen.agregar(1L, 10L, "Mouse", 100.0, 1, null);
+        ItemCarrito segunda = almacen.agregar(1L, 10L, "Mouse", 100.0, 2, null);
+
+        assertNotNull(primera.getId());
+        assertEquals(primera.getId(), segunda.getId());
+        assertEquals(3, segunda.getCantidad());
+
+        // La línea todavía no está en la base y se encuentra igual por su id
+        Optional<ItemCarrito> actualizada = almacen.actualizarCantidad(primera.getId(), 5);
+        assertTrue(actualizada.isPresent());
+        verify(itemCarritoRepository, never()).findById(any());
+
+        almacen.escribirPendientes();
+        almacen.escribirPendientes();
+
+        verify(itemCarritoJdbcRepository).insertarConIds(lineasCaptor.capture());
+        assertEquals(1, lineasCaptor.getValue().size());
+        assertEquals(primera.getId(), lineasCaptor.getValue().get(0).getId());
+        assertEquals(5, lineasCaptor.getValue().get(0).getCantidad());
+
+        verify(carritoJdbcRepository, times(1)).guardar(resumenesCaptor.capture());
+        assertEquals(500.0, resumenesCaptor.getValue().get(0).getTotal());
+        assertEquals(1, resumenesCaptor.getValue().get(0).getCantidadItems());
+    }
+
+    @Test
+    void quitarLineaNueva_antesDeEscribir_noLlegaALaBase() {
+        ItemCarrito item = almacen.agregar(1L, 10L, "Mouse", 100.0, 1, null);
+
+        assertTrue(almacen.eliminarItem(item.getId()));
+        almacen.escribirPendientes();
+
+        verify(itemCarritoJdbcRepository).insertarConIds(List.of());
+        verify(itemCarritoJdbcRepository).eliminar(List.of());
+    }
+
+    @Test
+    void lineaQuitadaEnMemoria_noSeBuscaEnLaBase() {
+        ItemCarrito guardada = new ItemCarrito(7L, 1L, 10L, "Mouse", 100.0, 1, null);
+        when(itemCarritoRepository.findByUsuarioId(1L)).thenReturn(List.of(guardada));
+        lenient().when(itemCarritoRepository.findById(7L)).thenReturn(Optional.of(guardada));
+
+        assertTrue(almacen.eliminarItem(7L));
+
+        // MySQL todavía tiene la fila, pero la memoria manda
+        assertTrue(almacen.actualizarCantidad(7L, 3).isEmpty());
+        assertFalse(almacen.eliminarItem(7L));
+
+        almacen.escribirPendientes();
+        verify(itemCarritoJdbcRepository).eliminar(List.of(7L));
+    }
+
+    @Test
+    void lineaQuitadaMientrasSeInserta_seBorraEnLaSiguienteEscritura() {
+        ItemCarrito item = almacen.agregar(1L, 10L, "Mouse", 100.0, 1, null);
+        doAnswer(invocacion -> {
+            List<ItemCarrito> nuevas = invocacion.getArgument(0);
+            if (!nuevas.isEmpty()) almacen.eliminarItem(item.getId());
+            return null;
+        }).when(itemCarritoJdbcRepository).insertarConIds(anyList());
+
+        almacen.escribirPendientes();
+        almacen.escribirPendientes();
+
+        verify(itemCarritoJdbcRepository).insertarConIds(List.of(item));
+        verify(itemCarritoJdbcRepository).eliminar(List.of(item.getId()));
+    }
+
+    @Test
+    void loteFallido_seGuardaDeAUno_yElCarritoQueSigueFallandoSeDescarta() {
+        almacen.agregar(1L, 10L, "Mouse", 100.0, 1, null);
+        almacen.agregar(2L, 10L, "Mouse", 100.0, 1, null);
+        List<List<Long>> escrituras = new ArrayList<>();
+        doAnswer(invocacion -> {
+            List<Carrito> resumenes = invocacion.getArgument(0);
+            List<Long> usuarios = resumenes.stream().map(Carrito::getUsuarioId).toList();
+            escrituras.add(usuarios);
+            if (usuarios.contains(2L)) throw new DataIntegrityViolationException("dato inválido");
+            return null;
+        }).when(carritoJdbcRepository).guardar(anyList());
+
+        almacen.escribirPendientes();
+
+        // El lote de dos falla y el carrito 1 se guarda solo
+        assertTrue(escrituras.contains(List.of(1L)));
+        assertTrue(almacen.estaCargado(2L));
+
+        almacen.escribirPendientes();
+        almacen.escribirPendientes();
+
+        // Después del último intento el carrito 2 sale de memoria. El 1 solo se escribió
+        // en el lote fallido y en su transacción aparte: no quedó trabado detrás del 2
+        assertFalse(almacen.estaCargado(2L));
+        assertTrue(almacen.estaCargado(1L));
+        assertEquals(2, escrituras.stream().filter(usuarios -> usuarios.contains(1L)).count());
+    }
+
+    @Test
+    void errorTransitorio_reencolaSinDescartar() {
+        ItemCarrito item = almacen.agregar(1L, 10L, "Mouse", 100.0, 1, null);
+        doThrow(new QueryTimeoutException("tiempo agotado"))
+                .doThrow(new QueryTimeoutException("tiempo agotado"))
+                .doThrow(new QueryTimeoutException("tiempo agotado"))
+                .doNothing()
+                .when(carritoJdbcRepository).guardar(anyList());
+
+        for (int i = 0; i < 4; i++) {
+            almacen.escribirPendientes();
+        }
+
+        assertTrue(almacen.estaCargado(1L));
+        // Cada reintento vuelve a insertar la línea (la transacción anterior se deshizo)
+        verify(itemCarritoJdbcRepository, times(4)).insertarConIds(List.of(item));
+
+        almacen.escribirPendientes();
+        verify(carritoJdbcRepository, times(4)).guardar(anyList());
+    }
+
+    @Test
+    void cargaDesdeLaBase_noBloqueaALaFranja_yNoSeRepite() throws Exception {
+        CountDownLatch cargaEmpezada = new CountDownLatch(1);
+        CountDownLatch liberarCarga = new CountDownLatch(1);
+        when(itemCarritoRepository.findByUsuarioId(1L)).thenAnswer(invocacion -> {
+            cargaEmpezada.countDown();
+            liberarCarga.await();
+            return List.of();
+        });
+
+        ExecutorService hilos = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<ItemCarrito>> primera = hilos.submit(() -> almacen.items(1L));
+            assertTrue(cargaEmpezada.await(5, TimeUnit.SECONDS));
+            Future<List<ItemCarrito>> segunda = hilos.submit(() -> almacen.items(1L));
+
+            // El usuario 5 está en la misma franja y no espera la carga del 1
+            assertEquals(List.of(), almacen.items(5L));
+
+            liberarCarga.countDown();
+            assertEquals(List.of(), primera.get(5, TimeUnit.SECONDS));
+            assertEquals(List.of(), segunda.get(5, TimeUnit.SECONDS));
+        } finally {
+            hilos.shutdownNow();
+        }
+
+        verify(itemCarritoRepository, times(1)).findByUsuarioId(1L);
+    }
+
+    @Test
+    void datosDelCatalogo_seEscribenSinMoverVersionNiFecha() {
+        almacen.agregar(1L, 10L, "Mouse", 100.0, 2, null);
+        almacen.escribirPendientes();
+        Carrito antes = almacen.resumen(1L);
+
+        almacen.aplicarDatosProductos(Map.of(10L, Map.of("nombre", "Mouse", "precio", 80)));
+
+        Carrito despues = almacen.resumen(1L);
+        assertEquals(160.0, despues.getTotal());
+        assertEquals(antes.getVersion(), despues.getVersion());
+        assertEquals(antes.getActualizadoEn(), despues.getActualizadoEn());
+
+        almacen.escribirPendientes();
+        verify(carritoJdbcRepository, times(2)).guardar(anyList());
+    }
+
+    @Test
+    void sinCargar_dejaAfueraLosCarritosCargados() {
+        almacen.items(1L);
+
+        List<Long> reservados = almacen.sinCargar(List.of(1L, 2L, 3L), libres -> libres);
+
+        assertEquals(List.of(2L, 3L), reservados);
+    }
+
+    @Test
+    void carritoEnCompactacion_seCargaRecienCuandoTermina() throws Exception {
+        CountDownLatch compactando = new CountDownLatch(1);
+        CountDownLatch terminarCompactacion = new CountDownLatch(1);
+        List<String> orden = new ArrayList<>();
+
+        ExecutorService hilos = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> compactacion = hilos.submit(() -> almacen.sinCargar(List.of(1L), libres -> {
+                compactando.countDown();
+                try {
+                    terminarCompactacion.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                synchronized (orden) {
+                    orden.add("borrado");
+                }
+                return null;
+            }));
+            assertTrue(compactando.await(5, TimeUnit.SECONDS));
+
+            Future<?> lectura = hilos.submit(() -> {
+                almacen.items(1L);
+                synchronized (orden) {
+                    orden.add("carga");
+                }
+            });
+            // El usuario 5 comparte franja y no espera a la compactación
+            assertEquals(List.of(), almacen.items(5L));
+            Thread.sleep(100);
+            assertFalse(lectura.isDone());
+
+            terminarCompactacion.countDown();
+            compactacion.get(5, TimeUnit.SECONDS);
+            lectura.get(5, TimeUnit.SECONDS);
+        } finally {
+            hilos.shutdownNow();
+        }
+
+        assertEquals(List.of("borrado", "carga"), orden);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.carrito.migracion;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UnicidadItemsCarritoTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private UnicidadItemsCarrito migracion;
+
+    @BeforeEach
+    void setUp() {
+        migracion = new UnicidadItemsCarrito(jdbcTemplate);
+    }
+
+    @Test
+    void indiceExistente_noTocaLaTabla() {
+        indices(1);
+
+        migracion.afterSingletonsInstantiated();
+
+        verify(jdbcTemplate, never()).update(anyString());
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    @Test
+    void sinIndice_unificaBorraDuplicadosYCreaElIndice() {
+        indices(0);
+        when(jdbcTemplate.update(startsWith("UPDATE items_carrito"))).thenReturn(2);
+        when(jdbcTemplate.update(startsWith("DELETE i FROM items_carrito"))).thenReturn(3);
+
+        migracion.afterSingletonsInstantiated();
+
+        // Primero se suman las cantidades en la línea más antigua, después se borran las demás
+        InOrder orden = inOrder(jdbcTemplate);
+        orden.verify(jdbcTemplate).update(contains("SUM(cantidad)"));
+        orden.verify(jdbcTemplate).update(contains("i.id > k.id"));
+        orden.verify(jdbcTemplate).execute(
+                "ALTER TABLE items_carrito ADD CONSTRAINT uk_items_carrito_usuario_producto UNIQUE (usuario_id, producto_id)");
+    }
+
+    private void indices(int cantidad) {
+        when(jdbcTemplate.queryForObject(contains("information_schema.STATISTICS"), eq(Integer.class),
+                eq("uk_items_carrito_usuario_producto"))).thenReturn(cantidad);
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.carrito.service;
+
+import com.example.carrito.Client.ProductoClient;
+import com.example.carrito.Client.UsuarioClient;
+import com.example.carrito.model.Carrito;
+import com.example.carrito.model.ItemCarrito;
+import com.example.carrito.repository.CarritoRepository;
+import com.example.carrito.repository.ItemCarritoJdbcRepository;
+import com.example.carrito.repository.ItemCarritoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CarritoServiceTest {
+
+    @Mock
+    private ItemCarritoRepository itemCarritoRepository;
+
+    @Mock
+    private ItemCarritoJdbcRepository itemCarritoJdbcRepository;
+
+    @Mock
+    private CarritoRepository carritoRepository;
+
+    @Mock
+    private ProductoClient productoClient;
+
+    @Mock
+    private UsuarioClient usuarioClient;
+
+    private CarritoService carritoService;
+
+    private final Map<String, Object> usuario = Map.of("id", 1, "nombre", "Juan");
+
+    @BeforeEach
+    void setUp() {
+        carritoService = new CarritoService(itemCarritoRepository, itemCarritoJdbcRepository, carritoRepository,
+                productoClient, usuarioClient, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                Optional.empty());
+    }
+
+    @Test
+    void reemplazarCarrito_devuelveElEstadoNuevo() {
+        when(usuarioClient.obtenerUsuarioPorId(1L)).thenReturn(usuario);
+        when(productoClient.obtenerProductosPorIds(any())).thenReturn(Map.of(
+                10L, Map.of("id", 10, "nombre", "Mouse", "precio", 100),
+                20L, Map.of("id", 20, "nombre", "Teclado", "precio", 50.0)));
+        when(carritoRepository.existsById(1L)).thenReturn(true);
+        when(carritoRepository.bloquear(1L)).thenReturn(Optional.of(new Carrito(1L, 400.0, 2, 4L, LocalDateTime.now())));
+        // Como el contexto de persistencia: las entidades leídas conservan las cantidades viejas
+        ItemCarrito mouse = new ItemCarrito(7L, 1L, 10L, "Mouse", 100.0, 1, null);
+        ItemCarrito monitor = new ItemCarrito(8L, 1L, 30L, "Monitor", 300.0, 1, null);
+        when(itemCarritoRepository.findByUsuarioId(1L)).thenReturn(List.of(mouse, monitor));
+        doAnswer(invocacion -> {
+            List<ItemCarrito> nuevos = invocacion.getArgument(0);
+            nuevos.forEach(item -> item.setId(9L));
+            return null;
+        }).when(itemCarritoJdbcRepository).insertar(anyList());
+
+        Map<String, Object> detalles = carritoService.reemplazarCarrito(1L, Map.of(10L, 3, 20L, 2, 30L, 0), 4L);
+
+        @SuppressWarnings("unchecked")
+        List<ItemCarrito> items = (List<ItemCarrito>) detalles.get("items");
+        assertEquals(2, items.size());
+        assertEquals(7L, items.get(0).getId());
+        assertEquals(3, items.get(0).getCantidad());
+        assertEquals(9L, items.get(1).getId());
+        assertEquals(20L, items.get(1).getProductoId());
+        assertEquals(2, items.get(1).getCantidad());
+        assertEquals(400.0, detalles.get("total"));
+        assertEquals(2, detalles.get("cantidadItems"));
+        assertEquals(5L, detalles.get("version"));
+
+        verify(itemCarritoJdbcRepository).eliminar(List.of(8L));
+        verify(itemCarritoJdbcRepository).actualizarCantidades(Map.of(7L, 3));
+        verify(carritoRepository).reemplazar(1L, 400.0, 2);
+        // No se vuelve a leer el carrito después de escribir
+        verify(itemCarritoRepository, times(1)).findByUsuarioId(1L);
+        assertEquals(1, mouse.getCantidad());
+    }
+
+    @Test
+    void reemplazarCarrito_versionVieja_lanzaConflictoSinEscribir() {
+        when(usuarioClient.obtenerUsuarioPorId(1L)).thenReturn(usuario);
+        when(productoClient.obtenerProductosPorIds(any())).thenReturn(Map.of(
+                10L, Map.of("id", 10, "nombre", "Mouse", "precio", 100)));
+        when(carritoRepository.existsById(1L)).thenReturn(true);
+        when(carritoRepository.bloquear(1L)).thenReturn(Optional.of(new Carrito(1L, 100.0, 1, 5L, LocalDateTime.now())));
+
+        ConflictoCarritoException ex = assertThrows(ConflictoCarritoException.class,
+                () -> carritoService.reemplazarCarrito(1L, Map.of(10L, 1), 4L));
+
+        assertEquals(5L, ex.getVersionActual());
+        verifyNoInteractions(itemCarritoJdbcRepository);
+        verify(carritoRepository, never()).reemplazar(anyLong(), anyDouble(), anyInt());
+    }
+
+    @Test
+    void reemplazarCarrito_productoInexistente_noAbreTransaccion() {
+        when(usuarioClient.obtenerUsuarioPorId(1L)).thenReturn(usuario);
+        when(productoClient.obtenerProductosPorIds(any())).thenReturn(Map.of());
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> carritoService.reemplazarCarrito(1L, Map.of(10L, 1), null));
+
+        assertEquals("Productos no encontrados: [10]", ex.getMessage());
+        verifyNoInteractions(carritoRepository, itemCarritoJdbcRepository);
+    }
+
+    @Test
+    void agregarAlCarrito_lineaNueva_sumaUnItemAlResumen() {
+        consultasDeAgregar();
+        when(carritoRepository.existsById(1L)).thenReturn(true);
+        when(itemCarritoRepository.agregarOSumar(1L, 10L, "Mouse", 100.0, 2, null)).thenReturn(1);
+        when(itemCarritoRepository.findByUsuarioIdAndProductoId(1L, 10L))
+                .thenReturn(Optional.of(new ItemCarrito(7L, 1L, 10L, "Mouse", 100.0, 2, null)));
+
+        ItemCarrito item = carritoService.agregarAlCarrito(1L, 10L, 2);
+
+        assertEquals(7L, item.getId());
+        InOrder orden = inOrder(carritoRepository, itemCarritoRepository);
+        orden.verify(carritoRepository).bloquear(1L);
+        orden.verify(itemCarritoRepository).agregarOSumar(1L, 10L, "Mouse", 100.0, 2, null);
+        orden.verify(carritoRepository).aplicarCambio(1L, 200.0, 1);
+    }
+
+    @Test
+    void agregarAlCarrito_lineaExistente_sumaCantidadSinContarOtroItem() {
+        consultasDeAgregar();
+        when(carritoRepository.existsById(1L)).thenReturn(true);
+        // Precio viejo: la línea lo conserva aunque el catálogo lo haya cambiado
+        // El upsert devuelve 2: sumó sobre una línea existente
+        when(itemCarritoRepository.agregarOSumar(1L, 10L, "Mouse", 100.0, 2, null)).thenReturn(2);
+        when(itemCarritoRepository.findByUsuarioIdAndProductoId(1L, 10L))
+                .thenReturn(Optional.of(new ItemCarrito(7L, 1L, 10L, "Mouse", 80.0, 3, null)));
+
+        ItemCarrito item = carritoService.agregarAlCarrito(1L, 10L, 2);
+
+        assertEquals(3, item.getCantidad());
+        verify(itemCarritoRepository, never()).save(any());
+        verify(carritoRepository).aplicarCambio(1L, 160.0, 0);
+    }
+
+    @Test
+    void agregarAlCarrito_cantidadNoPositiva_error() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> carritoService.agregarAlCarrito(1L, 10L, 0));
+
+        assertEquals("La cantidad debe ser mayor a 0", ex.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> carritoService.agregarAlCarrito(1L, 10L, -3));
+        verifyNoInteractions(usuarioClient, productoClient, carritoRepository, itemCarritoRepository);
+    }
+
+    @Test
+    void actualizarCantidad_aplicaLaDiferenciaAlResumen() {
+        ItemCarrito item = new ItemCarrito(7L, 1L, 10L, "Mouse", 100.0, 2, null);
+        when(itemCarritoRepository.findUsuarioIdById(7L)).thenReturn(Optional.of(1L));
+        when(itemCarritoRepository.bloquearPorId(7L)).thenReturn(Optional.of(item));
+        when(carritoRepository.existsById(1L)).thenReturn(true);
+        when(itemCarritoRepository.save(item)).thenReturn(item);
+
+        Optional<ItemCarrito> actualizado = carritoService.actualizarCantidad(7L, 5);
+
+        assertEquals(5, actualizado.orElseThrow().getCantidad());
+        verify(carritoRepository).aplicarCambio(1L, 300.0, 0);
+    }
+
+    @Test
+    void actualizarCantidad_bloqueaElResumenAntesDeLeerLaLinea() {
+        ItemCarrito item = new ItemCarrito(7L, 1L, 10L, "Mouse", 100.0, 4, null);
+        when(itemCarritoRepository.findUsuarioIdById(7L)).thenReturn(Optional.of(1L));
+        when(carritoRepository.existsById(1L)).thenReturn(true);
+        // La lectura con bloqueo trae la cantidad confirmada por otro agregado (4, no 2)
+        when(itemCarritoRepository.bloquearPorId(7L)).thenReturn(Optional.of(item));
+        when(itemCarritoRepository.save(item)).thenReturn(item);
+
+        carritoService.actualizarCantidad(7L, 5);
+
+        InOrder orden = inOrder(carritoRepository, itemCarritoRepository);
+        orden.verify(carritoRepository).bloquear(1L);
+        orden.verify(itemCarritoRepository).bloquearPorId(7L);
+        orden.verify(carritoRepository).aplicarCambio(1L, 100.0, 0);
+        verify(itemCarritoRepository, never()).findById(any());
+    }
+
+    @Test
+    void actualizarCantidad_lineaQuitadaMientrasTanto_noTocaElResumen() {
+        when(itemCarritoRepository.findUsuarioIdById(7L)).thenReturn(Optional.of(1L));
+        when(carritoRepository.existsById(1L)).thenReturn(true);
+        when(itemCarritoRepository.bloquearPorId(7L)).thenReturn(Optional.empty());
+
+        assertTrue(carritoService.actualizarCantidad(7L, 5).isEmpty());
+
+        verify(carritoRepository, never()).aplicarCambio(anyLong(), anyDouble(), anyInt());
+    }
+
+    @Test
+    void actualizarCantidad_aCero_quitaLaLineaDelResumen() {
+        ItemCarrito item = new ItemCarrito(7L, 1L, 10L, "Mouse", 100.0, 2, null);
+        when(itemCarritoRepository.findUsuarioIdById(7L)).thenReturn(Optional.of(1L));
+        when(itemCarritoRepository.bloquearPorId(7L)).thenReturn(Optional.of(item));
+        when(carritoRepository.existsById(1L)).thenReturn(true);
+
+        assertTrue(carritoService.actualizarCantidad(7L, 0).isEmpty());
+
+        verify(itemCarritoRepository).delete(item);
+        verify(carritoRepository).aplicarCambio(1L, -200.0, -1);
+    }
+
+    @Test
+    void eliminarItem_restaLineaYTotal() {
+        ItemCarrito item = new ItemCarrito(7L, 1L, 10L, "Mouse", 100.0, 3, null);
+        when(itemCarritoRepository.findUsuarioIdById(7L)).thenReturn(Optional.of(1L));
+        when(itemCarritoRepository.bloquearPorId(7L)).thenReturn(Optional.of(item));
+        when(carritoRepository.existsById(1L)).thenReturn(false);
+
+        assertTrue(carritoService.eliminarItem(7L));
+
+        // Sin resumen se crea primero con el estado anterior y después se le aplica el cambio
+        InOrder orden = inOrder(carritoRepository, itemCarritoRepository);
+        orden.verify(carritoRepository).crearDesdeItems(1L);
+        orden.verify(itemCarritoRepository).delete(item);
+        orden.verify(carritoRepository).aplicarCambio(1L, -300.0, -1);
+    }
+
+    @Test
+    void vaciarCarrito_bloqueaElResumenAntesDeBorrar() {
+        when(usuarioClient.obtenerUsuarioPorId(1L)).thenReturn(usuario);
+        when(carritoRepository.existsById(1L)).thenReturn(true);
+
+        carritoService.vaciarCarrito(1L);
+
+        InOrder orden = inOrder(usuarioClient, carritoRepository, itemCarritoRepository);
+        orden.verify(usuarioClient).obtenerUsuarioPorId(1L);
+        orden.verify(carritoRepository).bloquear(1L);
+        orden.verify(itemCarritoRepository).deleteByUsuarioId(1L);
+        orden.verify(carritoRepository).vaciar(1L);
+    }
+
+    @Test
+    void vaciarCarrito_usuarioInexistente_noAbreTransaccion() {
+        when(usuarioClient.obtenerUsuarioPorId(1L)).thenReturn(null);
+
+        assertThrows(IllegalArgumentException.class, () -> carritoService.vaciarCarrito(1L));
+
+        verifyNoInteractions(carritoRepository, itemCarritoRepository);
+    }
+
+    @Test
+    void obtenerDetallesCarrito_lineasYVersionDeLaMismaLectura() {
+        when(usuarioClient.obtenerUsuarioPorId(1L)).thenReturn(usuario);
+        when(itemCarritoRepository.findByUsuarioId(1L))
+                .thenReturn(List.of(new ItemCarrito(7L, 1L, 10L, "Mouse", 100.0, 2, null)));
+        when(carritoRepository.findById(1L)).thenReturn(Optional.empty());
+
+        Map<String, Object> detalles = carritoService.obtenerDetallesCarrito(1L);
+
+        // Sin resumen guardado se arma con las líneas leídas, sin escribir en una lectura
+        assertEquals(200.0, detalles.get("total"));
+        assertEquals(1, detalles.get("cantidadItems"));
+        assertEquals(0L, detalles.get("version"));
+        verify(carritoRepository, never()).crearDesdeItems(anyLong());
+    }
+
+    private void consultasDeAgregar() {
+        when(usuarioClient.buscarUsuario(1L)).thenReturn(Mono.just(Optional.of(usuario)));
+        when(productoClient.buscarProducto(10L)).thenReturn(Mono.just(Map.of("id", 10, "nombre", "Mouse", "precio", 100)));
+    }
+}
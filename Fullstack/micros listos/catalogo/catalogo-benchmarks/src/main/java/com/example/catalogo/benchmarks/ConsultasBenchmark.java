@@ -0,0 +1,70 @@
+package com.example.catalogo.benchmarks;
+
+import com.example.catalogo.dto.ProductoResumen;
+import com.example.catalogo.model.Producto;
+import com.example.catalogo.repository.ProductoRepository;
+import com.example.catalogo.search.IndiceProductos;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consultas del catálogo contra H2 con 10k y 100k productos: la búsqueda con
+ * LIKE '%x%' frente al índice en memoria, y la página por cursor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConsultasBenchmark {
+
+    @Param({"10000", "100000"})
+    int productos;
+
+    private ConfigurableApplicationContext contexto;
+    private ProductoRepository productoRepository;
+    private IndiceProductos indiceProductos;
+
+    @Setup(Level.Trial)
+    public void iniciar() throws IOException {
+        contexto = ContextoBenchmark.iniciar(productos);
+        productoRepository = contexto.getBean(ProductoRepository.class);
+        indiceProductos = contexto.getBean(IndiceProductos.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public List<Producto> buscarConLike() {
+        return productoRepository.findByNombreContainingIgnoreCase("acolchada");
+    }
+
+    @Benchmark
+    public List<Long> buscarConIndice() {
+        return indiceProductos.buscar("acolchada", 50);
+    }
+
+    @Benchmark
+    public List<Long> buscarConIndicePrefijo() {
+        return indiceProductos.buscar("acol", 50);
+    }
+
+    @Benchmark
+    public List<Long> buscarConIndiceDifuso() {
+        return indiceProductos.buscar("acolchda", 50);
+    }
+
+    @Benchmark
+    public List<ProductoResumen> paginaPorCursor() {
+        return productoRepository.findResumenDespuesDe(productos / 2L, PageRequest.of(0, 20));
+    }
+}
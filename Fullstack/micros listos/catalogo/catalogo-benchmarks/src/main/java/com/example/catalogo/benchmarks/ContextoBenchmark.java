@@ -0,0 +1,86 @@
+package com.example.catalogo.benchmarks;
+
+import com.example.catalogo.CatalogoApplication;
+import com.example.catalogo.model.Producto;
+import com.example.catalogo.repository.ProductoJdbcRepository;
+import com.example.catalogo.search.ConstruccionIndice;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Levanta el catálogo completo contra H2 en memoria y lo llena con productos
+ * generados, para que los benchmarks midan el mismo código que corre en producción.
+ */
+final class ContextoBenchmark {
+
+    private static final String[] TIPOS = {"Alimento", "Pelota", "Collar", "Arena", "Rascador", "Cama", "Correa", "Snack"};
+    private static final String[] ADJETIVOS = {"Premium", "Interactiva", "Ajustable", "Aglomerante", "Acolchada", "Reforzada", "Natural", "Compacta"};
+    private static final String[] ANIMALES = {"Perro", "Gato", "Cachorro", "Conejo", "Hurón", "Ave"};
+    private static final String[] CATEGORIAS = {"Alimento", "Juguetes", "Accesorios", "Higiene", "Camas", "Paseo"};
+
+    private static final int LOTE = 1000;
+
+    private ContextoBenchmark() {
+    }
+
+    static ConfigurableApplicationContext iniciar(int productos) throws IOException {
+        Path imagenes = Files.createTempDirectory("catalogo-benchmarks");
+
+        // Como argumentos de línea de comandos para que tengan prioridad sobre application.properties
+        ConfigurableApplicationContext contexto = new SpringApplicationBuilder(CatalogoApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:catalogo" + productos + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.show-sql=false",
+                "--spring.jpa.properties.hibernate.format_sql=false",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--eureka.client.enabled=false",
+                "--spring.cloud.discovery.enabled=false",
+                "--catalogo.imagenes.directorio=" + imagenes,
+                "--catalogo.imagenes.migrar-legacy=false",
+                "--catalogo.imagenes.backfill-derivados=false",
+                "--logging.level.root=WARN");
+
+        poblar(contexto, productos);
+        return contexto;
+    }
+
+    private static void poblar(ConfigurableApplicationContext contexto, int productos) {
+        ProductoJdbcRepository repositorio = contexto.getBean(ProductoJdbcRepository.class);
+        Random random = new Random(42);
+        List<Producto> lote = new ArrayList<>(LOTE);
+
+        for (int i = 0; i < productos; i++) {
+            String nombre = TIPOS[random.nextInt(TIPOS.length)] + " "
+                    + ADJETIVOS[random.nextInt(ADJETIVOS.length)] + " "
+                    + ANIMALES[random.nextInt(ANIMALES.length)] + " " + i;
+
+            Producto producto = new Producto();
+            producto.setNombre(nombre);
+            producto.setDescripcion("Descripción de " + nombre.toLowerCase() + " para pruebas de rendimiento");
+            producto.setPrecio(1000.0 + random.nextInt(50000));
+            producto.setCategoria(CATEGORIAS[random.nextInt(CATEGORIAS.length)]);
+            lote.add(producto);
+
+            if (lote.size() == LOTE) {
+                repositorio.insertarLote(lote);
+                lote.clear();
+            }
+        }
+        if (!lote.isEmpty()) {
+            repositorio.insertarLote(lote);
+        }
+
+        // El índice se armó al arrancar, con la base todavía vacía
+        contexto.getBean(ConstruccionIndice.class).run(null);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.catalogo.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Camino completo de los endpoints de lectura (mapeo, servicio, caché, consulta
+ * y serialización) a través de MockMvc, sin red.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ControladorBenchmark {
+
+    @Param({"10000"})
+    int productos;
+
+    private ConfigurableApplicationContext contexto;
+    private MockMvc mockMvc;
+
+    @Setup(Level.Trial)
+    public void iniciar() throws IOException {
+        contexto = ContextoBenchmark.iniciar(productos);
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) contexto).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public byte[] listarTodos() throws Exception {
+        return cuerpo("/productos");
+    }
+
+    @Benchmark
+    public byte[] paginaPorCursor() throws Exception {
+        return cuerpo("/productos/pagina?limite=50&despuesDe=" + productos / 2);
+    }
+
+    @Benchmark
+    public byte[] obtenerPorId() throws Exception {
+        return cuerpo("/productos/" + productos / 2);
+    }
+
+    @Benchmark
+    public byte[] buscar() throws Exception {
+        return cuerpo("/productos/buscar?nombre=acolchada");
+    }
+
+    private byte[] cuerpo(String url) throws Exception {
+        return mockMvc.perform(get(url)).andReturn().getResponse().getContentAsByteArray();
+    }
+}
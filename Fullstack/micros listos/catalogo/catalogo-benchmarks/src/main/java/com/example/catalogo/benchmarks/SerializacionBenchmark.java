@@ -0,0 +1,80 @@
+package com.example.catalogo.benchmarks;
+
+import com.example.catalogo.dto.ProductoResumen;
+import com.example.catalogo.model.Producto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo de serializar a JSON la respuesta de GET /productos: la entidad actual,
+ * el resumen de los listados paginados y la forma anterior con la imagen
+ * embebida en Base64, para ver cuánto pesaba ese campo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializacionBenchmark {
+
+    // Tamaño típico de una foto de producto antes de generar las variantes
+    private static final int BYTES_IMAGEN = 40 * 1024;
+
+    // Forma que tenía Producto cuando la imagen vivía en la columna LONGBLOB
+    public record ProductoConImagen(Long id, String nombre, String descripcion, Double precio,
+                                    byte[] imagen, String categoria) {
+    }
+
+    @Param({"100", "1000"})
+    int cantidad;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private List<Producto> productos;
+    private List<ProductoResumen> resumenes;
+    private List<ProductoConImagen> conImagen;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        Random random = new Random(42);
+        byte[] imagen = new byte[BYTES_IMAGEN];
+        random.nextBytes(imagen);
+        String hash = "ab".repeat(32);
+
+        productos = new ArrayList<>(cantidad);
+        resumenes = new ArrayList<>(cantidad);
+        conImagen = new ArrayList<>(cantidad);
+
+        for (long id = 1; id <= cantidad; id++) {
+            String nombre = "Alimento Premium Perro " + id;
+            String descripcion = "Alimento balanceado de alta calidad para perros adultos, bolsa de 15kg";
+            double precio = 1000 + random.nextInt(50000);
+
+            productos.add(new Producto(id, nombre, descripcion, precio, hash, "Alimento"));
+            resumenes.add(new ProductoResumen(id, nombre, precio, "Alimento", hash));
+            conImagen.add(new ProductoConImagen(id, nombre, descripcion, precio, imagen, "Alimento"));
+        }
+    }
+
+    @Benchmark
+    public byte[] productosCompletos() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(productos);
+    }
+
+    @Benchmark
+    public byte[] resumenes() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(resumenes);
+    }
+
+    @Benchmark
+    public byte[] productosConImagenBase64() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(conImagen);
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.catalogo.cache;
+
+import com.example.catalogo.model.Producto;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Caché de lectura del catálogo: productos por id, listas por categoría y
+ * resultados de búsqueda. Todas tienen tamaño máximo y TTL, y ProductoService
+ * las invalida en cada escritura para no servir datos viejos.
+ *
+ * Producto es una entidad mutable: se guardan copias y se entrega otra copia en
+ * cada lectura, así quien modifique lo que recibe no cambia lo que ven los demás.
+ */
+@Component
+public class ProductoCache {
+
+    private final Cache<Long, Producto> porId;
+    private final Cache<String, List<Producto>> porCategoria;
+    // Solo se guardan los ids: los productos salen de porId, así un cambio de imagen no invalida búsquedas
+    private final Cache<String, List<Long>> busquedas;
+
+    public ProductoCache(
+            @Value("${catalogo.cache.productos.maximo:10000}") long maximoProductos,
+            @Value("${catalogo.cache.productos.ttl:10m}") Duration ttlProductos,
+            @Value("${catalogo.cache.categorias.maximo:200}") long maximoCategorias,
+            @Value("${catalogo.cache.categorias.ttl:5m}") Duration ttlCategorias,
+            @Value("${catalogo.cache.busquedas.maximo:1000}") long maximoBusquedas,
+            @Value("${catalogo.cache.busquedas.ttl:2m}") Duration ttlBusquedas) {
+        this.porId = Caffeine.newBuilder()
+                .maximumSize(maximoProductos)
+                .expireAfterWrite(ttlProductos)
+                .recordStats()
+                .build();
+        this.porCategoria = Caffeine.newBuilder()
+                .maximumSize(maximoCategorias)
+                .expireAfterWrite(ttlCategorias)
+                .recordStats()
+                .build();
+        this.busquedas = Caffeine.newBuilder()
+                .maximumSize(maximoBusquedas)
+                .expireAfterWrite(ttlBusquedas)
+                .recordStats()
+                .build();
+    }
+
+    // ============================
+    // LECTURA
+    // ============================
+
+    // Si cargar devuelve null no se guarda nada (no se cachean los 404)
+    public Producto producto(Long id, Function<Long, Producto> cargar) {
+        return copia(porId.get(id, clave -> copia(cargar.apply(clave))));
+    }
+
+    // Trae de la base solo los ids que no están en caché, en una sola consulta
+    public Map<Long, Producto> productos(Collection<Long> ids, Function<Set<? extends Long>, Map<Long, Producto>> cargar) {
+        Map<Long, Producto> encontrados = porId.getAll(ids, faltantes -> {
+            Map<Long, Producto> cargados = new HashMap<>();
+            cargar.apply(faltantes).forEach((id, producto) -> cargados.put(id, copia(producto)));
+            return cargados;
+        });
+        Map<Long, Producto> resultado = new LinkedHashMap<>();
+        encontrados.forEach((id, producto) -> resultado.put(id, copia(producto)));
+        return resultado;
+    }
+
+    public List<Producto> categoria(String categoria, Function<String, List<Producto>> cargar) {
+        List<Producto> lista = porCategoria.get(categoria,
+                c -> cargar.apply(c).stream().map(ProductoCache::copia).toList());
+        return lista.stream().map(ProductoCache::copia).toList();
+    }
+
+    public List<Long> busqueda(String consulta, Function<String, List<Long>> buscar) {
+        String clave = consulta.trim().toLowerCase(Locale.ROOT);
+        return busquedas.get(clave, c -> List.copyOf(buscar.apply(c)));
+    }
+
+    // ============================
+    // INVALIDACIÓN
+    // ============================
+
+    // Producto nuevo: solo cambia la lista de su categoría y las búsquedas
+    public void productoCreado(Producto producto) {
+        porCategoria.invalidate(producto.getCategoria());
+        busquedas.invalidateAll();
+    }
+
+    // Cambió el texto o el precio: si cambió de categoría se invalidan las dos listas
+    public void productoActualizado(Producto producto, String categoriaAnterior) {
+        porId.invalidate(producto.getId());
+        porCategoria.invalidate(producto.getCategoria());
+        if (categoriaAnterior != null) porCategoria.invalidate(categoriaAnterior);
+        busquedas.invalidateAll();
+    }
+
+    // Cambió la imagen: la URL versionada está en el producto y en su lista, no en las búsquedas
+    public void imagenActualizada(Producto producto) {
+        porId.invalidate(producto.getId());
+        porCategoria.invalidate(producto.getCategoria());
+    }
+
+    public void productoEliminado(Long id) {
+        porId.invalidate(id);
+        porCategoria.asMap().values().removeIf(lista -> lista.stream().anyMatch(p -> id.equals(p.getId())));
+        busquedas.invalidateAll();
+    }
+
+    private static Producto copia(Producto producto) {
+        return producto != null ? producto.toBuilder().build() : null;
+    }
+
+    // ============================
+    // MÉTRICAS
+    // ============================
+    public Map<String, Map<String, Object>> estadisticas() {
+        Map<String, Map<String, Object>> resultado = new LinkedHashMap<>();
+        resultado.put("productos", estadisticas(porId));
+        resultado.put("categorias", estadisticas(porCategoria));
+        resultado.put("busquedas", estadisticas(busquedas));
+        return resultado;
+    }
+
+    private static Map<String, Object> estadisticas(Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        Map<String, Object> datos = new LinkedHashMap<>();
+        datos.put("tamano", cache.estimatedSize());
+        datos.put("aciertos", stats.hitCount());
+        datos.put("fallos", stats.missCount());
+        datos.put("tasaAciertos", stats.hitRate());
+        datos.put("desalojos", stats.evictionCount());
+        return datos;
+    }
+}
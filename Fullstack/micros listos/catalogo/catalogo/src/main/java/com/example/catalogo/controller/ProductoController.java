@@ -2,27 +2,60 @@ package com.example.catalogo.controller;
 
 import com.example.catalogo.Client.UsuarioClient;
 import com.example.catalogo.Client.UsuarioResponse;
+import com.example.catalogo.dto.EventoImportacion;
+import com.example.catalogo.dto.PaginaCambios;
+import com.example.catalogo.dto.PaginaProductos;
 import com.example.catalogo.model.Producto;
+import com.example.catalogo.service.CambiosProductoService;
+import com.example.catalogo.service.ImportacionProductosService;
 import com.example.catalogo.service.ProductoService;
+import com.example.catalogo.storage.HashesImagen;
+import com.example.catalogo.storage.ImagenTamano;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/productos")
 public class ProductoController {
 
+    private static final int LIMITE_MAXIMO_PAGINA = 100;
+    private static final int MAXIMO_IDS_POR_CONSULTA = 500;
+    private static final int LIMITE_MAXIMO_CAMBIOS = 1000;
+
     private final ProductoService productoService;
+    private final ImportacionProductosService importacionService;
+    private final CambiosProductoService cambiosProductoService;
     private final UsuarioClient usuarioClient;
+    private final ObjectMapper objectMapper;
 
-    public ProductoController(ProductoService productoService, UsuarioClient usuarioClient) {
+    public ProductoController(ProductoService productoService,
+                              ImportacionProductosService importacionService,
+                              CambiosProductoService cambiosProductoService,
+                              UsuarioClient usuarioClient,
+                              ObjectMapper objectMapper) {
         this.productoService = productoService;
+        this.importacionService = importacionService;
+        this.cambiosProductoService = cambiosProductoService;
         this.usuarioClient = usuarioClient;
+        this.objectMapper = objectMapper;
     }
 
     // ============================
@@ -50,6 +83,67 @@ public class ProductoController {
         return productoService.obtenerPorCategoria(categoria);
     }
 
+    // ============================
+    // LISTADO PAGINADO (cursor)
+    // ============================
+    @GetMapping("/pagina")
+    public PaginaProductos obtenerPagina(
+            @RequestParam(value = "categoria", required = false) String categoria,
+            @RequestParam(value = "despuesDe", required = false) Long despuesDe,
+            @RequestParam(value = "limite", defaultValue = "20") int limite
+    ) {
+        int limiteValido = Math.max(1, Math.min(limite, LIMITE_MAXIMO_PAGINA));
+        return productoService.obtenerPagina(categoria, despuesDe, limiteValido);
+    }
+
+    // ============================
+    // VARIOS POR ID
+    // ============================
+    @GetMapping("/batch")
+    public ResponseEntity<?> obtenerPorIds(@RequestParam("ids") List<Long> ids) {
+        if (ids.size() > MAXIMO_IDS_POR_CONSULTA) {
+            return ResponseEntity.badRequest()
+                    .body("Se pueden pedir como máximo " + MAXIMO_IDS_POR_CONSULTA + " productos por consulta");
+        }
+        return ResponseEntity.ok(productoService.obtenerPorIds(ids));
+    }
+
+    // Misma consulta con los ids en el cuerpo, para listas que no caben en la URL
+    @PostMapping("/batch")
+    public ResponseEntity<?> obtenerPorIdsPost(@RequestBody List<Long> ids) {
+        return obtenerPorIds(ids);
+    }
+
+    // ============================
+    // REGISTRO DE CAMBIOS
+    // ============================
+    @GetMapping("/cambios")
+    public PaginaCambios obtenerCambios(
+            @RequestParam(value = "desde", defaultValue = "0") long desde,
+            @RequestParam(value = "limite", defaultValue = "100") int limite
+    ) {
+        int limiteValido = Math.max(1, Math.min(limite, LIMITE_MAXIMO_CAMBIOS));
+        return cambiosProductoService.obtenerDesde(desde, limiteValido);
+    }
+
+    // Al reconectar, el navegador manda Last-Event-ID con la última versión recibida
+    @GetMapping(value = "/cambios/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter suscribirCambios(
+            @RequestParam(value = "desde", required = false) Long desde,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long ultimoEvento
+    ) {
+        long version = ultimoEvento != null ? ultimoEvento : (desde != null ? desde : 0L);
+        return cambiosProductoService.suscribir(version);
+    }
+
+    // ============================
+    // ESTADÍSTICAS DE CACHÉ
+    // ============================
+    @GetMapping("/cache/estadisticas")
+    public Map<String, Map<String, Object>> estadisticasCache() {
+        return productoService.estadisticasCache();
+    }
+
     // ============================
     // VALIDAR ADMIN
     // ============================
@@ -95,6 +189,47 @@ public class ProductoController {
         return ResponseEntity.status(201).body(productoService.crear(producto));
     }
 
+    // ============================
+    // IMPORTACIÓN MASIVA (solo admin)
+    // ============================
+    // Recibe CSV (con encabezado nombre,descripcion,precio,categoria) o NDJSON y
+    // responde NDJSON con los errores por fila y el avance mientras va guardando.
+    @PostMapping(
+            value = "/importar",
+            consumes = {"text/csv", "application/x-ndjson"},
+            produces = "application/x-ndjson"
+    )
+    public ResponseEntity<StreamingResponseBody> importar(
+            @RequestParam("emailAdmin") String emailAdmin,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            HttpServletRequest request
+    ) {
+        if (!esAdmin(emailAdmin)) {
+            return ResponseEntity.status(403)
+                    .body(salida -> salida.write("No tienes permisos para importar productos"
+                            .getBytes(StandardCharsets.UTF_8)));
+        }
+
+        ImportacionProductosService.Formato formato = contentType.startsWith("text/csv")
+                ? ImportacionProductosService.Formato.CSV
+                : ImportacionProductosService.Formato.NDJSON;
+
+        StreamingResponseBody cuerpo = salida -> importacionService.importar(
+                request.getInputStream(), formato, evento -> escribirEvento(salida, evento));
+
+        return ResponseEntity.ok().body(cuerpo);
+    }
+
+    private void escribirEvento(OutputStream salida, EventoImportacion evento) {
+        try {
+            salida.write(objectMapper.writeValueAsBytes(evento));
+            salida.write('\n');
+            salida.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     // ============================
     // ACTUALIZAR PRODUCTO (solo admin)
     // ============================
@@ -160,24 +295,74 @@ public class ProductoController {
     // ============================
     // OBTENER IMAGEN
     // ============================
+    // El ETag es el hash del archivo: si el cliente ya lo tiene se responde 304
+    // sin tocar el disco. Con ?v= igual al hash actual y la variante ya generada la
+    // URL no cambia nunca de contenido y se puede cachear como inmutable (si todavía
+    // se sirve la original en su lugar, va con no-cache). El cuerpo sale como Resource,
+    // así Spring atiende Range (206) sin cargar la imagen en memoria.
     @GetMapping(
             value = "/{id}/imagen",
             produces = {
                     MediaType.IMAGE_JPEG_VALUE,
                     MediaType.IMAGE_PNG_VALUE,
-                    MediaType.IMAGE_GIF_VALUE
+                    MediaType.IMAGE_GIF_VALUE,
+                    "image/webp",
+                    MediaType.APPLICATION_OCTET_STREAM_VALUE
             }
     )
-    public ResponseEntity<byte[]> obtenerImagen(@PathVariable Long id) {
-        Producto producto = productoService.obtenerPorId(id);
+    public ResponseEntity<Resource> obtenerImagen(
+            @PathVariable Long id,
+            @RequestParam(value = "size", defaultValue = "full") String size,
+            @RequestParam(value = "v", required = false) String version,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        ImagenTamano tamano;
+        try {
+            tamano = ImagenTamano.desde(size);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        HashesImagen hashes = productoService.obtenerHashesImagen(id);
+        String hash = hashes != null ? hashes.paraTamano(tamano) : null;
+
+        if (hash == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        String etag = "\"" + hash + "\"";
+        CacheControl cache = hashes.esVersion(version, tamano)
+                ? CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable()
+                : CacheControl.noCache().cachePublic();
+
+        if (coincideEtag(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cache).build();
+        }
 
-        if (producto == null || producto.getImagen() == null) {
+        Resource imagen = productoService.recursoImagen(hash);
+        if (imagen == null) {
             return ResponseEntity.notFound().build();
         }
 
-        return ResponseEntity.ok()
-                .contentType(MediaType.IMAGE_JPEG)
-                .body(producto.getImagen());
+        try {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(productoService.tipoImagen(hash)))
+                    .eTag(etag)
+                    .cacheControl(cache)
+                    .body(imagen);
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    private boolean coincideEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidato : ifNoneMatch.split(",")) {
+            String valor = candidato.trim();
+            if (valor.startsWith("W/")) valor = valor.substring(2);
+            if (valor.equals("*") || valor.equals(etag)) return true;
+        }
+        return false;
     }
 
     // ============================
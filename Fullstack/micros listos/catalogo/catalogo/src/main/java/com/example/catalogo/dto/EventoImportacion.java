@@ -0,0 +1,32 @@
+package com.example.catalogo.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Una línea de la respuesta NDJSON de la importación masiva: un error de una
+ * fila, el avance después de cada lote o el resumen final.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Evento de progreso de la importación de productos")
+public record EventoImportacion(
+        String tipo,
+        Integer fila,
+        String mensaje,
+        Integer procesadas,
+        Integer insertadas,
+        Integer errores
+) {
+
+    public static EventoImportacion error(int fila, String mensaje) {
+        return new EventoImportacion("error", fila, mensaje, null, null, null);
+    }
+
+    public static EventoImportacion progreso(int procesadas, int insertadas, int errores) {
+        return new EventoImportacion("progreso", null, null, procesadas, insertadas, errores);
+    }
+
+    public static EventoImportacion resumen(int procesadas, int insertadas, int errores) {
+        return new EventoImportacion("resumen", null, null, procesadas, insertadas, errores);
+    }
+}
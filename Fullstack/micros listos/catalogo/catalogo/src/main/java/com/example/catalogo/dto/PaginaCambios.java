@@ -0,0 +1,22 @@
+package com.example.catalogo.dto;
+
+import com.example.catalogo.model.CambioProducto;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * Cambios del catálogo posteriores a una versión. Para seguir sincronizando se
+ * vuelve a pedir con desde = ultimaVersion.
+ *
+ * Si reiniciar es true, los cambios posteriores a la versión pedida ya se purgaron:
+ * el cliente tiene que recargar el catálogo completo y seguir desde ultimaVersion.
+ */
+@Schema(description = "Página del registro de cambios del catálogo")
+public record PaginaCambios(
+        List<CambioProducto> cambios,
+        @Schema(description = "Última versión incluida (o la pedida si no hubo cambios)") Long ultimaVersion,
+        @Schema(description = "true si quedan más cambios por leer") boolean hayMas,
+        @Schema(description = "true si el historial pedido ya no existe y hay que recargar el catálogo") boolean reiniciar
+) {
+}
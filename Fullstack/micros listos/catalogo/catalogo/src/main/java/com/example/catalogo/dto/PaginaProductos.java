@@ -0,0 +1,16 @@
+package com.example.catalogo.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * Una página del listado paginado por cursor. Para pedir la siguiente se pasa
+ * "siguiente" como parámetro despuesDe; si es null no quedan más productos.
+ */
+@Schema(description = "Página de productos paginada por cursor")
+public record PaginaProductos(
+        List<ProductoResumen> productos,
+        @Schema(description = "Cursor para la siguiente página (null si es la última)") Long siguiente
+) {
+}
@@ -0,0 +1,34 @@
+package com.example.catalogo.dto;
+
+import com.example.catalogo.model.Producto;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Vista reducida de un producto para listados. Se arma directamente en la
+ * consulta, así que nunca carga la descripción ni toca las columnas de imagen
+ * más allá del hash.
+ */
+@Schema(description = "Resumen de producto para listados")
+public record ProductoResumen(
+        Long id,
+        String nombre,
+        Double precio,
+        String categoria,
+        @JsonIgnore String imagenHash
+) {
+
+    @JsonProperty("imageUrl")
+    @Schema(description = "URL de la imagen del producto", accessMode = Schema.AccessMode.READ_ONLY)
+    public String imageUrl() {
+        return Producto.urlImagen(id, imagenHash);
+    }
+
+    @JsonProperty("thumbnailUrl")
+    @Schema(description = "URL de la miniatura del producto", accessMode = Schema.AccessMode.READ_ONLY)
+    public String thumbnailUrl() {
+        String url = imageUrl();
+        return url != null ? url + "&size=thumb" : null;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.catalogo.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * Respuesta de la consulta de varios productos por id. Los productos vienen en
+ * el mismo orden en que se pidieron; los ids que no existen van aparte.
+ */
+@Schema(description = "Productos pedidos por lista de ids")
+public record ProductosPorIds(
+        List<ProductoResumen> productos,
+        @Schema(description = "Ids pedidos que no existen") List<Long> noEncontrados
+) {
+}
@@ -0,0 +1,37 @@
+package com.example.catalogo.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "cambios_productos")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Cambio registrado sobre un producto del catálogo")
+public class CambioProducto {
+
+    public enum Tipo { CREADO, ACTUALIZADO, IMAGEN, ELIMINADO }
+
+    // La asigna CambioProductoJdbcRepository, en el orden en que se confirman los cambios
+    @Id
+    @Schema(description = "Versión del catálogo, crece con cada cambio")
+    private Long version;
+
+    @Column(name = "producto_id", nullable = false)
+    @Schema(description = "ID del producto que cambió")
+    private Long productoId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Schema(description = "Tipo de cambio", example = "ACTUALIZADO")
+    private Tipo tipo;
+
+    @Column(nullable = false)
+    @Schema(description = "Momento del cambio")
+    private LocalDateTime fecha;
+}
@@ -1,5 +1,7 @@
 package com.example.catalogo.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Min;
@@ -8,11 +10,14 @@ import jakarta.validation.constraints.NotNull;
 import lombok.*;
 
 @Entity
-@Table(name = "productos")
+@Table(name = "productos", indexes = {
+        // Soporta el listado por categoría paginado por id
+        @Index(name = "idx_productos_categoria_id", columnList = "categoria, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 @Schema(description = "Modelo de Producto")
 public class Producto {
 
@@ -37,13 +42,48 @@ public class Producto {
     @Schema(description = "Precio del producto", example = "19990")
     private Double precio;
 
-    @Lob
-    @Column(name = "imagen", columnDefinition = "LONGBLOB")
-    @Schema(description = "Imagen del producto almacenada como BLOB")
-    private byte[] imagen;
+    // Solo lo asigna el servidor al guardar la imagen: un hash enviado por el cliente
+    // podría apuntar a la imagen de otro registro
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(name = "imagen_hash", length = 64)
+    @Schema(description = "Hash SHA-256 de la imagen en el almacén de imágenes", accessMode = Schema.AccessMode.READ_ONLY)
+    private String imagenHash;
 
     @NotBlank(message = "La categoría no puede estar vacía")
     @Column(nullable = false)
     @Schema(description = "Categoría del producto", example = "Perros")
     private String categoria;
-}
\ No newline at end of file
+
+    @JsonIgnore
+    @Column(name = "imagen_thumb_hash", length = 64)
+    private String imagenThumbHash;
+
+    @JsonIgnore
+    @Column(name = "imagen_medium_hash", length = 64)
+    private String imagenMediumHash;
+
+    @JsonIgnore
+    @Column(name = "imagen_full_hash", length = 64)
+    private String imagenFullHash;
+
+    public Producto(Long id, String nombre, String descripcion, Double precio, String imagenHash, String categoria) {
+        this(id, nombre, descripcion, precio, imagenHash, categoria, null, null, null);
+    }
+
+    @Schema(description = "URL de la imagen del producto", accessMode = Schema.AccessMode.READ_ONLY)
+    public String getImageUrl() {
+        return urlImagen(id, imagenHash);
+    }
+
+    @Schema(description = "URL de la miniatura del producto", accessMode = Schema.AccessMode.READ_ONLY)
+    public String getThumbnailUrl() {
+        String url = getImageUrl();
+        return url != null ? url + "&size=thumb" : null;
+    }
+
+    // La versión (?v=) cambia con el contenido, así la URL se puede cachear para siempre
+    public static String urlImagen(Long id, String imagenHash) {
+        if (id == null || imagenHash == null) return null;
+        return "/productos/" + id + "/imagen?v=" + imagenHash.substring(0, 12);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.catalogo.repository;
+
+import com.example.catalogo.model.CambioProducto;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Escrituras del registro de cambios por JDBC.
+ *
+ * Las versiones no salen de AUTO_INCREMENT: con IDENTITY dos transacciones pueden
+ * confirmar en otro orden que el de sus ids y un cliente que ya leyó la versión 11
+ * nunca vería la 10. Acá se toman del contador "cambios_productos" de id_generadores,
+ * cuya fila queda bloqueada hasta el commit; así las versiones se confirman en orden.
+ */
+@Repository
+public class CambioProductoJdbcRepository {
+
+    private static final String GENERADOR = "cambios_productos";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CambioProductoJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS id_generadores " +
+                "(nombre VARCHAR(64) NOT NULL PRIMARY KEY, siguiente BIGINT NOT NULL)");
+    }
+
+    // Asigna versiones consecutivas e inserta los cambios. Tiene que correr dentro de la
+    // transacción que modifica los productos: el bloqueo del contador dura hasta su commit.
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void insertar(List<CambioProducto> cambios) {
+        if (cambios.isEmpty()) return;
+
+        jdbcTemplate.update("INSERT IGNORE INTO id_generadores (nombre, siguiente) VALUES (?, 0)", GENERADOR);
+        // El contador arranca por encima de las versiones que se generaron con AUTO_INCREMENT
+        jdbcTemplate.update(
+                "UPDATE id_generadores SET siguiente = LAST_INSERT_ID(" +
+                "GREATEST(siguiente, (SELECT COALESCE(MAX(version), 0) FROM cambios_productos)) + ?) WHERE nombre = ?",
+                cambios.size(), GENERADOR);
+        Long ultima = jdbcTemplate.queryForObject("SELECT LAST_INSERT_ID()", Long.class);
+
+        long version = ultima - cambios.size() + 1;
+        for (CambioProducto cambio : cambios) {
+            cambio.setVersion(version++);
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO cambios_productos (version, producto_id, tipo, fecha) VALUES (?, ?, ?, ?)",
+                cambios, cambios.size(), (ps, cambio) -> {
+                    ps.setLong(1, cambio.getVersion());
+                    ps.setLong(2, cambio.getProductoId());
+                    ps.setString(3, cambio.getTipo().name());
+                    ps.setTimestamp(4, Timestamp.valueOf(cambio.getFecha()));
+                });
+    }
+
+    // Borra hasta "lote" cambios anteriores a "limite". La versión más reciente se conserva
+    // siempre, para poder saber desde qué versión hay historial.
+    public int purgar(LocalDateTime limite, int lote) {
+        return jdbcTemplate.update(
+                "DELETE FROM cambios_productos WHERE fecha < ? AND version < " +
+                "(SELECT maxima FROM (SELECT MAX(version) AS maxima FROM cambios_productos) m) LIMIT " + lote,
+                Timestamp.valueOf(limite));
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.catalogo.repository;
+
+import com.example.catalogo.model.CambioProducto;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface CambioProductoRepository extends JpaRepository<CambioProducto, Long> {
+    List<CambioProducto> findByVersionGreaterThanOrderByVersion(Long version, Pageable pagina);
+
+    @Query("SELECT MIN(c.version) FROM CambioProducto c")
+    Long versionMinima();
+
+    @Query("SELECT MAX(c.version) FROM CambioProducto c")
+    Long versionMaxima();
+}
@@ -0,0 +1,61 @@
+package com.example.catalogo.repository;
+
+import com.example.catalogo.model.Producto;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Escrituras masivas de productos por JDBC. Con rewriteBatchedStatements=true
+ * el driver de MySQL manda cada lote como un único INSERT de varias filas.
+ */
+@Repository
+public class ProductoJdbcRepository {
+
+    private static final String INSERTAR =
+            "INSERT INTO productos (nombre, descripcion, precio, categoria) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ProductoJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Inserta el lote y asigna a cada producto el id generado por la base
+    public void insertarLote(List<Producto> productos) {
+        KeyHolder ids = new GeneratedKeyHolder();
+
+        jdbcTemplate.batchUpdate(
+                con -> con.prepareStatement(INSERTAR, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Producto producto = productos.get(i);
+                        ps.setString(1, producto.getNombre());
+                        ps.setString(2, producto.getDescripcion());
+                        ps.setDouble(3, producto.getPrecio());
+                        ps.setString(4, producto.getCategoria());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return productos.size();
+                    }
+                },
+                ids);
+
+        List<Map<String, Object>> generados = ids.getKeyList();
+        for (int i = 0; i < productos.size() && i < generados.size(); i++) {
+            Number id = (Number) generados.get(i).values().iterator().next();
+            productos.get(i).setId(id.longValue());
+        }
+    }
+}
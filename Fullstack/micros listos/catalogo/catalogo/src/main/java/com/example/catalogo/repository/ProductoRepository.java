@@ -1,13 +1,51 @@
 package com.example.catalogo.repository;
 
+import com.example.catalogo.dto.ProductoResumen;
 import com.example.catalogo.model.Producto;
+import com.example.catalogo.storage.HashesImagen;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ProductoRepository extends JpaRepository<Producto, Long> {
     List<Producto> findByCategoria(String categoria);
     List<Producto> findByNombreContainingIgnoreCase(String nombre);
-}
\ No newline at end of file
+
+    @Query("SELECT p FROM Producto p WHERE p.id > :despuesDe ORDER BY p.id")
+    List<Producto> findDespuesDe(Long despuesDe, Pageable pagina);
+
+    @Query("SELECT p FROM Producto p WHERE p.id > :desdeId AND p.imagenHash IS NOT NULL " +
+           "AND p.imagenThumbHash IS NULL ORDER BY p.id")
+    List<Producto> findPendientesDeDerivados(Long desdeId, Pageable pagina);
+
+    @Query("SELECT new com.example.catalogo.storage.HashesImagen(p.imagenHash, p.imagenThumbHash, " +
+           "p.imagenMediumHash, p.imagenFullHash) FROM Producto p WHERE p.id = :id")
+    Optional<HashesImagen> findHashesImagenById(Long id);
+
+    // Solo las columnas de las variantes, y solo si la original no cambió mientras se generaban
+    @Transactional
+    @Modifying
+    @Query("UPDATE Producto p SET p.imagenThumbHash = :thumb, p.imagenMediumHash = :medium, " +
+           "p.imagenFullHash = :full WHERE p.id = :id AND p.imagenHash = :original")
+    int asignarDerivados(Long id, String original, String thumb, String medium, String full);
+
+    @Query("SELECT new com.example.catalogo.dto.ProductoResumen(p.id, p.nombre, p.precio, p.categoria, p.imagenHash) " +
+           "FROM Producto p WHERE p.id > :despuesDe ORDER BY p.id")
+    List<ProductoResumen> findResumenDespuesDe(Long despuesDe, Pageable pagina);
+
+    @Query("SELECT new com.example.catalogo.dto.ProductoResumen(p.id, p.nombre, p.precio, p.categoria, p.imagenHash) " +
+           "FROM Producto p WHERE p.categoria = :categoria AND p.id > :despuesDe ORDER BY p.id")
+    List<ProductoResumen> findResumenPorCategoriaDespuesDe(String categoria, Long despuesDe, Pageable pagina);
+
+    @Query("SELECT new com.example.catalogo.dto.ProductoResumen(p.id, p.nombre, p.precio, p.categoria, p.imagenHash) " +
+           "FROM Producto p WHERE p.id IN :ids")
+    List<ProductoResumen> findResumenByIdIn(Collection<Long> ids);
+}
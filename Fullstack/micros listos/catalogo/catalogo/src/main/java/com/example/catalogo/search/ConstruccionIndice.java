@@ -0,0 +1,55 @@
+package com.example.catalogo.search;
+
+import com.example.catalogo.model.Producto;
+import com.example.catalogo.repository.ProductoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Arma el índice de búsqueda al arrancar, leyendo el catálogo por páginas.
+ * Después de esto el índice se mantiene al día desde ProductoService.
+ */
+@Component
+@Order(2)
+public class ConstruccionIndice implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ConstruccionIndice.class);
+    private static final int LOTE = 500;
+
+    private final ProductoRepository productoRepository;
+    private final IndiceProductos indiceProductos;
+
+    public ConstruccionIndice(ProductoRepository productoRepository, IndiceProductos indiceProductos) {
+        this.productoRepository = productoRepository;
+        this.indiceProductos = indiceProductos;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        indiceProductos.iniciarReconstruccion();
+
+        long ultimoId = 0;
+        int indexados = 0;
+
+        while (true) {
+            List<Producto> lote = productoRepository.findDespuesDe(ultimoId, PageRequest.of(0, LOTE));
+            if (lote.isEmpty()) break;
+
+            for (Producto producto : lote) {
+                indiceProductos.indexar(producto);
+                ultimoId = producto.getId();
+            }
+            indexados += lote.size();
+        }
+
+        indiceProductos.marcarListo();
+        log.info("Índice de búsqueda listo con {} productos", indexados);
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.catalogo.search;
+
+import com.example.catalogo.model.Producto;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice invertido en memoria sobre nombre, categoría y descripción de los productos.
+ * Reemplaza al LIKE '%texto%' del buscador: cada búsqueda recorre solo los términos
+ * que coinciden, admite prefijos (para buscar mientras se escribe) y errores de tipeo.
+ */
+@Component
+public class IndiceProductos {
+
+    private static final float PESO_NOMBRE = 3f;
+    private static final float PESO_CATEGORIA = 2f;
+    private static final float PESO_DESCRIPCION = 1f;
+
+    private static final float FACTOR_PREFIJO = 0.6f;
+    private static final float FACTOR_DIFUSO = 0.4f;
+
+    // término -> (id de producto -> peso del campo más importante donde aparece)
+    private final TreeMap<String, Map<Long, Float>> terminos = new TreeMap<>();
+    // id de producto -> sus términos, para poder sacarlo del índice
+    private final Map<Long, Set<String>> documentos = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean listo;
+
+    public boolean estaListo() {
+        return listo;
+    }
+
+    // Vacía el índice; hasta marcarListo() las búsquedas deben ir a la base de datos
+    public void iniciarReconstruccion() {
+        lock.writeLock().lock();
+        try {
+            listo = false;
+            terminos.clear();
+            documentos.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void marcarListo() {
+        listo = true;
+    }
+
+    // Agrega o reemplaza un producto
+    public void indexar(Producto producto) {
+        Map<String, Float> pesos = new HashMap<>();
+        acumular(pesos, producto.getNombre(), PESO_NOMBRE);
+        acumular(pesos, producto.getCategoria(), PESO_CATEGORIA);
+        acumular(pesos, producto.getDescripcion(), PESO_DESCRIPCION);
+
+        lock.writeLock().lock();
+        try {
+            quitar(producto.getId());
+            pesos.forEach((termino, peso) ->
+                    terminos.computeIfAbsent(termino, t -> new HashMap<>()).put(producto.getId(), peso));
+            documentos.put(producto.getId(), pesos.keySet());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void eliminar(Long id) {
+        lock.writeLock().lock();
+        try {
+            quitar(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ids de los productos que contienen todos los términos de la consulta,
+     * ordenados por relevancia. Cada término puede coincidir exacto, como prefijo
+     * o con hasta 1-2 letras de diferencia según su largo.
+     */
+    public List<Long> buscar(String consulta, int limite) {
+        List<String> tokens = tokenizar(consulta);
+        if (tokens.isEmpty()) return List.of();
+
+        lock.readLock().lock();
+        try {
+            Map<Long, Float> puntajes = null;
+
+            for (String token : new LinkedHashSet<>(tokens)) {
+                Map<Long, Float> delToken = puntajesDeToken(token);
+                if (puntajes == null) {
+                    puntajes = delToken;
+                } else {
+                    puntajes.keySet().retainAll(delToken.keySet());
+                    puntajes.replaceAll((id, puntaje) -> puntaje + delToken.get(id));
+                }
+                if (puntajes.isEmpty()) return List.of();
+            }
+
+            return puntajes.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Float>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.comparingByKey()))
+                    .limit(limite)
+                    .map(Map.Entry::getKey)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<Long, Float> puntajesDeToken(String token) {
+        Map<Long, Float> puntajes = new HashMap<>();
+        int total = Math.max(documentos.size(), 1);
+
+        // Exacto y por prefijo: todos los términos del árbol que empiezan con el token
+        for (var entrada : terminos.subMap(token, true, token + Character.MAX_VALUE, false).entrySet()) {
+            float factor = entrada.getKey().length() == token.length() ? 1f : FACTOR_PREFIJO;
+            sumarMejor(puntajes, entrada.getValue(), factor * idf(entrada.getValue().size(), total));
+        }
+
+        // Difuso: solo términos con la misma inicial y largo parecido, para no recorrer todo el vocabulario
+        int maxDistancia = distanciaPermitida(token);
+        if (maxDistancia > 0) {
+            String inicial = token.substring(0, 1);
+            for (var entrada : terminos.subMap(inicial, true, inicial + Character.MAX_VALUE, false).entrySet()) {
+                String termino = entrada.getKey();
+                if (termino.startsWith(token) || Math.abs(termino.length() - token.length()) > maxDistancia) continue;
+                if (distancia(token, termino, maxDistancia) <= maxDistancia) {
+                    sumarMejor(puntajes, entrada.getValue(), FACTOR_DIFUSO * idf(entrada.getValue().size(), total));
+                }
+            }
+        }
+        return puntajes;
+    }
+
+    private static void sumarMejor(Map<Long, Float> puntajes, Map<Long, Float> pesos, float factor) {
+        pesos.forEach((id, peso) -> puntajes.merge(id, peso * factor, Math::max));
+    }
+
+    // Términos que aparecen en menos productos pesan más
+    private static float idf(int conTermino, int total) {
+        return (float) Math.log(1 + (double) total / conTermino);
+    }
+
+    private static int distanciaPermitida(String token) {
+        if (token.length() < 4) return 0;
+        return token.length() < 8 ? 1 : 2;
+    }
+
+    // Levenshtein con corte temprano cuando ya se pasó del máximo
+    static int distancia(String a, String b, int maximo) {
+        int[] anterior = new int[b.length() + 1];
+        int[] actual = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) anterior[j] = j;
+
+        for (int i = 1; i <= a.length(); i++) {
+            actual[0] = i;
+            int minimoFila = actual[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int costo = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                actual[j] = Math.min(Math.min(actual[j - 1] + 1, anterior[j] + 1), anterior[j - 1] + costo);
+                minimoFila = Math.min(minimoFila, actual[j]);
+            }
+            if (minimoFila > maximo) return maximo + 1;
+            int[] tmp = anterior;
+            anterior = actual;
+            actual = tmp;
+        }
+        return anterior[b.length()];
+    }
+
+    private void quitar(Long id) {
+        Set<String> anteriores = documentos.remove(id);
+        if (anteriores == null) return;
+        for (String termino : anteriores) {
+            Map<Long, Float> ids = terminos.get(termino);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) terminos.remove(termino);
+            }
+        }
+    }
+
+    private static void acumular(Map<String, Float> pesos, String texto, float peso) {
+        for (String token : tokenizar(texto)) {
+            pesos.merge(token, peso, Math::max);
+        }
+    }
+
+    // Minúsculas, sin tildes y separado por cualquier cosa que no sea letra o número
+    static List<String> tokenizar(String texto) {
+        if (texto == null || texto.isBlank()) return List.of();
+        String normalizado = Normalizer.normalize(texto.toLowerCase(Locale.ROOT), Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "");
+        List<String> tokens = new ArrayList<>();
+        for (String token : normalizado.split("[^a-z0-9]+")) {
+            if (!token.isEmpty()) tokens.add(token);
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.catalogo.service;
+
+import com.example.catalogo.dto.PaginaCambios;
+import com.example.catalogo.model.CambioProducto;
+import com.example.catalogo.repository.CambioProductoJdbcRepository;
+import com.example.catalogo.repository.CambioProductoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registro de cambios del catálogo. Cada alta, modificación, cambio de imagen o
+ * baja deja una fila con una versión creciente; los clientes (cachés de otros
+ * servicios, la app) piden lo posterior a la última versión que vieron o se
+ * suscriben por SSE para recibirlo al momento.
+ *
+ * Los cambios se guardan "retencion" y después se purgan. Un cliente que pide desde
+ * una versión ya purgada, o que quedó demasiado atrás, recibe la señal de reiniciar:
+ * recarga el catálogo y sigue desde la versión actual.
+ */
+@Service
+public class CambiosProductoService {
+
+    private static final Logger log = LoggerFactory.getLogger(CambiosProductoService.class);
+    private static final long TIMEOUT_SSE = 30 * 60 * 1000L;
+    private static final int LOTE_PURGA = 1000;
+
+    // Al suscribirse se reenvían como máximo estos cambios; con más conviene recargar el catálogo
+    static final int MAXIMO_REENVIO = 5000;
+
+    private final CambioProductoRepository cambioProductoRepository;
+    private final CambioProductoJdbcRepository cambioProductoJdbcRepository;
+    private final Duration retencion;
+    private final List<SseEmitter> suscriptores = new CopyOnWriteArrayList<>();
+
+    public CambiosProductoService(CambioProductoRepository cambioProductoRepository,
+                                  CambioProductoJdbcRepository cambioProductoJdbcRepository,
+                                  @Value("${catalogo.cambios.retencion:7d}") Duration retencion) {
+        this.cambioProductoRepository = cambioProductoRepository;
+        this.cambioProductoJdbcRepository = cambioProductoJdbcRepository;
+        this.retencion = retencion;
+    }
+
+    public void registrar(Long productoId, CambioProducto.Tipo tipo) {
+        registrar(List.of(productoId), tipo);
+    }
+
+    // Se llama dentro de la transacción que modifica los productos: el cambio se confirma
+    // junto con el producto, o no se confirma ninguno de los dos
+    public void registrar(List<Long> productoIds, CambioProducto.Tipo tipo) {
+        LocalDateTime ahora = LocalDateTime.now();
+        List<CambioProducto> cambios = productoIds.stream()
+                .map(id -> new CambioProducto(null, id, tipo, ahora))
+                .toList();
+        cambioProductoJdbcRepository.insertar(cambios);
+
+        // Se avisa recién cuando el cambio es visible para los demás
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publicar(cambios);
+            }
+        });
+    }
+
+    public PaginaCambios obtenerDesde(long desde, int limite) {
+        if (historialPurgado(desde)) {
+            return reinicio();
+        }
+
+        List<CambioProducto> cambios = cambioProductoRepository
+                .findByVersionGreaterThanOrderByVersion(desde, PageRequest.of(0, limite + 1));
+
+        boolean hayMas = cambios.size() > limite;
+        if (hayMas) cambios = List.copyOf(cambios.subList(0, limite));
+
+        long ultima = cambios.isEmpty() ? desde : cambios.get(cambios.size() - 1).getVersion();
+        return new PaginaCambios(cambios, ultima, hayMas, false);
+    }
+
+    // Se manda primero lo pendiente desde la versión indicada y después los cambios en vivo.
+    // Un cambio puede llegar dos veces si ocurre mientras se envía lo pendiente: el cliente
+    // descarta las versiones que ya vio.
+    public SseEmitter suscribir(long desde) {
+        SseEmitter emitter = new SseEmitter(TIMEOUT_SSE);
+        emitter.onCompletion(() -> suscriptores.remove(emitter));
+        emitter.onTimeout(() -> suscriptores.remove(emitter));
+        emitter.onError(e -> suscriptores.remove(emitter));
+        suscriptores.add(emitter);
+
+        // Demasiado atrás (por ejemplo desde 0 con un historial largo): en lugar de reenviar todo el historial se pide recargar
+        Long actual = cambioProductoRepository.versionMaxima();
+        if (actual != null && (actual - desde > MAXIMO_REENVIO || historialPurgado(desde))) {
+            enviarReinicio(emitter, actual);
+            return emitter;
+        }
+
+        PaginaCambios pendientes;
+        do {
+            pendientes = obtenerDesde(desde, 500);
+            for (CambioProducto cambio : pendientes.cambios()) {
+                if (!enviar(emitter, cambio)) return emitter;
+            }
+            desde = pendientes.ultimaVersion();
+        } while (pendientes.hayMas());
+
+        return emitter;
+    }
+
+    @Scheduled(initialDelayString = "${catalogo.cambios.purga:1h}",
+               fixedDelayString = "${catalogo.cambios.purga:1h}")
+    public void purgar() {
+        LocalDateTime limite = LocalDateTime.now().minus(retencion);
+        long purgados = 0;
+        int filas;
+        do {
+            filas = cambioProductoJdbcRepository.purgar(limite, LOTE_PURGA);
+            purgados += filas;
+        } while (filas == LOTE_PURGA);
+
+        if (purgados > 0) {
+            log.info("Cambios del catálogo purgados: {}", purgados);
+        }
+    }
+
+    // Las versiones son consecutivas: si la más vieja que queda no sigue a la pedida, hubo purga
+    private boolean historialPurgado(long desde) {
+        Long minima = cambioProductoRepository.versionMinima();
+        return minima != null && desde < minima - 1;
+    }
+
+    private PaginaCambios reinicio() {
+        Long actual = cambioProductoRepository.versionMaxima();
+        return new PaginaCambios(List.of(), actual != null ? actual : 0L, false, true);
+    }
+
+    private void enviarReinicio(SseEmitter emitter, long version) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .id(String.valueOf(version))
+                    .name("reinicio")
+                    .data(Map.of("version", version)));
+        } catch (IOException | IllegalStateException e) {
+            suscriptores.remove(emitter);
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void publicar(List<CambioProducto> cambios) {
+        for (SseEmitter emitter : suscriptores) {
+            for (CambioProducto cambio : cambios) {
+                if (!enviar(emitter, cambio)) break;
+            }
+        }
+    }
+
+    private boolean enviar(SseEmitter emitter, CambioProducto cambio) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .id(String.valueOf(cambio.getVersion()))
+                    .name("cambio")
+                    .data(cambio));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            suscriptores.remove(emitter);
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+}
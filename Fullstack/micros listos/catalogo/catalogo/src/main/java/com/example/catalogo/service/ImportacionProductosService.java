@@ -0,0 +1,205 @@
+package com.example.catalogo.service;
+
+import com.example.catalogo.dto.EventoImportacion;
+import com.example.catalogo.model.Producto;
+import com.example.catalogo.repository.ProductoJdbcRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Importación masiva de productos desde CSV o JSON por líneas (NDJSON).
+ * Lee la entrada línea a línea, valida cada fila con las mismas reglas que
+ * POST /productos y guarda por lotes, así nunca tiene el archivo entero en memoria.
+ */
+@Service
+public class ImportacionProductosService {
+
+    public enum Formato { CSV, NDJSON }
+
+    private static final int LOTE = 500;
+    private static final List<String> COLUMNAS = List.of("nombre", "descripcion", "precio", "categoria");
+
+    private final ProductoJdbcRepository productoJdbcRepository;
+    private final ProductoService productoService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    public ImportacionProductosService(ProductoJdbcRepository productoJdbcRepository,
+                                       ProductoService productoService,
+                                       ObjectMapper objectMapper,
+                                       TransactionTemplate transactionTemplate) {
+        this.productoJdbcRepository = productoJdbcRepository;
+        this.productoService = productoService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    // Los eventos (errores por fila, avance por lote y resumen) se emiten a medida que se procesa
+    public void importar(InputStream entrada, Formato formato, Consumer<EventoImportacion> eventos) throws IOException {
+        BufferedReader lector = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8));
+        List<Producto> lote = new ArrayList<>(LOTE);
+        Map<String, Integer> columnas = null;
+        int fila = 0, procesadas = 0, insertadas = 0, errores = 0;
+        String linea;
+
+        while ((linea = lector.readLine()) != null) {
+            fila++;
+            if (linea.isBlank()) continue;
+
+            if (formato == Formato.CSV && columnas == null) {
+                Map<String, Integer> encabezado = leerEncabezado(linea);
+                columnas = encabezado;
+                List<String> faltantes = COLUMNAS.stream().filter(c -> !encabezado.containsKey(c)).toList();
+                if (!faltantes.isEmpty()) {
+                    eventos.accept(EventoImportacion.error(fila, "Faltan columnas en el encabezado: " + faltantes));
+                    break;
+                }
+                continue;
+            }
+
+            procesadas++;
+            String error;
+            Producto producto = null;
+            try {
+                producto = formato == Formato.CSV ? desdeCsv(columnas, linea) : desdeJson(linea);
+                error = validar(producto);
+            } catch (NumberFormatException e) {
+                error = "El precio no es un número válido";
+            } catch (JsonProcessingException | IllegalArgumentException e) {
+                error = "Fila mal formada";
+            }
+
+            if (error != null) {
+                errores++;
+                eventos.accept(EventoImportacion.error(fila, error));
+                continue;
+            }
+
+            lote.add(producto);
+            if (lote.size() == LOTE) {
+                insertadas += guardar(lote);
+                eventos.accept(EventoImportacion.progreso(procesadas, insertadas, errores));
+            }
+        }
+
+        if (!lote.isEmpty()) {
+            insertadas += guardar(lote);
+        }
+        eventos.accept(EventoImportacion.resumen(procesadas, insertadas, errores));
+    }
+
+    // Cada lote y sus cambios en el catálogo se confirman juntos
+    private int guardar(List<Producto> lote) {
+        transactionTemplate.executeWithoutResult(estado -> {
+            productoJdbcRepository.insertarLote(lote);
+            productoService.registrarImportados(lote);
+        });
+        int cantidad = lote.size();
+        lote.clear();
+        return cantidad;
+    }
+
+    // Mismas reglas que el alta individual en ProductoController
+    private String validar(Producto producto) {
+        if (producto.getNombre() == null || producto.getNombre().isBlank())
+            return "El nombre no puede estar vacío";
+        if (producto.getDescripcion() == null || producto.getDescripcion().isBlank())
+            return "La descripción no puede estar vacía";
+        if (producto.getDescripcion().length() > 500)
+            return "La descripción no puede superar los 500 caracteres";
+        if (producto.getCategoria() == null || producto.getCategoria().isBlank())
+            return "La categoría no puede estar vacía";
+        if (producto.getPrecio() == null)
+            return "El precio es obligatorio";
+        // Double.valueOf acepta "NaN" e "Infinity", y NaN pasaría la comparación de abajo
+        if (!Double.isFinite(producto.getPrecio()))
+            return "El precio no es un número válido";
+        if (producto.getPrecio() < 1000)
+            return "El precio mínimo es 1000 pesos";
+        return null;
+    }
+
+    private Map<String, Integer> leerEncabezado(String linea) {
+        List<String> nombres = separarCsv(linea.startsWith("\uFEFF") ? linea.substring(1) : linea);
+        Map<String, Integer> columnas = new HashMap<>();
+        for (int i = 0; i < nombres.size(); i++) {
+            columnas.put(nombres.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        return columnas;
+    }
+
+    private Producto desdeCsv(Map<String, Integer> columnas, String linea) {
+        List<String> valores = separarCsv(linea);
+        String precio = valor(valores, columnas.get("precio"));
+
+        Producto producto = new Producto();
+        producto.setNombre(valor(valores, columnas.get("nombre")));
+        producto.setDescripcion(valor(valores, columnas.get("descripcion")));
+        producto.setCategoria(valor(valores, columnas.get("categoria")));
+        producto.setPrecio(precio == null || precio.isBlank() ? null : Double.valueOf(precio.trim()));
+        return producto;
+    }
+
+    private Producto desdeJson(String linea) throws JsonProcessingException {
+        Map<?, ?> campos = objectMapper.readValue(linea, Map.class);
+        Object precio = campos.get("precio");
+
+        Producto producto = new Producto();
+        producto.setNombre(texto(campos.get("nombre")));
+        producto.setDescripcion(texto(campos.get("descripcion")));
+        producto.setCategoria(texto(campos.get("categoria")));
+        producto.setPrecio(precio == null ? null : Double.valueOf(precio.toString()));
+        return producto;
+    }
+
+    private static String texto(Object valor) {
+        return valor != null ? valor.toString() : null;
+    }
+
+    private static String valor(List<String> valores, int indice) {
+        return indice < valores.size() ? valores.get(indice) : null;
+    }
+
+    // Separa una línea CSV respetando comillas ("a, b" y "" como comilla escapada)
+    static List<String> separarCsv(String linea) {
+        List<String> valores = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    actual.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreComillas = false;
+                } else {
+                    actual.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == ',') {
+                valores.add(actual.toString());
+                actual.setLength(0);
+            } else {
+                actual.append(c);
+            }
+        }
+        if (entreComillas) {
+            throw new IllegalArgumentException("Comillas sin cerrar");
+        }
+        valores.add(actual.toString());
+        return valores;
+    }
+}
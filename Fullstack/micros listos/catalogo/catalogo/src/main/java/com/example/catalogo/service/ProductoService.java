@@ -1,25 +1,77 @@
 package com.example.catalogo.service;
 
+import com.example.catalogo.cache.ProductoCache;
+import com.example.catalogo.dto.PaginaProductos;
+import com.example.catalogo.dto.ProductoResumen;
+import com.example.catalogo.dto.ProductosPorIds;
+import com.example.catalogo.model.CambioProducto;
 import com.example.catalogo.model.Producto;
 import com.example.catalogo.repository.ProductoRepository;
+import com.example.catalogo.search.IndiceProductos;
+import com.example.catalogo.storage.HashesImagen;
+import com.example.catalogo.storage.ImagenDerivados;
+import com.example.catalogo.storage.ImagenStore;
+import com.example.catalogo.storage.ImagenTamano;
 import jakarta.annotation.PostConstruct;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class ProductoService {
 
+    private static final int LIMITE_BUSQUEDA = 50;
+
     private final ProductoRepository productoRepository;
-    
+    private final ImagenStore imagenStore;
+    private final ImagenDerivados imagenDerivados;
+    private final IndiceProductos indiceProductos;
+    private final ProductoCache productoCache;
+    private final CambiosProductoService cambiosProductoService;
+
+    // Usa el índice en memoria; mientras se arma al arrancar se cae al LIKE de la base
     public List<Producto> buscarPorNombre(String nombre) {
-    return productoRepository.findByNombreContainingIgnoreCase(nombre);
-}
+        if (!indiceProductos.estaListo()) {
+            return productoRepository.findByNombreContainingIgnoreCase(nombre);
+        }
+
+        List<Long> ids = productoCache.busqueda(nombre, consulta -> indiceProductos.buscar(consulta, LIMITE_BUSQUEDA));
+        if (ids.isEmpty()) return List.of();
 
-    public ProductoService(ProductoRepository productoRepository) {
+        // findAllById no respeta el orden, se reordena según la relevancia
+        Map<Long, Producto> porId = productoCache.productos(ids, faltantes ->
+                productoRepository.findAllById(new ArrayList<>(faltantes)).stream()
+                        .collect(Collectors.toMap(Producto::getId, Function.identity())));
+        return ids.stream().map(porId::get).filter(Objects::nonNull).toList();
+    }
+
+    public ProductoService(ProductoRepository productoRepository,
+                           ImagenStore imagenStore,
+                           ImagenDerivados imagenDerivados,
+                           IndiceProductos indiceProductos,
+                           ProductoCache productoCache,
+                           CambiosProductoService cambiosProductoService) {
         this.productoRepository = productoRepository;
+        this.imagenStore = imagenStore;
+        this.imagenDerivados = imagenDerivados;
+        this.indiceProductos = indiceProductos;
+        this.productoCache = productoCache;
+        this.cambiosProductoService = cambiosProductoService;
     }
 
     public List<Producto> obtenerTodos() {
@@ -27,54 +79,190 @@ public class ProductoService {
     }
 
     public Producto obtenerPorId(Long id) {
-        return productoRepository.findById(id).orElse(null);
+        return productoCache.producto(id, clave -> productoRepository.findById(clave).orElse(null));
     }
 
     public List<Producto> obtenerPorCategoria(String categoria) {
-        return productoRepository.findByCategoria(categoria);
+        return productoCache.categoria(categoria, productoRepository::findByCategoria);
     }
 
+    // Listado paginado por cursor (id): se pide un producto de más para saber si hay otra página
+    public PaginaProductos obtenerPagina(String categoria, Long despuesDe, int limite) {
+        long cursor = despuesDe != null ? despuesDe : 0L;
+        Pageable pagina = PageRequest.of(0, limite + 1);
+
+        List<ProductoResumen> productos = (categoria == null || categoria.isBlank())
+                ? productoRepository.findResumenDespuesDe(cursor, pagina)
+                : productoRepository.findResumenPorCategoriaDespuesDe(categoria, cursor, pagina);
+
+        if (productos.size() <= limite) {
+            return new PaginaProductos(productos, null);
+        }
+        List<ProductoResumen> visibles = List.copyOf(productos.subList(0, limite));
+        return new PaginaProductos(visibles, visibles.get(limite - 1).id());
+    }
+
+    // Varios productos en una sola consulta, en el orden pedido y sin repetir ids
+    public ProductosPorIds obtenerPorIds(List<Long> ids) {
+        List<Long> unicos = ids.stream().filter(Objects::nonNull).distinct().toList();
+        if (unicos.isEmpty()) return new ProductosPorIds(List.of(), List.of());
+
+        Map<Long, ProductoResumen> porId = productoRepository.findResumenByIdIn(unicos).stream()
+                .collect(Collectors.toMap(ProductoResumen::id, Function.identity()));
+
+        List<ProductoResumen> encontrados = new ArrayList<>();
+        List<Long> noEncontrados = new ArrayList<>();
+        for (Long id : unicos) {
+            ProductoResumen producto = porId.get(id);
+            if (producto != null) encontrados.add(producto);
+            else noEncontrados.add(id);
+        }
+        return new ProductosPorIds(encontrados, noEncontrados);
+    }
+
+    @Transactional
     public Producto crear(Producto producto) {
-        return productoRepository.save(producto);
+        Producto guardado = productoRepository.save(producto);
+        despuesDelCommit(() -> {
+            indiceProductos.indexar(guardado);
+            productoCache.productoCreado(guardado);
+        });
+        cambiosProductoService.registrar(guardado.getId(), CambioProducto.Tipo.CREADO);
+        return guardado;
     }
 
+    // Productos insertados por la importación masiva: se indexan e invalidan las cachés afectadas.
+    // Corre en la transacción del lote, para que el registro de cambios se confirme con los productos
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void registrarImportados(List<Producto> productos) {
+        despuesDelCommit(() -> {
+            for (Producto producto : productos) {
+                indiceProductos.indexar(producto);
+                productoCache.productoCreado(producto);
+            }
+        });
+        cambiosProductoService.registrar(productos.stream().map(Producto::getId).toList(), CambioProducto.Tipo.CREADO);
+    }
+
+    @Transactional
     public Producto actualizar(Long id, Producto producto) {
         Producto existente = productoRepository.findById(id).orElse(null);
 
         if (existente != null) {
+            String categoriaAnterior = existente.getCategoria();
             existente.setNombre(producto.getNombre());
             existente.setDescripcion(producto.getDescripcion());
             existente.setPrecio(producto.getPrecio());
             existente.setCategoria(producto.getCategoria());
-            return productoRepository.save(existente);
+            Producto guardado = productoRepository.save(existente);
+            despuesDelCommit(() -> {
+                indiceProductos.indexar(guardado);
+                productoCache.productoActualizado(guardado, categoriaAnterior);
+            });
+            cambiosProductoService.registrar(id, CambioProducto.Tipo.ACTUALIZADO);
+            return guardado;
         }
         return null;
     }
 
-    public boolean actualizarImagen(Long id, byte[] nuevaImagen) {
+    @Transactional
+    public boolean actualizarImagen(Long id, byte[] nuevaImagen) throws IOException {
         Producto producto = productoRepository.findById(id).orElse(null);
         if (producto == null) return false;
 
-        producto.setImagen(nuevaImagen);
+        producto.setImagenHash(imagenStore.guardar(nuevaImagen));
+        asignarDerivados(producto, nuevaImagen);
         productoRepository.save(producto);
+        despuesDelCommit(() -> productoCache.imagenActualizada(producto));
+        cambiosProductoService.registrar(id, CambioProducto.Tipo.IMAGEN);
         return true;
     }
 
+    // Regenera las variantes a partir de la imagen original ya guardada. El producto viene
+    // de una lectura anterior: guardarlo entero pisaría lo que se editó mientras tanto
+    public void generarDerivados(Producto producto) throws IOException {
+        asignarDerivados(producto, imagenStore.leer(producto.getImagenHash()));
+        // Sin variantes no hay nada que escribir; el backfill la vuelve a intentar al próximo arranque
+        if (producto.getImagenThumbHash() == null) return;
+        int actualizados = productoRepository.asignarDerivados(producto.getId(), producto.getImagenHash(),
+                producto.getImagenThumbHash(), producto.getImagenMediumHash(), producto.getImagenFullHash());
+        if (actualizados > 0) {
+            despuesDelCommit(() -> productoCache.imagenActualizada(producto));
+        }
+    }
+
+    public Map<String, Map<String, Object>> estadisticasCache() {
+        return productoCache.estadisticas();
+    }
+
+    // Solo los hashes de la imagen, sin cargar el producto completo
+    public HashesImagen obtenerHashesImagen(Long id) {
+        return productoRepository.findHashesImagenById(id).orElse(null);
+    }
+
+    // Archivo de la imagen para enviarlo por streaming (null si no existe)
+    public Resource recursoImagen(String hash) {
+        return imagenStore.existe(hash) ? new FileSystemResource(imagenStore.ruta(hash)) : null;
+    }
+
+    public String tipoImagen(String hash) throws IOException {
+        return ImagenDerivados.detectarTipo(imagenStore.leerCabecera(hash, 12));
+    }
+
+    private void asignarDerivados(Producto producto, byte[] original) throws IOException {
+        Map<ImagenTamano, byte[]> variantes = imagenDerivados.generar(original);
+
+        // Si el formato no se puede decodificar las variantes quedan en null y se sirve la original
+        producto.setImagenThumbHash(guardarVariante(variantes.get(ImagenTamano.THUMB)));
+        producto.setImagenMediumHash(guardarVariante(variantes.get(ImagenTamano.MEDIUM)));
+        producto.setImagenFullHash(guardarVariante(variantes.get(ImagenTamano.FULL)));
+    }
+
+    private String guardarVariante(byte[] variante) throws IOException {
+        return variante != null ? imagenStore.guardar(variante) : null;
+    }
+
+    @Transactional
     public boolean eliminar(Long id) {
         if (productoRepository.existsById(id)) {
             productoRepository.deleteById(id);
+            despuesDelCommit(() -> {
+                indiceProductos.eliminar(id);
+                productoCache.productoEliminado(id);
+            });
+            cambiosProductoService.registrar(id, CambioProducto.Tipo.ELIMINADO);
             return true;
         }
         return false;
     }
 
+    // La caché y el índice se tocan recién con el cambio confirmado: antes, una lectura
+    // concurrente volvería a cachear la fila vieja, y si la transacción se deshace quedarían
+    // con un producto que nunca existió. Se registra antes que el aviso de
+    // CambiosProductoService, así quien reciba el evento ya lee el producto nuevo.
+    // Fuera de una transacción (generarDerivados) la escritura ya está confirmada.
+    private void despuesDelCommit(Runnable accion) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            accion.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                accion.run();
+            }
+        });
+    }
+
    
-    private byte[] cargarImagen(String nombre) throws IOException {
+    private String cargarImagen(String nombre) throws IOException {
         InputStream input = getClass().getClassLoader().getResourceAsStream("static/" + nombre);
         if (input == null) {
             throw new IOException("No se encontró la imagen: " + nombre);
         }
-        return input.readAllBytes();
+        try (input) {
+            return imagenStore.guardar(input);
+        }
     }
 
  
@@ -0,0 +1,72 @@
+package com.example.catalogo.storage;
+
+import com.example.catalogo.model.Producto;
+import com.example.catalogo.repository.ProductoRepository;
+import com.example.catalogo.service.ProductoService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Genera las variantes (thumb, medium, full) de las imágenes subidas antes de
+ * que existieran. Corre en segundo plano al arrancar y avanza por id; como solo
+ * toma productos sin miniatura, si se interrumpe retoma donde quedó.
+ */
+@Component
+public class BackfillDerivados {
+
+    private static final Logger log = LoggerFactory.getLogger(BackfillDerivados.class);
+    private static final int LOTE = 20;
+
+    private final ProductoRepository productoRepository;
+    private final ProductoService productoService;
+    private final boolean habilitado;
+
+    public BackfillDerivados(ProductoRepository productoRepository,
+                             ProductoService productoService,
+                             @Value("${catalogo.imagenes.backfill-derivados:true}") boolean habilitado) {
+        this.productoRepository = productoRepository;
+        this.productoService = productoService;
+        this.habilitado = habilitado;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        if (!habilitado) return;
+
+        Thread hilo = new Thread(this::ejecutar, "backfill-imagenes");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    public int ejecutar() {
+        long ultimoId = 0;
+        int procesados = 0;
+
+        while (true) {
+            List<Producto> pendientes = productoRepository.findPendientesDeDerivados(ultimoId, PageRequest.of(0, LOTE));
+            if (pendientes.isEmpty()) break;
+
+            for (Producto producto : pendientes) {
+                try {
+                    productoService.generarDerivados(producto);
+                    procesados++;
+                } catch (Exception e) {
+                    log.warn("No se pudieron generar las variantes del producto {}: {}", producto.getId(), e.getMessage());
+                }
+                ultimoId = producto.getId();
+            }
+        }
+
+        if (procesados > 0) {
+            log.info("Variantes de imagen generadas para {} productos", procesados);
+        }
+        return procesados;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.catalogo.storage;
+
+/**
+ * Hashes de la imagen original y de sus variantes, sin el resto de la entidad.
+ */
+public record HashesImagen(String original, String thumb, String medium, String full) {
+
+    // Hash de la variante pedida; si aún no se generó se usa la original
+    public String paraTamano(ImagenTamano tamano) {
+        String variante = switch (tamano) {
+            case THUMB -> thumb;
+            case MEDIUM -> medium;
+            case FULL -> full;
+        };
+        return variante != null ? variante : original;
+    }
+
+    // true si ?v= es la versión actual y el tamaño pedido ya es definitivo. Mientras la
+    // variante no se genera se sirve la original, y esa respuesta no se puede cachear
+    // como inmutable: la misma URL va a devolver la variante cuando exista.
+    public boolean esVersion(String version, ImagenTamano tamano) {
+        return original != null && version != null && version.length() >= 8 && original.startsWith(version)
+                && tieneVariante(tamano);
+    }
+
+    private boolean tieneVariante(ImagenTamano tamano) {
+        return switch (tamano) {
+            case THUMB -> thumb != null;
+            case MEDIUM -> medium != null;
+            case FULL -> full != null;
+        };
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.catalogo.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Almacén de imágenes en disco direccionado por contenido.
+ * Cada imagen se guarda una sola vez bajo su hash SHA-256 (ab/cd/abcd...),
+ * así que dos productos con la misma foto comparten el mismo archivo.
+ */
+@Component
+public class ImagenStore {
+
+    private static final Pattern HASH_VALIDO = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path raiz;
+    private final Path temporales;
+
+    public ImagenStore(@Value("${catalogo.imagenes.directorio:./data/imagenes}") String directorio) throws IOException {
+        this.raiz = Paths.get(directorio).toAbsolutePath().normalize();
+        this.temporales = raiz.resolve("tmp");
+        Files.createDirectories(temporales);
+    }
+
+    // Guarda la imagen y devuelve su hash
+    public String guardar(byte[] datos) throws IOException {
+        return guardar(new ByteArrayInputStream(datos));
+    }
+
+    // Guarda el contenido del stream sin cargarlo entero en memoria
+    public String guardar(InputStream entrada) throws IOException {
+        MessageDigest digest = nuevoDigest();
+        Path temporal = Files.createTempFile(temporales, "subida-", ".tmp");
+
+        try {
+            try (InputStream in = new DigestInputStream(entrada, digest);
+                 OutputStream out = Files.newOutputStream(temporal)) {
+                in.transferTo(out);
+            }
+
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Path destino = ruta(hash);
+
+            if (!Files.exists(destino)) {
+                Files.createDirectories(destino.getParent());
+                try {
+                    Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException e) {
+                    // Otra subida con el mismo contenido llegó primero
+                }
+            }
+            return hash;
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    public boolean existe(String hash) {
+        return hash != null && HASH_VALIDO.matcher(hash).matches() && Files.isRegularFile(ruta(hash));
+    }
+
+    public byte[] leer(String hash) throws IOException {
+        return Files.readAllBytes(ruta(hash));
+    }
+
+    public InputStream abrir(String hash) throws IOException {
+        return Files.newInputStream(ruta(hash));
+    }
+
+    // Primeros bytes del archivo, para detectar el formato sin leerlo entero
+    public byte[] leerCabecera(String hash, int bytes) throws IOException {
+        try (InputStream in = abrir(hash)) {
+            return in.readNBytes(bytes);
+        }
+    }
+
+    // Ruta del archivo para un hash (no comprueba que exista)
+    public Path ruta(String hash) {
+        if (hash == null || !HASH_VALIDO.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Hash de imagen inválido: " + hash);
+        }
+        return raiz.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    private static MessageDigest nuevoDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.catalogo.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Mueve las imágenes que todavía están en la columna LONGBLOB "productos.imagen"
+ * al ImagenStore. Se ejecuta al arrancar, procesa de a pocos productos y es
+ * idempotente: si se corta a medias, la siguiente ejecución continúa donde quedó.
+ */
+@Component
+@Order(1)
+public class MigracionImagenesLegacy implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(MigracionImagenesLegacy.class);
+    private static final int LOTE = 20;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ImagenStore imagenStore;
+    private final boolean habilitada;
+
+    public MigracionImagenesLegacy(JdbcTemplate jdbcTemplate,
+                                   ImagenStore imagenStore,
+                                   @Value("${catalogo.imagenes.migrar-legacy:true}") boolean habilitada) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.imagenStore = imagenStore;
+        this.habilitada = habilitada;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!habilitada || !existeColumnaLegacy()) return;
+
+        long ultimoId = 0;
+        int migradas = 0;
+
+        while (true) {
+            List<Long> ids = jdbcTemplate.queryForList(
+                    "SELECT id FROM productos WHERE id > ? AND imagen IS NOT NULL ORDER BY id LIMIT " + LOTE,
+                    Long.class, ultimoId);
+            if (ids.isEmpty()) break;
+
+            for (Long id : ids) {
+                // Se lee el BLOB como stream, una fila a la vez
+                String hash = jdbcTemplate.query(
+                        "SELECT imagen FROM productos WHERE id = ?",
+                        rs -> rs.next() ? guardar(rs.getBinaryStream(1)) : null,
+                        id);
+
+                if (hash != null) {
+                    jdbcTemplate.update("UPDATE productos SET imagen_hash = ?, imagen = NULL WHERE id = ?", hash, id);
+                    migradas++;
+                }
+                ultimoId = id;
+            }
+        }
+
+        if (migradas > 0) {
+            log.info("Imágenes migradas al almacén de archivos: {}", migradas);
+        }
+    }
+
+    private String guardar(InputStream blob) {
+        if (blob == null) return null;
+        try (InputStream in = blob) {
+            return imagenStore.guardar(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean existeColumnaLegacy() {
+        Integer columnas = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.COLUMNS " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'productos' AND COLUMN_NAME = 'imagen'",
+                Integer.class);
+        return columnas != null && columnas > 0;
+    }
+}
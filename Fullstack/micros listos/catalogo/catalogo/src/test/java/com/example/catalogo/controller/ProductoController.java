@@ -4,6 +4,9 @@ import com.example.catalogo.Client.UsuarioClient;
 import com.example.catalogo.Client.UsuarioResponse;
 import com.example.catalogo.model.Producto;
 import com.example.catalogo.service.ProductoService;
+import com.example.catalogo.storage.HashesImagen;
+import com.example.catalogo.storage.ImagenTamano;
+import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -169,17 +172,20 @@ public class ProductoController {
     // ============================
     @GetMapping(value = "/{id}/imagen",
             produces = {MediaType.IMAGE_JPEG_VALUE, MediaType.IMAGE_PNG_VALUE, MediaType.IMAGE_GIF_VALUE})
-    public ResponseEntity<byte[]> obtenerImagen(@PathVariable Long id) {
+    public ResponseEntity<Resource> obtenerImagen(@PathVariable Long id) {
 
-        Producto producto = productoService.obtenerPorId(id);
+        HashesImagen hashes = productoService.obtenerHashesImagen(id);
+        String hash = hashes != null ? hashes.paraTamano(ImagenTamano.FULL) : null;
 
-        if (producto == null || producto.getImagen() == null) {
+        Resource imagen = hash != null ? productoService.recursoImagen(hash) : null;
+        if (imagen == null) {
             return ResponseEntity.notFound().build();
         }
 
         return ResponseEntity.ok()
                 .contentType(MediaType.IMAGE_JPEG)
-                .body(producto.getImagen());
+                .eTag("\"" + hash + "\"")
+                .body(imagen);
     }
 
     // ============================
@@ -0,0 +1,59 @@
+package com.example.catalogo.search;
+
+import com.example.catalogo.model.Producto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class IndiceProductosTest {
+
+    private IndiceProductos indice;
+
+    @BeforeEach
+    void setUp() {
+        indice = new IndiceProductos();
+        indice.indexar(new Producto(1L, "Alimento Premium Perro", "Alimento balanceado 15kg", 35990.0, null, "Alimento"));
+        indice.indexar(new Producto(2L, "Pelota Interactiva", "Pelota de goma con sonido", 8990.0, null, "Juguetes"));
+        indice.indexar(new Producto(3L, "Arena para Gatos", "Arena aglomerante 10kg", 12990.0, null, "Alimento"));
+        indice.marcarListo();
+    }
+
+    @Test
+    void buscar_porPrefijo_encuentraMientrasSeEscribe() {
+        assertThat(indice.buscar("pel", 10)).containsExactly(2L);
+    }
+
+    @Test
+    void buscar_conErrorDeTipeo_encuentraIgual() {
+        assertThat(indice.buscar("aliemnto", 10)).contains(1L);
+        assertThat(indice.buscar("gatoz", 10)).containsExactly(3L);
+    }
+
+    @Test
+    void buscar_ignoraMayusculasYTildes() {
+        assertThat(indice.buscar("PELÓTA", 10)).containsExactly(2L);
+    }
+
+    @Test
+    void buscar_coincidenciaEnNombre_rankeaPrimero() {
+        // "alimento" está en el nombre de 1 pero solo en la categoría de 3
+        assertThat(indice.buscar("alimento", 10)).containsExactly(1L, 3L);
+    }
+
+    @Test
+    void buscar_variosTerminos_exigeTodos() {
+        assertThat(indice.buscar("arena gatos", 10)).containsExactly(3L);
+        assertThat(indice.buscar("arena perro", 10)).isEmpty();
+    }
+
+    @Test
+    void indexar_actualizaYEliminar_mantieneIndiceAlDia() {
+        indice.indexar(new Producto(2L, "Cama para Perro", "Cama acolchada", 19990.0, null, "Accesorios"));
+        assertThat(indice.buscar("pelota", 10)).isEmpty();
+        assertThat(indice.buscar("cama", 10)).containsExactly(2L);
+
+        indice.eliminar(2L);
+        assertThat(indice.buscar("cama", 10)).isEmpty();
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.catalogo.service;
+
+import com.example.catalogo.dto.PaginaCambios;
+import com.example.catalogo.model.CambioProducto;
+import com.example.catalogo.repository.CambioProductoJdbcRepository;
+import com.example.catalogo.repository.CambioProductoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CambiosProductoServiceTest {
+
+    private CambioProductoRepository cambioProductoRepository;
+    private CambioProductoJdbcRepository cambioProductoJdbcRepository;
+    private CambiosProductoService cambiosProductoService;
+
+    @BeforeEach
+    void setUp() {
+        cambioProductoRepository = Mockito.mock(CambioProductoRepository.class);
+        cambioProductoJdbcRepository = Mockito.mock(CambioProductoJdbcRepository.class);
+        cambiosProductoService = new CambiosProductoService(cambioProductoRepository, cambioProductoJdbcRepository,
+                Duration.ofDays(7));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void obtenerDesde_conMasCambios_devuelveUltimaVersionDeLaPagina() {
+        when(cambioProductoRepository.findByVersionGreaterThanOrderByVersion(eq(10L), any())).thenReturn(List.of(
+                cambio(11L, 1L), cambio(12L, 2L), cambio(13L, 1L)
+        ));
+
+        PaginaCambios pagina = cambiosProductoService.obtenerDesde(10L, 2);
+
+        assertThat(pagina.cambios()).extracting(CambioProducto::getVersion).containsExactly(11L, 12L);
+        assertThat(pagina.ultimaVersion()).isEqualTo(12L);
+        assertThat(pagina.hayMas()).isTrue();
+    }
+
+    @Test
+    void obtenerDesde_sinCambios_mantieneVersionPedida() {
+        when(cambioProductoRepository.findByVersionGreaterThanOrderByVersion(eq(40L), any())).thenReturn(List.of());
+
+        PaginaCambios pagina = cambiosProductoService.obtenerDesde(40L, 100);
+
+        assertThat(pagina.cambios()).isEmpty();
+        assertThat(pagina.ultimaVersion()).isEqualTo(40L);
+        assertThat(pagina.hayMas()).isFalse();
+    }
+
+    @Test
+    void obtenerDesde_versionPurgada_pideReiniciar() {
+        when(cambioProductoRepository.versionMinima()).thenReturn(120L);
+        when(cambioProductoRepository.versionMaxima()).thenReturn(150L);
+
+        PaginaCambios pagina = cambiosProductoService.obtenerDesde(100L, 50);
+
+        assertThat(pagina.reiniciar()).isTrue();
+        assertThat(pagina.cambios()).isEmpty();
+        assertThat(pagina.ultimaVersion()).isEqualTo(150L);
+        verify(cambioProductoRepository, never()).findByVersionGreaterThanOrderByVersion(any(), any());
+    }
+
+    @Test
+    void obtenerDesde_justoAntesDeLaMasVieja_noPideReiniciar() {
+        when(cambioProductoRepository.versionMinima()).thenReturn(120L);
+        when(cambioProductoRepository.findByVersionGreaterThanOrderByVersion(eq(119L), any()))
+                .thenReturn(List.of(cambio(120L, 1L)));
+
+        PaginaCambios pagina = cambiosProductoService.obtenerDesde(119L, 50);
+
+        assertThat(pagina.reiniciar()).isFalse();
+        assertThat(pagina.cambios()).extracting(CambioProducto::getVersion).containsExactly(120L);
+    }
+
+    @Test
+    void suscribir_muyAtras_noReenviaElHistorial() {
+        when(cambioProductoRepository.versionMaxima()).thenReturn(CambiosProductoService.MAXIMO_REENVIO + 10L);
+
+        cambiosProductoService.suscribir(0L);
+
+        verify(cambioProductoRepository, never()).findByVersionGreaterThanOrderByVersion(any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void registrar_publicaRecienDespuesDelCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        ArgumentCaptor<List<CambioProducto>> cambios = ArgumentCaptor.forClass(List.class);
+
+        cambiosProductoService.registrar(List.of(3L, 4L), CambioProducto.Tipo.ELIMINADO);
+
+        verify(cambioProductoJdbcRepository).insertar(cambios.capture());
+        assertThat(cambios.getValue()).extracting(CambioProducto::getProductoId).containsExactly(3L, 4L);
+        assertThat(TransactionSynchronizationManager.getSynchronizations()).hasSize(1);
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+    }
+
+    @Test
+    void purgar_borraPorLotesHastaTerminar() {
+        when(cambioProductoJdbcRepository.purgar(any(), eq(1000))).thenReturn(1000, 1000, 20);
+
+        cambiosProductoService.purgar();
+
+        verify(cambioProductoJdbcRepository, times(3)).purgar(any(), eq(1000));
+    }
+
+    private static CambioProducto cambio(Long version, Long productoId) {
+        return new CambioProducto(version, productoId, CambioProducto.Tipo.ACTUALIZADO, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.catalogo.service;
+
+import com.example.catalogo.dto.EventoImportacion;
+import com.example.catalogo.repository.ProductoJdbcRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ImportacionProductosServiceTest {
+
+    private ProductoJdbcRepository productoJdbcRepository;
+    private ProductoService productoService;
+    private ImportacionProductosService importacionService;
+
+    @BeforeEach
+    void setUp() {
+        productoJdbcRepository = Mockito.mock(ProductoJdbcRepository.class);
+        productoService = Mockito.mock(ProductoService.class);
+        importacionService = new ImportacionProductosService(productoJdbcRepository, productoService, new ObjectMapper(),
+                new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class)));
+    }
+
+    @Test
+    void importar_csv_guardaFilasValidasYReportaErrores() throws IOException {
+        String csv = """
+                nombre,descripcion,precio,categoria
+                "Cama, grande",Cama acolchada,19990,Accesorios
+                Hueso,Hueso de goma,500,Juguetes
+                Snack,Snack dental,abc,Alimento
+                Plato,"Plato ""antideslizante""",4990,Accesorios
+                """;
+
+        List<EventoImportacion> eventos = importar(csv, ImportacionProductosService.Formato.CSV);
+
+        verify(productoJdbcRepository, times(1)).insertarLote(any());
+        verify(productoService, times(1)).registrarImportados(any());
+
+        assertThat(eventos).extracting(EventoImportacion::tipo).containsExactly("error", "error", "resumen");
+        assertThat(eventos.get(0).fila()).isEqualTo(3);
+        assertThat(eventos.get(1).mensaje()).isEqualTo("El precio no es un número válido");
+        assertThat(eventos.get(2).insertadas()).isEqualTo(2);
+        assertThat(eventos.get(2).errores()).isEqualTo(2);
+    }
+
+    @Test
+    void importar_csvSinColumnas_noGuardaNada() throws IOException {
+        List<EventoImportacion> eventos = importar("nombre,precio\nA,1000\n", ImportacionProductosService.Formato.CSV);
+
+        assertThat(eventos.get(0).mensaje()).contains("descripcion", "categoria");
+        verifyNoInteractions(productoJdbcRepository);
+    }
+
+    @Test
+    void importar_csv_rechazaPreciosNoFinitos() throws IOException {
+        String csv = """
+                nombre,descripcion,precio,categoria
+                Cama,Cama acolchada,NaN,Accesorios
+                Hueso,Hueso de goma,Infinity,Juguetes
+                Plato,Plato de acero,4990,Accesorios
+                """;
+
+        List<EventoImportacion> eventos = importar(csv, ImportacionProductosService.Formato.CSV);
+
+        assertThat(eventos).extracting(EventoImportacion::mensaje)
+                .containsExactly("El precio no es un número válido", "El precio no es un número válido", null);
+        assertThat(eventos.get(2).insertadas()).isEqualTo(1);
+        assertThat(eventos.get(2).errores()).isEqualTo(2);
+    }
+
+    @Test
+    void importar_ndjson_validaCadaLinea() throws IOException {
+        String ndjson = """
+                {"nombre":"Collar","descripcion":"Collar de cuero","precio":6990,"categoria":"Accesorios"}
+                {"nombre":"","descripcion":"Sin nombre","precio":6990,"categoria":"Accesorios"}
+                no es json
+                """;
+
+        List<EventoImportacion> eventos = importar(ndjson, ImportacionProductosService.Formato.NDJSON);
+
+        assertThat(eventos).extracting(EventoImportacion::mensaje)
+                .containsExactly("El nombre no puede estar vacío", "Fila mal formada", null);
+        assertThat(eventos.get(2).insertadas()).isEqualTo(1);
+    }
+
+    @Test
+    void separarCsv_respetaComillas() {
+        assertThat(ImportacionProductosService.separarCsv("a,\"b, c\",\"d \"\"e\"\"\","))
+                .containsExactly("a", "b, c", "d \"e\"", "");
+    }
+
+    private List<EventoImportacion> importar(String contenido, ImportacionProductosService.Formato formato) throws IOException {
+        List<EventoImportacion> eventos = new ArrayList<>();
+        importacionService.importar(new ByteArrayInputStream(contenido.getBytes(StandardCharsets.UTF_8)), formato, eventos::add);
+        return eventos;
+    }
+}
@@ -1,12 +1,28 @@
 package com.example.catalogo.service;
 
+import com.example.catalogo.cache.ProductoCache;
+import com.example.catalogo.dto.PaginaProductos;
+import com.example.catalogo.dto.ProductoResumen;
+import com.example.catalogo.dto.ProductosPorIds;
+import com.example.catalogo.model.CambioProducto;
 import com.example.catalogo.model.Producto;
 import com.example.catalogo.repository.ProductoRepository;
+import com.example.catalogo.search.IndiceProductos;
+import com.example.catalogo.storage.ImagenDerivados;
+import com.example.catalogo.storage.ImagenStore;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,12 +32,27 @@ import static org.mockito.Mockito.*;
 class ProductoServiceTest {
 
     private ProductoRepository productoRepository;
+    private ImagenStore imagenStore;
+    private IndiceProductos indiceProductos;
+    private CambiosProductoService cambiosProductoService;
     private ProductoService productoService;
 
     @BeforeEach
     void setUp() {
         productoRepository = Mockito.mock(ProductoRepository.class);
-        productoService = new ProductoService(productoRepository);
+        imagenStore = Mockito.mock(ImagenStore.class);
+        indiceProductos = new IndiceProductos();
+        ProductoCache productoCache = new ProductoCache(100, Duration.ofMinutes(1), 10, Duration.ofMinutes(1), 10, Duration.ofMinutes(1));
+        cambiosProductoService = Mockito.mock(CambiosProductoService.class);
+        productoService = new ProductoService(productoRepository, imagenStore, new ImagenDerivados(),
+                indiceProductos, productoCache, cambiosProductoService);
+    }
+
+    @AfterEach
+    void limpiarSincronizacion() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
     }
 
     @Test
@@ -48,6 +79,56 @@ class ProductoServiceTest {
         assertThat(res.getNombre()).isEqualTo("X");
     }
 
+    @Test
+    void obtenerPorId_segundaLectura_saleDeCacheHastaActualizar() {
+        Producto p = new Producto(6L, "X", "d", 1500.0, null, "c");
+        when(productoRepository.findById(6L)).thenReturn(Optional.of(p));
+        when(productoRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+
+        productoService.obtenerPorId(6L);
+        productoService.obtenerPorId(6L);
+        verify(productoRepository, times(1)).findById(6L);
+
+        productoService.actualizar(6L, new Producto(null, "Y", "d", 1600.0, null, "c"));
+        productoService.obtenerPorId(6L);
+        // una lectura de actualizar y otra porque la caché quedó invalidada
+        verify(productoRepository, times(3)).findById(6L);
+        assertThat(productoService.estadisticasCache().get("productos").get("aciertos")).isEqualTo(1L);
+    }
+
+    @Test
+    void obtenerPorId_modificarLoDevuelto_noCambiaLaCache() {
+        Producto p = new Producto(6L, "X", "d", 1500.0, null, "c");
+        when(productoRepository.findById(6L)).thenReturn(Optional.of(p));
+
+        productoService.obtenerPorId(6L).setPrecio(1.0);
+        p.setNombre("Cambiado sin guardar");
+
+        Producto res = productoService.obtenerPorId(6L);
+        assertThat(res.getPrecio()).isEqualTo(1500.0);
+        assertThat(res.getNombre()).isEqualTo("X");
+        verify(productoRepository, times(1)).findById(6L);
+    }
+
+    @Test
+    void actualizar_enTransaccion_invalidaLaCacheRecienAlConfirmar() {
+        Producto p = new Producto(6L, "Xilofono", "d", 1500.0, null, "c");
+        when(productoRepository.findById(6L)).thenReturn(Optional.of(p));
+        when(productoRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+        productoService.obtenerPorId(6L);
+
+        TransactionSynchronizationManager.initSynchronization();
+        productoService.actualizar(6L, new Producto(null, "Yogurt", "d", 1600.0, null, "c"));
+
+        // Sin commit la caché y el índice siguen como antes
+        assertThat(productoService.obtenerPorId(6L).getNombre()).isEqualTo("Xilofono");
+        assertThat(indiceProductos.buscar("yogurt", 10)).isEmpty();
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertThat(productoService.obtenerPorId(6L).getNombre()).isEqualTo("Yogurt");
+        assertThat(indiceProductos.buscar("yogurt", 10)).containsExactly(6L);
+    }
+
     @Test
     void obtenerPorId_noExistente_retornaNull() {
         when(productoRepository.findById(99L)).thenReturn(Optional.empty());
@@ -55,6 +136,46 @@ class ProductoServiceTest {
         assertThat(res).isNull();
     }
 
+    @Test
+    void obtenerPagina_conMasResultados_devuelveCursorSiguiente() {
+        when(productoRepository.findResumenPorCategoriaDespuesDe(eq("cat"), eq(0L), any())).thenReturn(List.of(
+                new ProductoResumen(1L, "A", 1000.0, "cat", null),
+                new ProductoResumen(4L, "B", 2000.0, "cat", null),
+                new ProductoResumen(7L, "C", 3000.0, "cat", null)
+        ));
+
+        PaginaProductos pagina = productoService.obtenerPagina("cat", null, 2);
+
+        assertThat(pagina.productos()).extracting(ProductoResumen::id).containsExactly(1L, 4L);
+        assertThat(pagina.siguiente()).isEqualTo(4L);
+    }
+
+    @Test
+    void obtenerPagina_ultimaPagina_sinCursor() {
+        when(productoRepository.findResumenDespuesDe(eq(4L), any())).thenReturn(List.of(
+                new ProductoResumen(7L, "C", 3000.0, "cat", "ab".repeat(32))
+        ));
+
+        PaginaProductos pagina = productoService.obtenerPagina(null, 4L, 2);
+
+        assertThat(pagina.productos()).hasSize(1);
+        assertThat(pagina.productos().get(0).imageUrl()).isEqualTo("/productos/7/imagen?v=abababababab");
+        assertThat(pagina.siguiente()).isNull();
+    }
+
+    @Test
+    void obtenerPorIds_respetaOrdenYReportaFaltantes() {
+        when(productoRepository.findResumenByIdIn(List.of(3L, 1L, 9L))).thenReturn(List.of(
+                new ProductoResumen(1L, "A", 1000.0, "cat", null),
+                new ProductoResumen(3L, "C", 3000.0, "cat", null)
+        ));
+
+        ProductosPorIds res = productoService.obtenerPorIds(List.of(3L, 1L, 3L, 9L));
+
+        assertThat(res.productos()).extracting(ProductoResumen::id).containsExactly(3L, 1L);
+        assertThat(res.noEncontrados()).containsExactly(9L);
+    }
+
     @Test
     void crear_guardaYRetornaProducto() {
         Producto nuevo = new Producto(null, "Nuevo", "desc", 1990.0, null, "cat");
@@ -81,6 +202,7 @@ class ProductoServiceTest {
         assertThat(res.getNombre()).isEqualTo("New");
         assertThat(res.getCategoria()).isEqualTo("B");
         verify(productoRepository).save(existente);
+        verify(cambiosProductoService).registrar(3L, CambioProducto.Tipo.ACTUALIZADO);
     }
 
     @Test
@@ -92,24 +214,60 @@ class ProductoServiceTest {
     }
 
     @Test
-    void actualizarImagen_existente_guardaImagen() {
+    void actualizarImagen_existente_guardaImagen() throws IOException {
         Producto p = new Producto(8L, "P", "d", 1500.0, null, "c");
         when(productoRepository.findById(8L)).thenReturn(Optional.of(p));
         byte[] data = new byte[]{1,2,3};
+        when(imagenStore.guardar(data)).thenReturn("ab".repeat(32));
 
         boolean ok = productoService.actualizarImagen(8L, data);
 
         assertThat(ok).isTrue();
         ArgumentCaptor<Producto> captor = ArgumentCaptor.forClass(Producto.class);
         verify(productoRepository).save(captor.capture());
-        assertThat(captor.getValue().getImagen()).isEqualTo(data);
+        assertThat(captor.getValue().getImagenHash()).isEqualTo("ab".repeat(32));
+        assertThat(captor.getValue().getImageUrl()).isEqualTo("/productos/8/imagen?v=abababababab");
+        // Bytes que no son una imagen decodificable: sin variantes, se sirve la original
+        assertThat(captor.getValue().getImagenThumbHash()).isNull();
+        assertThat(captor.getValue().getImagenFullHash()).isNull();
     }
 
     @Test
-    void actualizarImagen_noExistente_retornaFalse() {
+    void generarDerivados_actualizaSoloLasVariantes() throws IOException {
+        String original = "cd".repeat(32);
+        Producto p = new Producto(9L, "P", "d", 1500.0, null, "c");
+        p.setImagenHash(original);
+        ByteArrayOutputStream imagen = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(40, 20, BufferedImage.TYPE_INT_RGB), "jpeg", imagen);
+        when(imagenStore.leer(original)).thenReturn(imagen.toByteArray());
+        when(imagenStore.guardar(any())).thenReturn("t", "m", "f");
+
+        productoService.generarDerivados(p);
+
+        // No se guarda la entidad: pisaría lo editado desde que se leyó
+        verify(productoRepository).asignarDerivados(9L, original, "t", "m", "f");
+        verify(productoRepository, never()).save(any());
+    }
+
+    @Test
+    void generarDerivados_noDecodificable_noEscribeNada() throws IOException {
+        String original = "cd".repeat(32);
+        Producto p = new Producto(9L, "P", "d", 1500.0, null, "c");
+        p.setImagenHash(original);
+        when(imagenStore.leer(original)).thenReturn(new byte[]{1, 2, 3});
+
+        productoService.generarDerivados(p);
+
+        verify(productoRepository, never()).asignarDerivados(any(), any(), any(), any(), any());
+        verify(imagenStore, never()).guardar(any());
+    }
+
+    @Test
+    void actualizarImagen_noExistente_retornaFalse() throws IOException {
         when(productoRepository.findById(99L)).thenReturn(Optional.empty());
         boolean ok = productoService.actualizarImagen(99L, new byte[]{1});
         assertThat(ok).isFalse();
+        verify(imagenStore, never()).guardar(any(byte[].class));
     }
 
     @Test
@@ -118,6 +276,7 @@ class ProductoServiceTest {
         boolean ok = productoService.eliminar(5L);
         assertThat(ok).isTrue();
         verify(productoRepository).deleteById(5L);
+        verify(cambiosProductoService).registrar(5L, CambioProducto.Tipo.ELIMINADO);
     }
 
     @Test
@@ -138,4 +297,19 @@ class ProductoServiceTest {
         assertThat(res).hasSize(1);
         verify(productoRepository).findByNombreContainingIgnoreCase("algo");
     }
+
+    @Test
+    void buscarPorNombre_conIndiceListo_usaIndiceYRespetaRelevancia() {
+        Producto collar = new Producto(1L, "Collar", "Collar de nylon", 6990.0, null, "Accesorios");
+        Producto correa = new Producto(2L, "Correa", "Correa con collar de regalo", 9990.0, null, "Accesorios");
+        indiceProductos.indexar(collar);
+        indiceProductos.indexar(correa);
+        indiceProductos.marcarListo();
+        when(productoRepository.findAllById(any())).thenReturn(List.of(correa, collar));
+
+        var res = productoService.buscarPorNombre("colar");
+
+        assertThat(res).containsExactly(collar, correa);
+        verify(productoRepository, never()).findByNombreContainingIgnoreCase(any());
+    }
 }
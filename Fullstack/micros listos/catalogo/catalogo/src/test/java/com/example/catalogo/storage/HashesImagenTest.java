@@ -0,0 +1,27 @@
+package com.example.catalogo.storage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class HashesImagenTest {
+
+    private static final String ORIGINAL = "abababababababab";
+
+    @Test
+    void esVersion_conVarianteGenerada_esDefinitiva() {
+        HashesImagen hashes = new HashesImagen(ORIGINAL, "cdcd", "efef", "0101");
+
+        assertThat(hashes.esVersion("abababababab", ImagenTamano.THUMB)).isTrue();
+        assertThat(hashes.esVersion("cdcdcdcdcdcd", ImagenTamano.THUMB)).isFalse();
+    }
+
+    @Test
+    void esVersion_sinVariante_noEsDefinitiva() {
+        HashesImagen hashes = new HashesImagen(ORIGINAL, null, null, null);
+
+        // Se sirve la original hasta que se genere la variante
+        assertThat(hashes.paraTamano(ImagenTamano.THUMB)).isEqualTo(ORIGINAL);
+        assertThat(hashes.esVersion("abababababab", ImagenTamano.THUMB)).isFalse();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.catalogo.storage;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ImagenDerivadosTest {
+
+    private final ImagenDerivados imagenDerivados = new ImagenDerivados();
+
+    @Test
+    void generar_reduceCadaVarianteASuLadoMaximo() throws IOException {
+        byte[] original = codificar(new BufferedImage(2000, 1000, BufferedImage.TYPE_INT_RGB), "jpeg");
+
+        Map<ImagenTamano, byte[]> variantes = imagenDerivados.generar(original);
+
+        assertThat(variantes).containsOnlyKeys(ImagenTamano.values());
+        for (ImagenTamano tamano : ImagenTamano.values()) {
+            BufferedImage variante = leer(variantes.get(tamano));
+            // Conserva la proporción 2:1
+            assertThat(variante.getWidth()).isEqualTo(tamano.getLadoMaximo());
+            assertThat(variante.getHeight()).isEqualTo(tamano.getLadoMaximo() / 2);
+            assertThat(ImagenDerivados.detectarTipo(variantes.get(tamano))).isEqualTo("image/jpeg");
+        }
+    }
+
+    @Test
+    void generar_conTransparencia_codificaEnPng() throws IOException {
+        byte[] original = codificar(new BufferedImage(800, 800, BufferedImage.TYPE_INT_ARGB), "png");
+
+        Map<ImagenTamano, byte[]> variantes = imagenDerivados.generar(original);
+
+        assertThat(ImagenDerivados.detectarTipo(variantes.get(ImagenTamano.THUMB))).isEqualTo("image/png");
+        assertThat(leer(variantes.get(ImagenTamano.THUMB)).getWidth()).isEqualTo(200);
+    }
+
+    @Test
+    void generar_originalChica_noSeAgranda() throws IOException {
+        byte[] original = codificar(new BufferedImage(100, 50, BufferedImage.TYPE_INT_RGB), "jpeg");
+
+        Map<ImagenTamano, byte[]> variantes = imagenDerivados.generar(original);
+
+        assertThat(leer(variantes.get(ImagenTamano.FULL)).getWidth()).isEqualTo(100);
+    }
+
+    @Test
+    void generar_formatoNoDecodificable_devuelveMapaVacio() throws IOException {
+        assertThat(imagenDerivados.generar(new byte[]{1, 2, 3})).isEmpty();
+    }
+
+    @Test
+    void generar_jpegQueNoSePuedeLeer_devuelveMapaVacio() throws IOException {
+        // Cabecera JFIF sin datos de imagen: ImageIO lanza IIOException en vez de devolver null
+        byte[] truncado = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0, 16, 'J', 'F', 'I', 'F', 0};
+
+        assertThat(imagenDerivados.generar(truncado)).isEmpty();
+    }
+
+    @Test
+    void detectarTipo_segunCabecera() {
+        assertThat(ImagenDerivados.detectarTipo(new byte[]{'G', 'I', 'F', '8'})).isEqualTo("image/gif");
+        assertThat(ImagenDerivados.detectarTipo("RIFF0000WEBP".getBytes())).isEqualTo("image/webp");
+        assertThat(ImagenDerivados.detectarTipo(new byte[]{1, 2})).isEqualTo("application/octet-stream");
+    }
+
+    private static byte[] codificar(BufferedImage imagen, String formato) throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        ImageIO.write(imagen, formato, salida);
+        return salida.toByteArray();
+    }
+
+    private static BufferedImage leer(byte[] datos) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(datos));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.catalogo.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ImagenStoreTest {
+
+    @TempDir
+    Path directorio;
+
+    private ImagenStore imagenStore;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        imagenStore = new ImagenStore(directorio.toString());
+    }
+
+    @Test
+    void guardar_devuelveHashSha256YPermiteLeer() throws IOException {
+        byte[] datos = "imagen".getBytes();
+
+        String hash = imagenStore.guardar(datos);
+
+        assertThat(hash).hasSize(64);
+        assertThat(imagenStore.existe(hash)).isTrue();
+        assertThat(imagenStore.leer(hash)).isEqualTo(datos);
+    }
+
+    @Test
+    void guardar_mismoContenido_noDuplicaArchivo() throws IOException {
+        String h1 = imagenStore.guardar(new byte[]{1, 2, 3});
+        String h2 = imagenStore.guardar(new byte[]{1, 2, 3});
+
+        assertThat(h1).isEqualTo(h2);
+        try (var archivos = Files.walk(directorio)) {
+            assertThat(archivos.filter(Files::isRegularFile).count()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void ruta_hashInvalido_lanzaExcepcion() {
+        assertThatThrownBy(() -> imagenStore.ruta("../../etc/passwd"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(imagenStore.existe("no-es-hash")).isFalse();
+    }
+}
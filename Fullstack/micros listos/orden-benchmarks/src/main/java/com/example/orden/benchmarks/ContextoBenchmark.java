@@ -0,0 +1,44 @@
+package com.example.orden.benchmarks;
+
+import com.example.orden.orden.OrdenApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Levanta el servicio de órdenes completo con el tamaño de lote JDBC indicado.
+ * Usa H2 en memoria, o la base MySQL de -Dbenchmark.mysql si se indica.
+ */
+final class ContextoBenchmark {
+
+    private ContextoBenchmark() {
+    }
+
+    static ConfigurableApplicationContext iniciar(int tamanoLote) {
+        String mysql = System.getProperty("benchmark.mysql");
+
+        // Como argumentos de línea de comandos para que tengan prioridad sobre application.properties
+        List<String> argumentos = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.show-sql=false",
+                "--spring.jpa.properties.hibernate.format_sql=false",
+                "--spring.jpa.properties.hibernate.jdbc.batch_size=" + tamanoLote,
+                "--eureka.client.enabled=false",
+                "--spring.cloud.discovery.enabled=false",
+                "--logging.level.root=WARN"));
+
+        if (mysql != null) {
+            argumentos.add("--spring.datasource.url=" + mysql + "?rewriteBatchedStatements=true&createDatabaseIfNotExist=true");
+        } else {
+            argumentos.add("--spring.datasource.url=jdbc:h2:mem:orden" + tamanoLote + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+            argumentos.add("--spring.datasource.username=sa");
+            argumentos.add("--spring.datasource.password=");
+            argumentos.add("--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect");
+        }
+
+        return new SpringApplicationBuilder(OrdenApplication.class).run(argumentos.toArray(String[]::new));
+    }
+}
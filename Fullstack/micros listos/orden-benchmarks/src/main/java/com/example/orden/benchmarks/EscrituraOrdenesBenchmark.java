@@ -0,0 +1,80 @@
+package com.example.orden.benchmarks;
+
+import com.example.orden.orden.model.ItemOrden;
+import com.example.orden.orden.model.Orden;
+import com.example.orden.orden.repository.ItemOrdenRepository;
+import com.example.orden.orden.repository.OrdenRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Órdenes guardadas por segundo según la cantidad de líneas, con lotes JDBC
+ * (lote = 50) y sin ellos (lote = 1, un INSERT por fila como antes).
+ * Hace la misma escritura que OrdenService: la orden y sus items en una transacción.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EscrituraOrdenesBenchmark {
+
+    @Param({"1", "10", "30"})
+    int lineas;
+
+    @Param({"1", "50"})
+    int lote;
+
+    private ConfigurableApplicationContext contexto;
+    private OrdenRepository ordenRepository;
+    private ItemOrdenRepository itemOrdenRepository;
+    private TransactionTemplate transactionTemplate;
+    private long usuarioId;
+
+    @Setup(Level.Trial)
+    public void iniciar() {
+        contexto = ContextoBenchmark.iniciar(lote);
+        ordenRepository = contexto.getBean(OrdenRepository.class);
+        itemOrdenRepository = contexto.getBean(ItemOrdenRepository.class);
+        transactionTemplate = contexto.getBean(TransactionTemplate.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public Orden guardarOrden() {
+        long usuario = ++usuarioId;
+        return transactionTemplate.execute(estado -> {
+            List<ItemOrden> items = new ArrayList<>(lineas);
+            double total = 0;
+            for (int i = 0; i < lineas; i++) {
+                ItemOrden item = new ItemOrden();
+                item.setProductoId((long) i + 1);
+                item.setProductoNombre("Producto " + (i + 1));
+                item.setProductoPrecio(1000.0 + i);
+                item.setCantidad(1 + i % 3);
+                items.add(item);
+                total += item.getProductoPrecio() * item.getCantidad();
+            }
+
+            Orden orden = new Orden();
+            orden.setUsuarioId(usuario);
+            orden.setTotal(total);
+            orden = ordenRepository.save(orden);
+
+            Long ordenId = orden.getId();
+            items.forEach(item -> item.setOrdenId(ordenId));
+            itemOrdenRepository.saveAll(items);
+            return orden;
+        });
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.orden.orden.Client;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+@Component
+public class CarritoClient {
+    
+    private final WebClient webClient;
+    private final Duration timeout;
+    
+    public CarritoClient(@Value("${carrito-service.url}") String carritoUrl,
+                         @Value("${carrito-service.timeout:3s}") Duration timeout) {
+        this.webClient = WebClient.builder()
+                .baseUrl(carritoUrl)
+                .build();
+        this.timeout = timeout;
+    }
+    
+    // Items, total y versión del carrito. Los errores del carrito (WebClientResponseException) se propagan.
+    public Map<String, Object> obtenerCarrito(Long usuarioId) {
+        return this.webClient.get()
+                .uri("/carrito/usuario/{id}/detalles", usuarioId)
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                .timeout(timeout)
+                .block();
+    }
+    
+    // Deja el carrito con las líneas indicadas ({productoId, cantidad}). Con version != null
+    // el carrito responde 409 si cambió desde esa versión.
+    public void reemplazarCarrito(Long usuarioId, List<Map<String, Object>> items, Long version) {
+        Map<String, Object> cuerpo = version != null
+                ? Map.of("items", items, "version", version)
+                : Map.of("items", items);
+        this.webClient.put()
+                .uri("/carrito/usuario/{id}", usuarioId)
+                .bodyValue(cuerpo)
+                .retrieve()
+                .toBodilessEntity()
+                .timeout(timeout)
+                .block();
+    }
+}
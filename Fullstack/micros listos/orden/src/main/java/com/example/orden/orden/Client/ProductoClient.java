@@ -0,0 +1,58 @@
+package com.example.orden.orden.Client;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Component
+public class ProductoClient {
+    
+    // Tope de ids por llamada que acepta /productos/batch en el catálogo
+    static final int MAXIMO_IDS_POR_CONSULTA = 500;
+    
+    private final WebClient webClient;
+    private final Duration timeout;
+    
+    public ProductoClient(@Value("${catalogo-service.url}") String catalogoUrl,
+                          @Value("${catalogo-service.timeout:3s}") Duration timeout) {
+        this.webClient = WebClient.builder()
+                .baseUrl(catalogoUrl)
+                .build();
+        this.timeout = timeout;
+    }
+    
+    // Varios productos por llamadas a /productos/batch de hasta MAXIMO_IDS_POR_CONSULTA ids:
+    // id -> producto. Los que no existen no aparecen; devuelve null si el catálogo no responde.
+    public Map<Long, Map<String, Object>> obtenerProductosPorIds(Collection<Long> ids) {
+        List<Long> pendientes = List.copyOf(ids);
+        Map<Long, Map<String, Object>> productos = new HashMap<>();
+        try {
+            for (int desde = 0; desde < pendientes.size(); desde += MAXIMO_IDS_POR_CONSULTA) {
+                List<Long> tramo = pendientes.subList(desde, Math.min(desde + MAXIMO_IDS_POR_CONSULTA, pendientes.size()));
+                Map<String, Object> respuesta = this.webClient.post()
+                        .uri("/productos/batch")
+                        .bodyValue(tramo)
+                        .retrieve()
+                        .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                        .timeout(timeout)
+                        .block();
+                
+                for (Object producto : (List<?>) respuesta.get("productos")) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> datos = (Map<String, Object>) producto;
+                    productos.put(((Number) datos.get("id")).longValue(), datos);
+                }
+            }
+            return productos;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
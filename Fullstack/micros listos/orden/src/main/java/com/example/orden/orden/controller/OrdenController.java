@@ -1,8 +1,12 @@
 package com.example.orden.orden.controller;
 
+import com.example.orden.orden.dto.PaginaOrdenes;
 import com.example.orden.orden.model.ItemOrden;
 import com.example.orden.orden.model.Orden;
+import com.example.orden.orden.service.CarritoModificadoException;
+import com.example.orden.orden.service.IdempotenciaOrdenes;
 import com.example.orden.orden.service.OrdenService;
+import com.example.orden.orden.service.SolicitudEnCursoException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import org.springframework.http.ResponseEntity;
@@ -14,10 +18,15 @@ import java.util.Map;
 @RequestMapping("/ordenes")
 public class OrdenController {
     
+    private static final int LIMITE_MAXIMO_PAGINA = 100;
+    private static final int LIMITE_MAXIMO_DETALLES = 50;
+    
     private final OrdenService ordenService;
+    private final IdempotenciaOrdenes idempotencia;
     
-    public OrdenController(OrdenService ordenService) {
+    public OrdenController(OrdenService ordenService, IdempotenciaOrdenes idempotencia) {
         this.ordenService = ordenService;
+        this.idempotencia = idempotencia;
     }
     
     @Operation(summary = "Obtener órdenes de un usuario")
@@ -32,6 +41,39 @@ public class OrdenController {
         }
     }
     
+    @Operation(summary = "Historial de órdenes de un usuario, paginado por cursor",
+               description = "De la más nueva a la más vieja. Para la página siguiente se pasa el valor " +
+                             "'siguiente' de la respuesta como despuesDe.")
+    @ApiResponse(responseCode = "200", description = "Página obtenida")
+    @GetMapping("/usuario/{usuarioId}/pagina")
+    public ResponseEntity<?> obtenerPaginaPorUsuario(
+            @PathVariable Long usuarioId,
+            @RequestParam(value = "despuesDe", required = false) String despuesDe,
+            @RequestParam(value = "limite", defaultValue = "20") int limite) {
+        try {
+            int limiteValido = Math.max(1, Math.min(limite, LIMITE_MAXIMO_PAGINA));
+            PaginaOrdenes pagina = ordenService.obtenerPagina(usuarioId, despuesDe, limiteValido);
+            return ResponseEntity.ok(pagina);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    @Operation(summary = "Últimas órdenes de un usuario con sus items",
+               description = "Reemplaza pedir /ordenes/{id}/items por cada orden del historial.")
+    @ApiResponse(responseCode = "200", description = "Órdenes con sus items, de la más nueva a la más vieja")
+    @GetMapping("/usuario/{usuarioId}/detalles")
+    public ResponseEntity<?> obtenerDetallesPorUsuario(
+            @PathVariable Long usuarioId,
+            @RequestParam(value = "limit", defaultValue = "20") int limite) {
+        try {
+            int limiteValido = Math.max(1, Math.min(limite, LIMITE_MAXIMO_DETALLES));
+            return ResponseEntity.ok(ordenService.obtenerDetallesPorUsuario(usuarioId, limiteValido));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
     @Operation(summary = "Obtener items de una orden")
     @ApiResponse(responseCode = "200", description = "Items obtenidos")
     @GetMapping("/{ordenId}/items")
@@ -44,10 +86,56 @@ public class OrdenController {
         }
     }
     
-    @Operation(summary = "Crear una nueva orden (checkout)")
-    @ApiResponse(responseCode = "201", description = "Orden creada")
+    @Operation(summary = "Crear una nueva orden (checkout)",
+               description = "Con el header Idempotency-Key los reintentos con la misma clave y el mismo cuerpo " +
+                             "devuelven la orden ya creada en lugar de crear otra.")
+    @ApiResponse(responseCode = "201", description = "Orden creada (o la ya creada con esa Idempotency-Key)")
+    @ApiResponse(responseCode = "409", description = "Otra solicitud con la misma Idempotency-Key está en curso")
+    @ApiResponse(responseCode = "422", description = "La Idempotency-Key ya se usó con otro cuerpo")
     @PostMapping
-    public ResponseEntity<?> crearOrden(@RequestBody Map<String, Object> request) {
+    public ResponseEntity<?> crearOrden(
+            @RequestBody Map<String, Object> request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String claveIdempotencia) {
+        if (claveIdempotencia == null) {
+            return registrarOrden(request, null, null);
+        }
+        if (claveIdempotencia.isBlank() || claveIdempotencia.length() > IdempotenciaOrdenes.LARGO_MAXIMO_CLAVE) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Idempotency-Key inválida"));
+        }
+        
+        IdempotenciaOrdenes.Reserva reserva = idempotencia.reservar(
+                claveIdempotencia, IdempotenciaOrdenes.huella(request));
+        if (reserva.estado() == IdempotenciaOrdenes.Estado.COMPLETADA) {
+            // Reintento: se devuelve la orden original sin volver a validar ni insertar
+            return ordenService.obtenerOrdenPorId(reserva.ordenId())
+                    .<ResponseEntity<?>>map(orden -> ResponseEntity.status(201)
+                            .header("Idempotent-Replayed", "true")
+                            .body(orden))
+                    .orElse(ResponseEntity.notFound().build());
+        }
+        if (reserva.estado() == IdempotenciaOrdenes.Estado.EN_CURSO) {
+            return ResponseEntity.status(409).body(Map.of("error", new SolicitudEnCursoException().getMessage()));
+        }
+        if (reserva.estado() == IdempotenciaOrdenes.Estado.OTRA_SOLICITUD) {
+            return ResponseEntity.status(422).body(Map.of("error", "La Idempotency-Key ya se usó con otra solicitud"));
+        }
+        
+        ResponseEntity<?> respuesta;
+        try {
+            respuesta = registrarOrden(request, claveIdempotencia, reserva.dueno());
+        } catch (SolicitudEnCursoException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            idempotencia.liberar(claveIdempotencia, reserva.dueno());
+            throw e;
+        }
+        if (!respuesta.getStatusCode().is2xxSuccessful()) {
+            idempotencia.liberar(claveIdempotencia, reserva.dueno());
+        }
+        return respuesta;
+    }
+    
+    private ResponseEntity<?> registrarOrden(Map<String, Object> request, String claveIdempotencia, String duenoClave) {
         try {
             Long usuarioId = Long.valueOf(request.get("usuarioId").toString());
             Double total = Double.valueOf(request.get("total").toString());
@@ -72,13 +160,31 @@ public class OrdenController {
                 return item;
             }).toList();
             
-            Orden orden = ordenService.crearOrden(usuarioId, total, items);
+            Orden orden = ordenService.crearOrden(usuarioId, total, items, claveIdempotencia, duenoClave);
             return ResponseEntity.status(201).body(orden);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
     
+    @Operation(summary = "Checkout del carrito del usuario",
+               description = "Toma el carrito desde el servicio de carrito, lo cobra con los precios actuales " +
+                             "del catálogo, vacía el carrito y devuelve la orden creada con sus items.")
+    @ApiResponse(responseCode = "201", description = "Orden creada")
+    @ApiResponse(responseCode = "409", description = "El carrito cambió durante el checkout")
+    @PostMapping("/checkout/{usuarioId}")
+    public ResponseEntity<?> checkout(@PathVariable Long usuarioId) {
+        try {
+            return ResponseEntity.status(201).body(ordenService.checkout(usuarioId));
+        } catch (CarritoModificadoException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
     @Operation(summary = "Obtener una orden por ID")
     @ApiResponse(responseCode = "200", description = "Orden encontrada")
     @GetMapping("/{ordenId}")
@@ -108,6 +214,22 @@ public class OrdenController {
         return ResponseEntity.ok(ordenes);
     }
     
+    @Operation(summary = "Todas las órdenes paginadas por cursor (admin)",
+               description = "De la más nueva a la más vieja. Para la página siguiente se pasa el valor " +
+                             "'siguiente' de la respuesta como despuesDe.")
+    @ApiResponse(responseCode = "200", description = "Página obtenida")
+    @GetMapping("/pagina")
+    public ResponseEntity<?> obtenerPagina(
+            @RequestParam(value = "despuesDe", required = false) String despuesDe,
+            @RequestParam(value = "limite", defaultValue = "20") int limite) {
+        try {
+            int limiteValido = Math.max(1, Math.min(limite, LIMITE_MAXIMO_PAGINA));
+            return ResponseEntity.ok(ordenService.obtenerPagina(null, despuesDe, limiteValido));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
     @Operation(summary = "Cancelar una orden")
     @ApiResponse(responseCode = "200", description = "Orden cancelada")
     @PutMapping("/{ordenId}/cancelar")
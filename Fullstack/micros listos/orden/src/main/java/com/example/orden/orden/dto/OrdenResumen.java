@@ -0,0 +1,19 @@
+package com.example.orden.orden.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+
+/**
+ * Vista reducida de una orden para listados. Se arma directamente en la
+ * consulta, sin cargar la entidad ni sus items.
+ */
+@Schema(description = "Resumen de orden para listados")
+public record OrdenResumen(
+        Long id,
+        Long usuarioId,
+        Double total,
+        LocalDateTime createdAt,
+        String status
+) {
+}
@@ -0,0 +1,17 @@
+package com.example.orden.orden.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * Una página del historial de órdenes, de la más nueva a la más vieja. Para pedir
+ * la siguiente se pasa "siguiente" como parámetro despuesDe; si es null no quedan más.
+ */
+@Schema(description = "Página de órdenes paginada por cursor")
+public record PaginaOrdenes(
+        List<OrdenResumen> ordenes,
+        @Schema(description = "Cursor para la siguiente página (null si es la última)", example = "2025-06-01T12:30:00.123_42")
+        String siguiente
+) {
+}
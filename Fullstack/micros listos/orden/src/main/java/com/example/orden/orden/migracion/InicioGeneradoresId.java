@@ -0,0 +1,49 @@
+package com.example.orden.orden.migracion;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Ordenes e items dejaron de usar AUTO_INCREMENT y toman sus ids de la tabla
+ * id_generadores. En bases con datos previos el contador tiene que empezar por
+ * encima del mayor id existente; si ya está más arriba no se toca.
+ *
+ * Hibernate lee el valor guardado como el tope del bloque y usa los 50 anteriores
+ * (allocationSize), por eso se guarda MAX(id) + 50 + 1.
+ *
+ * Corre cuando ya están creados todos los beans (Hibernate ya actualizó el esquema)
+ * y antes de que arranque el servidor web: ninguna petición puede pedir un id al
+ * contador sin ajustar.
+ */
+@Component
+public class InicioGeneradoresId implements SmartInitializingSingleton {
+    
+    private static final Logger log = LoggerFactory.getLogger(InicioGeneradoresId.class);
+    private static final int BLOQUE = 50;
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public InicioGeneradoresId(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    @Override
+    public void afterSingletonsInstantiated() {
+        ajustar("ordenes", "ordenes");
+        ajustar("items_orden", "items_orden");
+    }
+    
+    private void ajustar(String generador, String tabla) {
+        Long maximo = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + tabla, Long.class);
+        int filas = jdbcTemplate.update(
+                "INSERT INTO id_generadores (nombre, siguiente) VALUES (?, ?) " +
+                "ON DUPLICATE KEY UPDATE siguiente = GREATEST(siguiente, VALUES(siguiente))",
+                generador, maximo + BLOQUE + 1);
+        if (filas > 0) {
+            log.info("Generador de ids '{}' ajustado por encima de {}", generador, maximo);
+        }
+    }
+}
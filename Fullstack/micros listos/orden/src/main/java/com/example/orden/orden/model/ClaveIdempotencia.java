@@ -0,0 +1,38 @@
+package com.example.orden.orden.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * Clave Idempotency-Key recibida en POST /ordenes. Se reserva al llegar la solicitud
+ * (la clave primaria evita que dos copias la tomen a la vez) y guarda la orden creada
+ * para devolverla en los reintentos. Solo se usa con JDBC desde IdempotenciaOrdenes;
+ * la entidad está para que Hibernate cree la tabla.
+ */
+@Entity
+@Table(name = "claves_idempotencia", indexes = {
+        @Index(name = "idx_claves_idempotencia_creada", columnList = "creada_en")
+})
+@Data
+@NoArgsConstructor
+public class ClaveIdempotencia {
+    
+    @Id
+    @Column(length = 100)
+    private String clave;
+    
+    // SHA-256 del cuerpo; la misma clave con otro cuerpo se rechaza
+    @Column(nullable = false, length = 64)
+    private String huella;
+    
+    // Reserva vigente: cambia si otra solicitud retoma la clave abandonada
+    @Column(length = 36)
+    private String dueno;
+    
+    // null mientras la solicitud original está en curso
+    private Long ordenId;
+    
+    @Column(nullable = false)
+    private LocalDateTime creadaEn;
+}
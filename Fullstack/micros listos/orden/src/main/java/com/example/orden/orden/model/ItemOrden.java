@@ -5,15 +5,21 @@ import jakarta.persistence.*;
 import lombok.*;
 
 @Entity
-@Table(name = "items_orden")
+@Table(name = "items_orden", indexes = {
+        @Index(name = "idx_items_orden_orden", columnList = "orden_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Schema(description = "Item individual de una orden")
 public class ItemOrden {
     
+    // Ids reservados de a 50 en la tabla id_generadores: Hibernate no necesita insertar
+    // para conocer el id y puede mandar los items de una orden en un solo lote
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "items_orden_id")
+    @TableGenerator(name = "items_orden_id", table = "id_generadores", pkColumnName = "nombre",
+                    valueColumnName = "siguiente", pkColumnValue = "items_orden", allocationSize = 50)
     @Schema(description = "ID único del item")
     private Long id;
     
@@ -1,12 +1,19 @@
 package com.example.orden.orden.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
 import lombok.*;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 @Entity
-@Table(name = "ordenes")
+@Table(name = "ordenes", indexes = {
+        // Historial de un usuario y listado general, ambos por fecha; InnoDB agrega el id al final de cada índice
+        @Index(name = "idx_ordenes_usuario_fecha", columnList = "usuario_id, created_at"),
+        @Index(name = "idx_ordenes_fecha", columnList = "created_at")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -14,7 +21,9 @@ import java.time.LocalDateTime;
 public class Orden {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "ordenes_id")
+    @TableGenerator(name = "ordenes_id", table = "id_generadores", pkColumnName = "nombre",
+                    valueColumnName = "siguiente", pkColumnValue = "ordenes", allocationSize = 50)
     @Schema(description = "ID único de la orden")
     private Long id;
     
@@ -34,6 +43,16 @@ public class Orden {
     @Schema(description = "Estado de la orden: Completada, Cancelada, Pendiente")
     private String status = "Completada";
     
+    // Solo lectura: los items se guardan por su cuenta con ordenId. Sirve para traer
+    // órdenes e items juntos con JOIN FETCH; en el JSON los items van aparte.
+    @OneToMany(fetch = FetchType.LAZY)
+    @JoinColumn(name = "orden_id", insertable = false, updatable = false)
+    @OrderBy("id")
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private List<ItemOrden> items = new ArrayList<>();
+    
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -1,12 +1,49 @@
 package com.example.orden.orden.repository;
 
+import com.example.orden.orden.dto.OrdenResumen;
 import com.example.orden.orden.model.Orden;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface OrdenRepository extends JpaRepository<Orden, Long> {
     List<Orden> findByUsuarioIdOrderByCreatedAtDesc(Long usuarioId);
     List<Orden> findAllByOrderByCreatedAtDesc();
+    
+    // Orden con sus items en una sola consulta
+    @Query("SELECT o FROM Orden o LEFT JOIN FETCH o.items WHERE o.id = :id")
+    Optional<Orden> findConItemsById(Long id);
+    
+    @Query("SELECT o.id FROM Orden o WHERE o.usuarioId = :usuarioId ORDER BY o.createdAt DESC, o.id DESC")
+    List<Long> findIdsPorUsuario(Long usuarioId, Pageable pagina);
+    
+    // Sin paginar: el JOIN FETCH repite la orden por cada item, por eso las ids se eligen antes
+    @Query("SELECT DISTINCT o FROM Orden o LEFT JOIN FETCH o.items WHERE o.id IN :ids")
+    List<Orden> findConItemsByIdIn(Collection<Long> ids);
+    
+    // Historial por cursor (createdAt, id), de la más nueva a la más vieja
+    @Query("SELECT new com.example.orden.orden.dto.OrdenResumen(o.id, o.usuarioId, o.total, o.createdAt, o.status) " +
+           "FROM Orden o ORDER BY o.createdAt DESC, o.id DESC")
+    List<OrdenResumen> findResumenes(Pageable pagina);
+    
+    @Query("SELECT new com.example.orden.orden.dto.OrdenResumen(o.id, o.usuarioId, o.total, o.createdAt, o.status) " +
+           "FROM Orden o WHERE o.createdAt < :fecha OR (o.createdAt = :fecha AND o.id < :id) " +
+           "ORDER BY o.createdAt DESC, o.id DESC")
+    List<OrdenResumen> findResumenesAntesDe(LocalDateTime fecha, Long id, Pageable pagina);
+    
+    @Query("SELECT new com.example.orden.orden.dto.OrdenResumen(o.id, o.usuarioId, o.total, o.createdAt, o.status) " +
+           "FROM Orden o WHERE o.usuarioId = :usuarioId ORDER BY o.createdAt DESC, o.id DESC")
+    List<OrdenResumen> findResumenesPorUsuario(Long usuarioId, Pageable pagina);
+    
+    @Query("SELECT new com.example.orden.orden.dto.OrdenResumen(o.id, o.usuarioId, o.total, o.createdAt, o.status) " +
+           "FROM Orden o WHERE o.usuarioId = :usuarioId " +
+           "AND (o.createdAt < :fecha OR (o.createdAt = :fecha AND o.id < :id)) " +
+           "ORDER BY o.createdAt DESC, o.id DESC")
+    List<OrdenResumen> findResumenesPorUsuarioAntesDe(Long usuarioId, LocalDateTime fecha, Long id, Pageable pagina);
 }
@@ -0,0 +1,11 @@
+package com.example.orden.orden.service;
+
+/**
+ * El carrito cambió mientras se hacía el checkout; la orden se descartó.
+ */
+public class CarritoModificadoException extends RuntimeException {
+    
+    public CarritoModificadoException() {
+        super("El carrito fue modificado durante el checkout, vuelve a intentarlo");
+    }
+}
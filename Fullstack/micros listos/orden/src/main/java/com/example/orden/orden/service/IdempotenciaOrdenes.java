@@ -0,0 +1,172 @@
+package com.example.orden.orden.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Claves Idempotency-Key de POST /ordenes, guardadas en la tabla claves_idempotencia.
+ *
+ * La reserva es un INSERT: si dos copias de la misma solicitud llegan a la vez, solo una
+ * lo logra y la otra ve la clave en curso. La orden se asocia a la clave dentro de la misma
+ * transacción que la inserta, así que una clave con orden siempre apunta a una orden guardada.
+ * Las claves viven "ttl" y la tabla se recorta a "maximo" filas, borrando las más viejas.
+ *
+ * Cada reserva lleva un dueño al azar, y completar y liberar solo actúan con ese dueño.
+ * Si una solicitud lenta pierde la clave por abandono y después falla, no puede borrar
+ * la reserva que ahora tiene el reintento.
+ */
+@Service
+public class IdempotenciaOrdenes {
+    
+    private static final Logger log = LoggerFactory.getLogger(IdempotenciaOrdenes.class);
+    private static final int LOTE_PURGA = 1000;
+    
+    public static final int LARGO_MAXIMO_CLAVE = 100;
+    
+    // Claves de mapas ordenadas: el mismo cuerpo da la misma huella aunque cambie el orden de los campos
+    private static final ObjectMapper HUELLAS = new ObjectMapper()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    
+    public enum Estado {
+        // La clave es nueva (o quedó abandonada): esta solicitud crea la orden
+        NUEVA,
+        // Ya hay orden para la clave: se devuelve esa
+        COMPLETADA,
+        // Otra copia de la solicitud todavía está creando la orden
+        EN_CURSO,
+        // La clave se usó con un cuerpo distinto
+        OTRA_SOLICITUD
+    }
+    
+    // dueno solo viene en las reservas NUEVA: hay que pasarlo a completar o liberar
+    public record Reserva(Estado estado, Long ordenId, String dueno) {
+    }
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration ttl;
+    private final Duration abandono;
+    private final long maximo;
+    
+    public IdempotenciaOrdenes(JdbcTemplate jdbcTemplate,
+                               @Value("${orden.idempotencia.ttl:24h}") Duration ttl,
+                               @Value("${orden.idempotencia.abandono:1m}") Duration abandono,
+                               @Value("${orden.idempotencia.maximo:100000}") long maximo) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttl = ttl;
+        this.abandono = abandono;
+        this.maximo = maximo;
+    }
+    
+    public static String huella(Object cuerpo) {
+        try {
+            byte[] datos = HUELLAS.writeValueAsString(cuerpo).getBytes(StandardCharsets.UTF_8);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(datos));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cuerpo de la solicitud inválido");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+    
+    public Reserva reservar(String clave, String huella) {
+        // Dos intentos: la clave puede liberarse o purgarse entre el INSERT y la lectura
+        for (int intento = 0; intento < 2; intento++) {
+            LocalDateTime ahora = LocalDateTime.now();
+            String dueno = UUID.randomUUID().toString();
+            try {
+                jdbcTemplate.update("INSERT INTO claves_idempotencia (clave, huella, dueno, creada_en) VALUES (?, ?, ?, ?)",
+                        clave, huella, dueno, Timestamp.valueOf(ahora));
+                return new Reserva(Estado.NUEVA, null, dueno);
+            } catch (DuplicateKeyException e) {
+                // Ya existe: se mira en qué estado quedó
+            }
+            
+            List<Reserva> existentes = jdbcTemplate.query(
+                    "SELECT huella, orden_id FROM claves_idempotencia WHERE clave = ?",
+                    (rs, fila) -> {
+                        if (!huella.equals(rs.getString("huella"))) return new Reserva(Estado.OTRA_SOLICITUD, null, null);
+                        long ordenId = rs.getLong("orden_id");
+                        return rs.wasNull() ? new Reserva(Estado.EN_CURSO, null, null) : new Reserva(Estado.COMPLETADA, ordenId, null);
+                    },
+                    clave);
+            if (existentes.isEmpty()) continue;
+            
+            Reserva existente = existentes.get(0);
+            if (existente.estado() != Estado.EN_CURSO) return existente;
+            
+            // Si la instancia que la tenía se cayó sin terminar, se retoma pasado "abandono"
+            // con un dueño nuevo: la solicitud anterior ya no puede completarla ni liberarla
+            int retomadas = jdbcTemplate.update(
+                    "UPDATE claves_idempotencia SET creada_en = ?, dueno = ? " +
+                    "WHERE clave = ? AND orden_id IS NULL AND creada_en < ?",
+                    Timestamp.valueOf(ahora), dueno, clave, Timestamp.valueOf(ahora.minus(abandono)));
+            return retomadas == 1 ? new Reserva(Estado.NUEVA, null, dueno) : existente;
+        }
+        return new Reserva(Estado.EN_CURSO, null, null);
+    }
+    
+    // Se llama dentro de la transacción que guarda la orden. La fila queda bloqueada hasta el
+    // commit, así que si dos solicitudes llegaron a tener la misma clave solo una la completa
+    // y la otra hace rollback de su orden.
+    public void completar(String clave, String dueno, Long ordenId) {
+        int filas = jdbcTemplate.update(
+                "UPDATE claves_idempotencia SET orden_id = ? WHERE clave = ? AND dueno = ? AND orden_id IS NULL",
+                ordenId, clave, dueno);
+        if (filas == 0) {
+            throw new SolicitudEnCursoException();
+        }
+    }
+    
+    // La solicitud falló sin crear la orden: el cliente puede reintentar con la misma clave
+    public void liberar(String clave, String dueno) {
+        jdbcTemplate.update("DELETE FROM claves_idempotencia WHERE clave = ? AND dueno = ? AND orden_id IS NULL",
+                clave, dueno);
+    }
+    
+    @Scheduled(initialDelayString = "${orden.idempotencia.purga:10m}",
+               fixedDelayString = "${orden.idempotencia.purga:10m}")
+    public void purgar() {
+        Timestamp limite = Timestamp.valueOf(LocalDateTime.now().minus(ttl));
+        long vencidas = 0;
+        int filas;
+        do {
+            filas = jdbcTemplate.update(
+                    "DELETE FROM claves_idempotencia WHERE creada_en < ? LIMIT " + LOTE_PURGA, limite);
+            vencidas += filas;
+        } while (filas == LOTE_PURGA);
+        
+        // Tope de tamaño: con mucho tráfico se acorta la ventana en lugar de crecer sin límite
+        Long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM claves_idempotencia", Long.class);
+        long sobrantes = total == null ? 0 : total - maximo;
+        long recortadas = 0;
+        while (sobrantes > 0) {
+            filas = jdbcTemplate.update(
+                    "DELETE FROM claves_idempotencia ORDER BY creada_en LIMIT " + Math.min(sobrantes, LOTE_PURGA));
+            if (filas == 0) break;
+            recortadas += filas;
+            sobrantes -= filas;
+        }
+        
+        if (vencidas > 0 || recortadas > 0) {
+            log.info("Claves de idempotencia purgadas: {} vencidas, {} por tope de tamaño", vencidas, recortadas);
+        }
+    }
+}
@@ -1,28 +1,58 @@
 package com.example.orden.orden.service;
+import com.example.orden.orden.Client.CarritoClient;
+import com.example.orden.orden.Client.ProductoClient;
 import com.example.orden.orden.Client.UsuarioClient;
+import com.example.orden.orden.dto.OrdenResumen;
+import com.example.orden.orden.dto.PaginaOrdenes;
 import com.example.orden.orden.model.ItemOrden;
 import com.example.orden.orden.model.Orden;
 import com.example.orden.orden.repository.ItemOrdenRepository;
 import com.example.orden.orden.repository.OrdenRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeSet;
 
 @Service
 public class OrdenService {
     
+    private static final Logger log = LoggerFactory.getLogger(OrdenService.class);
+    
     private final OrdenRepository ordenRepository;
     private final ItemOrdenRepository itemOrdenRepository;
     private final UsuarioClient usuarioClient;
+    private final CarritoClient carritoClient;
+    private final ProductoClient productoClient;
+    private final TransactionTemplate transactionTemplate;
+    private final IdempotenciaOrdenes idempotencia;
     
     public OrdenService(OrdenRepository ordenRepository,
                        ItemOrdenRepository itemOrdenRepository,
-                       UsuarioClient usuarioClient) {
+                       UsuarioClient usuarioClient,
+                       CarritoClient carritoClient,
+                       ProductoClient productoClient,
+                       TransactionTemplate transactionTemplate,
+                       IdempotenciaOrdenes idempotencia) {
         this.ordenRepository = ordenRepository;
         this.itemOrdenRepository = itemOrdenRepository;
         this.usuarioClient = usuarioClient;
+        this.carritoClient = carritoClient;
+        this.productoClient = productoClient;
+        this.transactionTemplate = transactionTemplate;
+        this.idempotencia = idempotencia;
     }
     
     public List<Orden> obtenerOrdenesPorUsuario(Long usuarioId) {
@@ -33,6 +63,42 @@ public class OrdenService {
         return ordenRepository.findByUsuarioIdOrderByCreatedAtDesc(usuarioId);
     }
     
+    // Historial paginado; usuarioId null lista las órdenes de todos (admin).
+    // El usuario se valida solo en la primera página: el cursor viene de una respuesta anterior.
+    public PaginaOrdenes obtenerPagina(Long usuarioId, String despuesDe, int limite) {
+        if (usuarioId != null && despuesDe == null && usuarioClient.obtenerUsuarioPorId(usuarioId) == null) {
+            throw new IllegalArgumentException("Usuario no encontrado");
+        }
+        
+        Pageable pagina = PageRequest.of(0, limite + 1);
+        List<OrdenResumen> ordenes;
+        if (despuesDe == null) {
+            ordenes = usuarioId == null
+                    ? ordenRepository.findResumenes(pagina)
+                    : ordenRepository.findResumenesPorUsuario(usuarioId, pagina);
+        } else {
+            int separador = despuesDe.lastIndexOf('_');
+            LocalDateTime fecha;
+            Long id;
+            try {
+                fecha = LocalDateTime.parse(despuesDe.substring(0, Math.max(separador, 0)));
+                id = Long.valueOf(despuesDe.substring(separador + 1));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Cursor inválido: " + despuesDe);
+            }
+            ordenes = usuarioId == null
+                    ? ordenRepository.findResumenesAntesDe(fecha, id, pagina)
+                    : ordenRepository.findResumenesPorUsuarioAntesDe(usuarioId, fecha, id, pagina);
+        }
+        
+        if (ordenes.size() <= limite) {
+            return new PaginaOrdenes(ordenes, null);
+        }
+        List<OrdenResumen> visibles = List.copyOf(ordenes.subList(0, limite));
+        OrdenResumen ultima = visibles.get(limite - 1);
+        return new PaginaOrdenes(visibles, ultima.createdAt() + "_" + ultima.id());
+    }
+    
     public List<ItemOrden> obtenerItemsDeOrden(Long ordenId) {
         if (!ordenRepository.existsById(ordenId)) {
             throw new IllegalArgumentException("Orden no encontrada");
@@ -40,8 +106,17 @@ public class OrdenService {
         return itemOrdenRepository.findByOrdenId(ordenId);
     }
     
+    // La llamada interna no pasa por el proxy: la transacción se abre acá
     @Transactional
     public Orden crearOrden(Long usuarioId, Double total, List<ItemOrden> items) {
+        return crearOrden(usuarioId, total, items, null, null);
+    }
+    
+    // Con claveIdempotencia (ya reservada por duenoClave) la clave queda apuntando a la orden
+    // en la misma transacción
+    @Transactional
+    public Orden crearOrden(Long usuarioId, Double total, List<ItemOrden> items,
+                            String claveIdempotencia, String duenoClave) {
         Map<String, Object> usuario = usuarioClient.obtenerUsuarioPorId(usuarioId);
         if (usuario == null) {
             throw new IllegalArgumentException("Usuario no encontrado");
@@ -51,6 +126,102 @@ public class OrdenService {
             throw new IllegalArgumentException("La orden debe tener al menos un item");
         }
         
+        Orden orden = guardarOrden(usuarioId, total, items);
+        if (claveIdempotencia != null) {
+            idempotencia.completar(claveIdempotencia, duenoClave, orden.getId());
+        }
+        return orden;
+    }
+    
+    // Checkout hecho por el servidor: toma el carrito del usuario, le pone los precios
+    // actuales del catálogo, guarda la orden con sus items y vacía el carrito.
+    // El carrito se vacía con su versión, así que si cambió mientras tanto la orden se
+    // descarta y se lanza CarritoModificadoException.
+    public Map<String, Object> checkout(Long usuarioId) {
+        // El carrito valida al usuario y responde 400 si no existe
+        Map<String, Object> carrito;
+        try {
+            carrito = carritoClient.obtenerCarrito(usuarioId);
+        } catch (WebClientResponseException.BadRequest e) {
+            throw new IllegalArgumentException("Usuario no encontrado");
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("No se pudo consultar el carrito");
+        }
+        
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> lineas = (List<Map<String, Object>>) carrito.get("items");
+        if (lineas == null || lineas.isEmpty()) {
+            throw new IllegalArgumentException("El carrito está vacío");
+        }
+        
+        Map<Long, Integer> cantidades = new LinkedHashMap<>();
+        for (Map<String, Object> linea : lineas) {
+            cantidades.merge(((Number) linea.get("productoId")).longValue(),
+                    ((Number) linea.get("cantidad")).intValue(), Integer::sum);
+        }
+        
+        // Todos los precios en una sola consulta al catálogo
+        Map<Long, Map<String, Object>> productos = productoClient.obtenerProductosPorIds(cantidades.keySet());
+        if (productos == null) {
+            throw new IllegalStateException("No se pudo consultar el catálogo");
+        }
+        TreeSet<Long> noDisponibles = new TreeSet<>(cantidades.keySet());
+        noDisponibles.removeAll(productos.keySet());
+        if (!noDisponibles.isEmpty()) {
+            throw new IllegalArgumentException("Productos no disponibles: " + noDisponibles);
+        }
+        
+        List<ItemOrden> items = new ArrayList<>(cantidades.size());
+        double total = 0;
+        for (Map.Entry<Long, Integer> linea : cantidades.entrySet()) {
+            Map<String, Object> producto = productos.get(linea.getKey());
+            ItemOrden item = new ItemOrden();
+            item.setProductoId(linea.getKey());
+            item.setProductoNombre((String) producto.get("nombre"));
+            item.setProductoPrecio(((Number) producto.get("precio")).doubleValue());
+            item.setCantidad(linea.getValue());
+            item.setImageUrl((String) producto.get("imageUrl"));
+            items.add(item);
+            total += item.getProductoPrecio() * item.getCantidad();
+        }
+        
+        // La orden se guarda antes de vaciar el carrito: si el proceso se corta en el medio
+        // queda la orden con el carrito todavía lleno, nunca un carrito vacío sin orden
+        final double totalOrden = total;
+        Orden orden = transactionTemplate.execute(estado -> guardarOrden(usuarioId, totalOrden, items));
+        
+        Long version = ((Number) carrito.get("version")).longValue();
+        try {
+            carritoClient.reemplazarCarrito(usuarioId, List.of(), version);
+        } catch (WebClientResponseException.Conflict e) {
+            descartarOrden(orden.getId());
+            throw new CarritoModificadoException();
+        } catch (RuntimeException e) {
+            // No se sabe si el carrito llegó a vaciarse: la orden se conserva, porque
+            // descartarla podría dejar al usuario sin orden y sin carrito
+            log.warn("No se pudo vaciar el carrito del usuario {} tras guardar la orden {}", usuarioId, orden.getId(), e);
+        }
+        
+        return Map.of(
+            "orden", orden,
+            "items", items,
+            "cantidadItems", items.size()
+        );
+    }
+    
+    // El carrito cambió después de leerlo: la orden ya guardada no corresponde a lo que el usuario tiene
+    private void descartarOrden(Long ordenId) {
+        try {
+            transactionTemplate.executeWithoutResult(estado -> {
+                itemOrdenRepository.deleteByOrdenId(ordenId);
+                ordenRepository.deleteById(ordenId);
+            });
+        } catch (RuntimeException e) {
+            log.error("No se pudo descartar la orden {} de un checkout con el carrito modificado", ordenId, e);
+        }
+    }
+    
+    private Orden guardarOrden(Long usuarioId, Double total, List<ItemOrden> items) {
         Orden orden = new Orden();
         orden.setUsuarioId(usuarioId);
         orden.setTotal(total);
@@ -70,11 +241,34 @@ public class OrdenService {
     }
     
     public Map<String, Object> obtenerDetallesOrden(Long ordenId) {
-        Orden orden = ordenRepository.findById(ordenId)
+        Orden orden = ordenRepository.findConItemsById(ordenId)
                 .orElseThrow(() -> new IllegalArgumentException("Orden no encontrada"));
         
-        List<ItemOrden> items = itemOrdenRepository.findByOrdenId(ordenId);
+        return detalles(orden);
+    }
+    
+    // Las últimas órdenes del usuario con sus items, en dos consultas en total
+    public List<Map<String, Object>> obtenerDetallesPorUsuario(Long usuarioId, int limite) {
+        Map<String, Object> usuario = usuarioClient.obtenerUsuarioPorId(usuarioId);
+        if (usuario == null) {
+            throw new IllegalArgumentException("Usuario no encontrado");
+        }
+        
+        List<Long> ids = ordenRepository.findIdsPorUsuario(usuarioId, PageRequest.of(0, limite));
+        if (ids.isEmpty()) return List.of();
+        
+        Map<Long, Orden> porId = new HashMap<>();
+        ordenRepository.findConItemsByIdIn(ids).forEach(orden -> porId.put(orden.getId(), orden));
         
+        List<Map<String, Object>> resultado = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            resultado.add(detalles(porId.get(id)));
+        }
+        return resultado;
+    }
+    
+    private static Map<String, Object> detalles(Orden orden) {
+        List<ItemOrden> items = List.copyOf(orden.getItems());
         return Map.of(
             "orden", orden,
             "items", items,
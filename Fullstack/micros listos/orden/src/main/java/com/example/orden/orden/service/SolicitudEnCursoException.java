@@ -0,0 +1,11 @@
+package com.example.orden.orden.service;
+
+/**
+ * Otra solicitud con la misma Idempotency-Key está creando (o ya creó) la orden.
+ */
+public class SolicitudEnCursoException extends RuntimeException {
+    
+    public SolicitudEnCursoException() {
+        super("Ya hay una solicitud con la misma Idempotency-Key en curso, vuelve a intentarlo");
+    }
+}
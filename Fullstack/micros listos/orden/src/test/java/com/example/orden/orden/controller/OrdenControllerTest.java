@@ -1,7 +1,11 @@
 package com.example.orden.orden.controller;
 
+import com.example.orden.orden.dto.OrdenResumen;
+import com.example.orden.orden.dto.PaginaOrdenes;
 import com.example.orden.orden.model.ItemOrden;
 import com.example.orden.orden.model.Orden;
+import com.example.orden.orden.service.CarritoModificadoException;
+import com.example.orden.orden.service.IdempotenciaOrdenes;
 import com.example.orden.orden.service.OrdenService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,6 +14,7 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -27,6 +32,9 @@ class OrdenControllerTest {
     @MockBean
     private OrdenService ordenService;
 
+    @MockBean
+    private IdempotenciaOrdenes idempotencia;
+
     @Test
     void obtenerOrdenesPorUsuario_exito() throws Exception {
         when(ordenService.obtenerOrdenesPorUsuario(1L))
@@ -70,7 +78,7 @@ class OrdenControllerTest {
         Orden orden = new Orden();
         orden.setId(10L);
 
-        when(ordenService.crearOrden(anyLong(), anyDouble(), anyList()))
+        when(ordenService.crearOrden(anyLong(), anyDouble(), anyList(), isNull(), isNull()))
                 .thenReturn(orden);
 
         String body = """
@@ -98,7 +106,7 @@ class OrdenControllerTest {
 
     @Test
     void crearOrden_error() throws Exception {
-        when(ordenService.crearOrden(anyLong(), anyDouble(), anyList()))
+        when(ordenService.crearOrden(anyLong(), anyDouble(), anyList(), isNull(), isNull()))
                 .thenThrow(new IllegalArgumentException("Error en la orden"));
 
         mockMvc.perform(post("/ordenes")
@@ -150,4 +158,158 @@ class OrdenControllerTest {
                 .andExpect(status().isBadRequest())
                 .andExpect(jsonPath("$.error").value("La orden ya está cancelada"));
     }
+
+    @Test
+    void checkout_exito() throws Exception {
+        Orden orden = new Orden();
+        orden.setId(5L);
+
+        when(ordenService.checkout(1L))
+                .thenReturn(Map.of("orden", orden, "items", List.of(new ItemOrden()), "cantidadItems", 1));
+
+        mockMvc.perform(post("/ordenes/checkout/1"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.orden.id").value(5))
+                .andExpect(jsonPath("$.cantidadItems").value(1));
+    }
+
+    @Test
+    void checkout_carritoVacio() throws Exception {
+        when(ordenService.checkout(1L))
+                .thenThrow(new IllegalArgumentException("El carrito está vacío"));
+
+        mockMvc.perform(post("/ordenes/checkout/1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("El carrito está vacío"));
+    }
+
+    @Test
+    void checkout_carritoModificado() throws Exception {
+        when(ordenService.checkout(1L)).thenThrow(new CarritoModificadoException());
+
+        mockMvc.perform(post("/ordenes/checkout/1"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void obtenerPaginaPorUsuario_exito() throws Exception {
+        OrdenResumen resumen = new OrdenResumen(7L, 1L, 15000.0, LocalDateTime.of(2025, 6, 1, 12, 30), "Completada");
+        when(ordenService.obtenerPagina(1L, null, 20))
+                .thenReturn(new PaginaOrdenes(List.of(resumen), "2025-06-01T12:30_7"));
+
+        mockMvc.perform(get("/ordenes/usuario/1/pagina"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.ordenes[0].id").value(7))
+                .andExpect(jsonPath("$.siguiente").value("2025-06-01T12:30_7"));
+    }
+
+    @Test
+    void obtenerPagina_cursorInvalido() throws Exception {
+        when(ordenService.obtenerPagina(null, "basura", 100))
+                .thenThrow(new IllegalArgumentException("Cursor inválido: basura"));
+
+        mockMvc.perform(get("/ordenes/pagina").param("despuesDe", "basura").param("limite", "500"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Cursor inválido: basura"));
+    }
+
+    @Test
+    void obtenerDetallesPorUsuario_limitaCantidad() throws Exception {
+        Orden orden = new Orden();
+        orden.setId(3L);
+        when(ordenService.obtenerDetallesPorUsuario(1L, 50))
+                .thenReturn(List.of(Map.of("orden", orden, "items", List.of(new ItemOrden()), "cantidadItems", 1)));
+
+        mockMvc.perform(get("/ordenes/usuario/1/detalles").param("limit", "1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].orden.id").value(3))
+                .andExpect(jsonPath("$[0].cantidadItems").value(1));
+    }
+
+    @Test
+    void obtenerDetallesPorUsuario_usuarioNoExiste() throws Exception {
+        when(ordenService.obtenerDetallesPorUsuario(1L, 20))
+                .thenThrow(new IllegalArgumentException("Usuario no encontrado"));
+
+        mockMvc.perform(get("/ordenes/usuario/1/detalles"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Usuario no encontrado"));
+    }
+
+    private static final String CUERPO_ORDEN = """
+            {
+              "usuarioId": 1,
+              "total": 20000,
+              "items": [
+                { "productoId": 99, "productoNombre": "Mouse", "productoPrecio": 20000, "cantidad": 1 }
+              ]
+            }
+            """;
+
+    @Test
+    void crearOrden_conClave_primeraVez() throws Exception {
+        Orden orden = new Orden();
+        orden.setId(10L);
+        when(idempotencia.reservar(eq("abc-1"), anyString()))
+                .thenReturn(new IdempotenciaOrdenes.Reserva(IdempotenciaOrdenes.Estado.NUEVA, null, "d-1"));
+        when(ordenService.crearOrden(anyLong(), anyDouble(), anyList(), eq("abc-1"), eq("d-1"))).thenReturn(orden);
+
+        mockMvc.perform(post("/ordenes")
+                .header("Idempotency-Key", "abc-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(CUERPO_ORDEN))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value(10));
+
+        verify(idempotencia, never()).liberar(any(), any());
+    }
+
+    @Test
+    void crearOrden_conClave_reintentoDevuelveLaMismaOrden() throws Exception {
+        Orden orden = new Orden();
+        orden.setId(10L);
+        when(idempotencia.reservar(eq("abc-1"), anyString()))
+                .thenReturn(new IdempotenciaOrdenes.Reserva(IdempotenciaOrdenes.Estado.COMPLETADA, 10L, null));
+        when(ordenService.obtenerOrdenPorId(10L)).thenReturn(Optional.of(orden));
+
+        mockMvc.perform(post("/ordenes")
+                .header("Idempotency-Key", "abc-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(CUERPO_ORDEN))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.id").value(10));
+
+        verify(ordenService, never()).crearOrden(anyLong(), anyDouble(), anyList(), any(), any());
+    }
+
+    @Test
+    void crearOrden_conClave_enCurso() throws Exception {
+        when(idempotencia.reservar(eq("abc-1"), anyString()))
+                .thenReturn(new IdempotenciaOrdenes.Reserva(IdempotenciaOrdenes.Estado.EN_CURSO, null, null));
+
+        mockMvc.perform(post("/ordenes")
+                .header("Idempotency-Key", "abc-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(CUERPO_ORDEN))
+                .andExpect(status().isConflict());
+
+        verify(ordenService, never()).crearOrden(anyLong(), anyDouble(), anyList(), any(), any());
+    }
+
+    @Test
+    void crearOrden_conClave_errorLiberaLaClave() throws Exception {
+        when(idempotencia.reservar(eq("abc-1"), anyString()))
+                .thenReturn(new IdempotenciaOrdenes.Reserva(IdempotenciaOrdenes.Estado.NUEVA, null, "d-1"));
+        when(ordenService.crearOrden(anyLong(), anyDouble(), anyList(), eq("abc-1"), eq("d-1")))
+                .thenThrow(new IllegalArgumentException("Usuario no encontrado"));
+
+        mockMvc.perform(post("/ordenes")
+                .header("Idempotency-Key", "abc-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(CUERPO_ORDEN))
+                .andExpect(status().isBadRequest());
+
+        verify(idempotencia).liberar("abc-1", "d-1");
+    }
 }
@@ -0,0 +1,168 @@
+package com.example.orden.orden.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotenciaOrdenesTest {
+
+    private static final String INSERTAR = "INSERT INTO claves_idempotencia";
+    private static final String RETOMAR = "UPDATE claves_idempotencia SET creada_en";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private IdempotenciaOrdenes idempotencia;
+
+    @BeforeEach
+    void setUp() {
+        idempotencia = new IdempotenciaOrdenes(jdbcTemplate, Duration.ofHours(24), Duration.ofMinutes(1), 2000);
+    }
+
+    @Test
+    void reservar_claveNueva() {
+        when(jdbcTemplate.update(startsWith(INSERTAR), eq("abc-1"), eq("h1"), anyString(), any())).thenReturn(1);
+
+        IdempotenciaOrdenes.Reserva reserva = idempotencia.reservar("abc-1", "h1");
+
+        assertEquals(IdempotenciaOrdenes.Estado.NUEVA, reserva.estado());
+        assertNull(reserva.ordenId());
+        assertNotNull(reserva.dueno());
+    }
+
+    @Test
+    void reservar_claveCompletada_devuelveLaOrden() throws Exception {
+        claveExistente("h1", 42L);
+
+        IdempotenciaOrdenes.Reserva reserva = idempotencia.reservar("abc-1", "h1");
+
+        assertEquals(IdempotenciaOrdenes.Estado.COMPLETADA, reserva.estado());
+        assertEquals(42L, reserva.ordenId());
+    }
+
+    @Test
+    void reservar_otroCuerpo_esOtraSolicitud() throws Exception {
+        claveExistente("otra-huella", 42L);
+
+        IdempotenciaOrdenes.Reserva reserva = idempotencia.reservar("abc-1", "h1");
+
+        assertEquals(IdempotenciaOrdenes.Estado.OTRA_SOLICITUD, reserva.estado());
+        verify(jdbcTemplate, never()).update(startsWith(RETOMAR), any(), any(), any(), any());
+    }
+
+    @Test
+    void reservar_enCursoReciente_noSeRetoma() throws Exception {
+        claveExistente("h1", null);
+        when(jdbcTemplate.update(startsWith(RETOMAR), any(), anyString(), eq("abc-1"), any())).thenReturn(0);
+
+        IdempotenciaOrdenes.Reserva reserva = idempotencia.reservar("abc-1", "h1");
+
+        assertEquals(IdempotenciaOrdenes.Estado.EN_CURSO, reserva.estado());
+    }
+
+    @Test
+    void reservar_enCursoAbandonada_seRetomaConOtroDueno() throws Exception {
+        claveExistente("h1", null);
+        when(jdbcTemplate.update(startsWith(RETOMAR), any(), anyString(), eq("abc-1"), any())).thenReturn(1);
+
+        IdempotenciaOrdenes.Reserva reserva = idempotencia.reservar("abc-1", "h1");
+
+        assertEquals(IdempotenciaOrdenes.Estado.NUEVA, reserva.estado());
+        // El dueño nuevo queda guardado en la fila retomada
+        verify(jdbcTemplate).update(startsWith(RETOMAR), any(), eq(reserva.dueno()), eq("abc-1"), any());
+    }
+
+    @Test
+    void reservar_claveLiberadaEntreInsertYLectura_reintenta() {
+        when(jdbcTemplate.update(startsWith(INSERTAR), eq("abc-1"), eq("h1"), anyString(), any()))
+                .thenThrow(new DuplicateKeyException("duplicada"))
+                .thenReturn(1);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq("abc-1"))).thenReturn(List.of());
+
+        IdempotenciaOrdenes.Reserva reserva = idempotencia.reservar("abc-1", "h1");
+
+        assertEquals(IdempotenciaOrdenes.Estado.NUEVA, reserva.estado());
+        verify(jdbcTemplate, times(2)).update(startsWith(INSERTAR), eq("abc-1"), eq("h1"), anyString(), any());
+    }
+
+    @Test
+    void completar_asociaLaOrden() {
+        when(jdbcTemplate.update(contains("AND dueno = ?"), eq(42L), eq("abc-1"), eq("d-1"))).thenReturn(1);
+
+        assertDoesNotThrow(() -> idempotencia.completar("abc-1", "d-1", 42L));
+    }
+
+    @Test
+    void completar_claveRetomadaPorOtro_lanzaEnCurso() {
+        when(jdbcTemplate.update(anyString(), eq(42L), eq("abc-1"), eq("d-viejo"))).thenReturn(0);
+
+        assertThrows(SolicitudEnCursoException.class, () -> idempotencia.completar("abc-1", "d-viejo", 42L));
+    }
+
+    @Test
+    void liberar_soloBorraLaReservaPropia() {
+        idempotencia.liberar("abc-1", "d-1");
+
+        verify(jdbcTemplate).update(
+                "DELETE FROM claves_idempotencia WHERE clave = ? AND dueno = ? AND orden_id IS NULL", "abc-1", "d-1");
+    }
+
+    @Test
+    void purgar_borraVencidasPorLotes_yRecortaAlMaximo() {
+        when(jdbcTemplate.update(startsWith("DELETE FROM claves_idempotencia WHERE creada_en"), any(Timestamp.class)))
+                .thenReturn(1000, 3);
+        when(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM claves_idempotencia", Long.class)).thenReturn(3500L);
+        when(jdbcTemplate.update("DELETE FROM claves_idempotencia ORDER BY creada_en LIMIT 1000")).thenReturn(1000);
+        when(jdbcTemplate.update("DELETE FROM claves_idempotencia ORDER BY creada_en LIMIT 500")).thenReturn(500);
+
+        idempotencia.purgar();
+
+        verify(jdbcTemplate, times(2)).update(startsWith("DELETE FROM claves_idempotencia WHERE creada_en"), any(Timestamp.class));
+        verify(jdbcTemplate).update("DELETE FROM claves_idempotencia ORDER BY creada_en LIMIT 1000");
+        verify(jdbcTemplate).update("DELETE FROM claves_idempotencia ORDER BY creada_en LIMIT 500");
+    }
+
+    @Test
+    void purgar_bajoElMaximo_noRecorta() {
+        when(jdbcTemplate.update(startsWith("DELETE FROM claves_idempotencia WHERE creada_en"), any(Timestamp.class)))
+                .thenReturn(0);
+        when(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM claves_idempotencia", Long.class)).thenReturn(10L);
+
+        idempotencia.purgar();
+
+        verify(jdbcTemplate, never()).update(startsWith("DELETE FROM claves_idempotencia ORDER BY"));
+    }
+
+    // La clave ya existe con esa huella y orden (null si todavía está en curso); la fila se
+    // arma con un ResultSet simulado para pasar por el mapeo real de reservar
+    @SuppressWarnings("unchecked")
+    private void claveExistente(String huella, Long ordenId) throws Exception {
+        when(jdbcTemplate.update(startsWith(INSERTAR), eq("abc-1"), eq("h1"), anyString(), any()))
+                .thenThrow(new DuplicateKeyException("duplicada"));
+
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString("huella")).thenReturn(huella);
+        lenient().when(rs.getLong("orden_id")).thenReturn(ordenId != null ? ordenId : 0L);
+        lenient().when(rs.wasNull()).thenReturn(ordenId == null);
+
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq("abc-1"))).thenAnswer(invocacion -> {
+            RowMapper<IdempotenciaOrdenes.Reserva> mapper = invocacion.getArgument(1);
+            return List.of(mapper.mapRow(rs, 0));
+        });
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.orden.orden.service;
+
+import com.example.orden.orden.Client.CarritoClient;
+import com.example.orden.orden.Client.ProductoClient;
+import com.example.orden.orden.Client.UsuarioClient;
+import com.example.orden.orden.model.ItemOrden;
+import com.example.orden.orden.model.Orden;
+import com.example.orden.orden.repository.ItemOrdenRepository;
+import com.example.orden.orden.repository.OrdenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrdenServiceCheckoutTest {
+
+    @Mock
+    private OrdenRepository ordenRepository;
+
+    @Mock
+    private ItemOrdenRepository itemOrdenRepository;
+
+    @Mock
+    private UsuarioClient usuarioClient;
+
+    @Mock
+    private CarritoClient carritoClient;
+
+    @Mock
+    private ProductoClient productoClient;
+
+    @Mock
+    private IdempotenciaOrdenes idempotencia;
+
+    private OrdenService ordenService;
+
+    @BeforeEach
+    void setUp() {
+        ordenService = new OrdenService(ordenRepository, itemOrdenRepository, usuarioClient, carritoClient,
+                productoClient, new TransactionTemplate(mock(PlatformTransactionManager.class)), idempotencia);
+    }
+
+    @Test
+    void checkout_sumaLineasRepetidas_conPreciosDelCatalogo() {
+        carritoConLineas();
+        when(productoClient.obtenerProductosPorIds(any())).thenReturn(Map.of(
+                10L, Map.of("nombre", "Mouse", "precio", 120),
+                20L, Map.of("nombre", "Teclado", "precio", 50.5)));
+        when(ordenRepository.save(any(Orden.class))).thenAnswer(invocacion -> {
+            Orden orden = invocacion.getArgument(0);
+            orden.setId(100L);
+            return orden;
+        });
+
+        Map<String, Object> resultado = ordenService.checkout(1L);
+
+        @SuppressWarnings("unchecked")
+        List<ItemOrden> items = (List<ItemOrden>) resultado.get("items");
+        assertEquals(2, items.size());
+        assertEquals(10L, items.get(0).getProductoId());
+        assertEquals(3, items.get(0).getCantidad());
+        assertEquals(120.0, items.get(0).getProductoPrecio());
+        assertEquals(100L, items.get(0).getOrdenId());
+        assertEquals(2, items.get(1).getCantidad());
+
+        Orden orden = (Orden) resultado.get("orden");
+        assertEquals(120.0 * 3 + 50.5 * 2, orden.getTotal());
+        verify(productoClient).obtenerProductosPorIds(argThat(ids -> ids.size() == 2));
+        verify(carritoClient).reemplazarCarrito(1L, List.of(), 7L);
+        verify(itemOrdenRepository).saveAll(items);
+    }
+
+    @Test
+    void checkout_productoNoDisponible_noVaciaElCarrito() {
+        carritoConLineas();
+        when(productoClient.obtenerProductosPorIds(any())).thenReturn(Map.of(
+                10L, Map.of("nombre", "Mouse", "precio", 120)));
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> ordenService.checkout(1L));
+
+        assertEquals("Productos no disponibles: [20]", ex.getMessage());
+        verify(carritoClient, never()).reemplazarCarrito(anyLong(), anyList(), any());
+        verifyNoInteractions(ordenRepository);
+    }
+
+    @Test
+    void checkout_catalogoCaido_error() {
+        carritoConLineas();
+        when(productoClient.obtenerProductosPorIds(any())).thenReturn(null);
+
+        assertThrows(IllegalStateException.class, () -> ordenService.checkout(1L));
+        verifyNoInteractions(ordenRepository);
+    }
+
+    @Test
+    void checkout_carritoModificado_descartaLaOrden() {
+        carritoConLineas();
+        catalogoCompleto();
+        ordenGuardadaConId(100L);
+        doThrow(WebClientResponseException.create(409, "Conflict", HttpHeaders.EMPTY, new byte[0], null))
+                .when(carritoClient).reemplazarCarrito(1L, List.of(), 7L);
+
+        assertThrows(CarritoModificadoException.class, () -> ordenService.checkout(1L));
+
+        InOrder orden = inOrder(ordenRepository, carritoClient, itemOrdenRepository);
+        orden.verify(ordenRepository).save(any(Orden.class));
+        orden.verify(carritoClient).reemplazarCarrito(1L, List.of(), 7L);
+        orden.verify(itemOrdenRepository).deleteByOrdenId(100L);
+        orden.verify(ordenRepository).deleteById(100L);
+    }
+
+    @Test
+    void checkout_falloAlGuardar_noTocaElCarrito() {
+        carritoConLineas();
+        catalogoCompleto();
+        when(ordenRepository.save(any(Orden.class))).thenThrow(new IllegalStateException("base caída"));
+
+        IllegalStateException ex = assertThrows(IllegalStateException.class, () -> ordenService.checkout(1L));
+
+        assertEquals("base caída", ex.getMessage());
+        verify(carritoClient, never()).reemplazarCarrito(anyLong(), anyList(), any());
+    }
+
+    @Test
+    void checkout_carritoNoResponde_conservaLaOrden() {
+        carritoConLineas();
+        catalogoCompleto();
+        ordenGuardadaConId(100L);
+        doThrow(new IllegalStateException("tiempo agotado"))
+                .when(carritoClient).reemplazarCarrito(1L, List.of(), 7L);
+
+        // No se sabe si el carrito se vació: descartar la orden podría perder la compra
+        Map<String, Object> resultado = ordenService.checkout(1L);
+
+        assertEquals(100L, ((Orden) resultado.get("orden")).getId());
+        verify(ordenRepository, never()).deleteById(any());
+    }
+
+    @Test
+    void checkout_carritoVacio_error() {
+        when(carritoClient.obtenerCarrito(1L)).thenReturn(Map.of("items", List.of(), "version", 3));
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> ordenService.checkout(1L));
+
+        assertEquals("El carrito está vacío", ex.getMessage());
+        verifyNoInteractions(productoClient);
+    }
+
+    private void catalogoCompleto() {
+        when(productoClient.obtenerProductosPorIds(any())).thenReturn(Map.of(
+                10L, Map.of("nombre", "Mouse", "precio", 120),
+                20L, Map.of("nombre", "Teclado", "precio", 50.5)));
+    }
+
+    private void ordenGuardadaConId(Long id) {
+        when(ordenRepository.save(any(Orden.class))).thenAnswer(invocacion -> {
+            Orden orden = invocacion.getArgument(0);
+            orden.setId(id);
+            return orden;
+        });
+    }
+
+    // El producto 10 aparece en dos líneas
+    private void carritoConLineas() {
+        when(carritoClient.obtenerCarrito(1L)).thenReturn(Map.of(
+                "items", List.of(
+                        Map.of("productoId", 10, "cantidad", 1),
+                        Map.of("productoId", 20, "cantidad", 2),
+                        Map.of("productoId", 10, "cantidad", 2)),
+                "version", 7));
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.carga;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Opciones de la corrida, leídas de argumentos "--clave=valor":
+ *
+ *   --catalogo=http://localhost:8091     --carrito=http://localhost:8092   --orden=http://localhost:8095
+ *   --usuarios-virtuales=100             compradores simultáneos, cada uno en su hilo virtual
+ *   --primer-usuario=1                   el comprador i usa el usuario primer-usuario + i
+ *   --calentamiento=10s --duracion=60s   lo que pasa en el calentamiento no se mide
+ *   --pausa=0ms                          espera de cada comprador entre peticiones
+ *   --mezcla=navegar:60,agregar:25,detalles:10,orden:5
+ *   --stub-usuarios=0                    puerto del servicio de usuarios falso (0 = no se levanta)
+ *   --salida=resultados-carga.csv --etiqueta=sin-etiqueta
+ */
+record Configuracion(URI catalogo,
+                     URI carrito,
+                     URI orden,
+                     int usuariosVirtuales,
+                     long primerUsuario,
+                     Duration calentamiento,
+                     Duration duracion,
+                     Duration pausa,
+                     Mezcla mezcla,
+                     int puertoStubUsuarios,
+                     Path salida,
+                     String etiqueta) {
+
+    static Configuracion desdeArgumentos(String[] args) {
+        Map<String, String> opciones = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Argumento inválido (se espera --clave=valor): " + arg);
+            }
+            int igual = arg.indexOf('=');
+            opciones.put(arg.substring(2, igual), arg.substring(igual + 1));
+        }
+
+        return new Configuracion(
+                URI.create(opciones.getOrDefault("catalogo", "http://localhost:8091")),
+                URI.create(opciones.getOrDefault("carrito", "http://localhost:8092")),
+                URI.create(opciones.getOrDefault("orden", "http://localhost:8095")),
+                Integer.parseInt(opciones.getOrDefault("usuarios-virtuales", "100")),
+                Long.parseLong(opciones.getOrDefault("primer-usuario", "1")),
+                duracion(opciones.getOrDefault("calentamiento", "10s")),
+                duracion(opciones.getOrDefault("duracion", "60s")),
+                duracion(opciones.getOrDefault("pausa", "0ms")),
+                opciones.containsKey("mezcla") ? Mezcla.leer(opciones.get("mezcla")) : Mezcla.porDefecto(),
+                Integer.parseInt(opciones.getOrDefault("stub-usuarios", "0")),
+                Path.of(opciones.getOrDefault("salida", "resultados-carga.csv")),
+                opciones.getOrDefault("etiqueta", "sin-etiqueta"));
+    }
+
+    // Acepta "500ms", "30s" o "2m"
+    static Duration duracion(String texto) {
+        if (texto.endsWith("ms")) return Duration.ofMillis(Long.parseLong(texto.substring(0, texto.length() - 2)));
+        if (texto.endsWith("s")) return Duration.ofSeconds(Long.parseLong(texto.substring(0, texto.length() - 1)));
+        if (texto.endsWith("m")) return Duration.ofMinutes(Long.parseLong(texto.substring(0, texto.length() - 1)));
+        throw new IllegalArgumentException("Duración inválida: " + texto);
+    }
+}
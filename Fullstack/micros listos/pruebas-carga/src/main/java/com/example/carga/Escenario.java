@@ -0,0 +1,128 @@
+package com.example.carga;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Las peticiones de un comprador contra los servicios reales. Cada operación
+ * devuelve el tiempo de la petición que se mide, en nanosegundos; si el servicio
+ * responde con error se lanza IOException.
+ */
+final class Escenario {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final HttpClient http;
+    private final ObjectMapper json = new ObjectMapper();
+    private final Configuracion config;
+    private final List<Long> productos = new ArrayList<>();
+
+    Escenario(HttpClient http, Configuracion config) {
+        this.http = http;
+        this.config = config;
+    }
+
+    // Ids de productos existentes, para que las peticiones apunten a datos reales
+    int cargarProductos(int maximo) throws IOException, InterruptedException {
+        Long despuesDe = null;
+        while (productos.size() < maximo) {
+            String consulta = "/productos/pagina?limite=100" + (despuesDe != null ? "&despuesDe=" + despuesDe : "");
+            JsonNode pagina = json.readTree(enviar(get(config.catalogo().resolve(consulta))).body());
+            for (JsonNode producto : pagina.get("productos")) {
+                productos.add(producto.get("id").asLong());
+            }
+            if (pagina.get("siguiente").isNull()) break;
+            despuesDe = pagina.get("siguiente").asLong();
+        }
+        if (productos.isEmpty()) {
+            throw new IllegalStateException("El catálogo no tiene productos");
+        }
+        return productos.size();
+    }
+
+    long ejecutar(Operacion operacion, long usuarioId, SplittableRandom random) throws IOException, InterruptedException {
+        return switch (operacion) {
+            case NAVEGAR -> {
+                long desde = productos.get(random.nextInt(productos.size())) - 1;
+                yield medir(get(config.catalogo().resolve("/productos/pagina?limite=20&despuesDe=" + desde)));
+            }
+            case AGREGAR -> medir(agregar(usuarioId, productos.get(random.nextInt(productos.size()))));
+            case DETALLES -> medir(get(detalles(usuarioId)));
+            case ORDEN -> ordenar(usuarioId, random);
+        };
+    }
+
+    // Arma la orden con lo que tiene el carrito y después lo vacía, como haría el frontend
+    private long ordenar(long usuarioId, SplittableRandom random) throws IOException, InterruptedException {
+        JsonNode carrito = json.readTree(enviar(get(detalles(usuarioId))).body());
+        if (carrito.get("items").isEmpty()) {
+            enviar(agregar(usuarioId, productos.get(random.nextInt(productos.size()))));
+            carrito = json.readTree(enviar(get(detalles(usuarioId))).body());
+        }
+
+        ObjectNode orden = json.createObjectNode();
+        orden.put("usuarioId", usuarioId);
+        orden.put("total", carrito.get("total").asDouble());
+        ArrayNode items = orden.putArray("items");
+        for (JsonNode item : carrito.get("items")) {
+            items.addObject()
+                    .put("productoId", item.get("productoId").asLong())
+                    .put("productoNombre", item.get("productoNombre").asText())
+                    .put("productoPrecio", item.get("productoPrecio").asDouble())
+                    .put("cantidad", item.get("cantidad").asInt())
+                    .put("imageUrl", item.path("imageUrl").asText(null));
+        }
+
+        long tiempo = medir(post(config.orden().resolve("/ordenes"), orden.toString()));
+        enviar(HttpRequest.newBuilder(config.carrito().resolve("/carrito/usuario/" + usuarioId))
+                .timeout(TIMEOUT).DELETE().build());
+        return tiempo;
+    }
+
+    private HttpRequest agregar(long usuarioId, long productoId) {
+        return post(config.carrito().resolve("/carrito/agregar"),
+                "{\"usuarioId\":" + usuarioId + ",\"productoId\":" + productoId + ",\"cantidad\":1}");
+    }
+
+    private URI detalles(long usuarioId) {
+        return config.carrito().resolve("/carrito/usuario/" + usuarioId + "/detalles");
+    }
+
+    private long medir(HttpRequest peticion) throws IOException, InterruptedException {
+        long inicio = System.nanoTime();
+        enviar(peticion);
+        return System.nanoTime() - inicio;
+    }
+
+    private HttpResponse<byte[]> enviar(HttpRequest peticion) throws IOException, InterruptedException {
+        HttpResponse<byte[]> respuesta = http.send(peticion, HttpResponse.BodyHandlers.ofByteArray());
+        if (respuesta.statusCode() >= 300) {
+            throw new IOException("HTTP " + respuesta.statusCode() + " en " + peticion.method() + " " + peticion.uri());
+        }
+        return respuesta;
+    }
+
+    private static HttpRequest get(URI uri) {
+        return HttpRequest.newBuilder(uri).timeout(TIMEOUT).GET().build();
+    }
+
+    private static HttpRequest post(URI uri, String cuerpo) {
+        return HttpRequest.newBuilder(uri)
+                .timeout(TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(cuerpo))
+                .build();
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.carga;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Latencias de un comprador virtual. Cada hilo escribe en las suyas, sin
+ * sincronizar; al terminar se juntan todas para el reporte.
+ */
+final class Mediciones {
+
+    private final Map<Operacion, Latencias> porOperacion = new EnumMap<>(Operacion.class);
+
+    void registrar(Operacion operacion, long nanos) {
+        porOperacion.computeIfAbsent(operacion, o -> new Latencias()).agregar(nanos);
+    }
+
+    void error(Operacion operacion) {
+        porOperacion.computeIfAbsent(operacion, o -> new Latencias()).errores++;
+    }
+
+    Latencias de(Operacion operacion) {
+        return porOperacion.get(operacion);
+    }
+
+    static final class Latencias {
+
+        long[] valores = new long[1024];
+        int cantidad;
+        long errores;
+
+        void agregar(long nanos) {
+            if (cantidad == valores.length) {
+                valores = Arrays.copyOf(valores, valores.length * 2);
+            }
+            valores[cantidad++] = nanos;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.carga;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Proporción de cada operación. Se escribe como "navegar:60,agregar:25,detalles:10,orden:5";
+ * las operaciones que no aparecen no se ejecutan.
+ */
+final class Mezcla {
+
+    private final Operacion[] operaciones;
+    private final int[] acumulados;
+    private final Map<Operacion, Integer> pesos;
+
+    private Mezcla(Map<Operacion, Integer> pesos) {
+        this.pesos = pesos;
+        this.operaciones = pesos.keySet().toArray(Operacion[]::new);
+        this.acumulados = new int[operaciones.length];
+        int total = 0;
+        for (int i = 0; i < operaciones.length; i++) {
+            total += pesos.get(operaciones[i]);
+            acumulados[i] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("La mezcla tiene que tener al menos una operación con peso");
+        }
+    }
+
+    static Mezcla porDefecto() {
+        Map<Operacion, Integer> pesos = new EnumMap<>(Operacion.class);
+        for (Operacion operacion : Operacion.values()) {
+            pesos.put(operacion, operacion.pesoPorDefecto);
+        }
+        return new Mezcla(pesos);
+    }
+
+    static Mezcla leer(String texto) {
+        Map<Operacion, Integer> pesos = new EnumMap<>(Operacion.class);
+        for (String parte : texto.split(",")) {
+            String[] claveValor = parte.trim().split(":");
+            if (claveValor.length != 2) {
+                throw new IllegalArgumentException("Mezcla inválida: " + parte);
+            }
+            pesos.put(Operacion.valueOf(claveValor[0].trim().toUpperCase()), Integer.parseInt(claveValor[1].trim()));
+        }
+        return new Mezcla(pesos);
+    }
+
+    Operacion elegir(SplittableRandom random) {
+        int valor = random.nextInt(acumulados[acumulados.length - 1]);
+        for (int i = 0; i < acumulados.length; i++) {
+            if (valor < acumulados[i]) return operaciones[i];
+        }
+        return operaciones[operaciones.length - 1];
+    }
+
+    @Override
+    public String toString() {
+        return pesos.toString();
+    }
+}
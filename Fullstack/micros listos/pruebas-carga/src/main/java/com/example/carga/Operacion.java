@@ -0,0 +1,20 @@
+package com.example.carga;
+
+/**
+ * Peticiones que hace cada comprador virtual, con su peso por defecto en la mezcla.
+ */
+enum Operacion {
+
+    NAVEGAR("GET /productos/pagina", 60),
+    AGREGAR("POST /carrito/agregar", 25),
+    DETALLES("GET /carrito/usuario/{id}/detalles", 10),
+    ORDEN("POST /ordenes", 5);
+
+    final String descripcion;
+    final int pesoPorDefecto;
+
+    Operacion(String descripcion, int pesoPorDefecto) {
+        this.descripcion = descripcion;
+        this.pesoPorDefecto = pesoPorDefecto;
+    }
+}
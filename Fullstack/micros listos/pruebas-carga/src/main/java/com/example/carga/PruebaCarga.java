@@ -0,0 +1,76 @@
+package com.example.carga;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Prueba de carga de ciclo cerrado: cada comprador virtual hace una petición,
+ * espera la respuesta (y la pausa configurada) y elige la siguiente según la
+ * mezcla. Al terminar imprime peticiones por segundo y p50/p90/p99 por operación.
+ */
+public final class PruebaCarga {
+
+    private PruebaCarga() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Configuracion config = Configuracion.desdeArgumentos(args);
+        StubUsuarios stub = config.puertoStubUsuarios() > 0 ? StubUsuarios.iniciar(config.puertoStubUsuarios()) : null;
+
+        try (HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(2))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build()) {
+
+            Escenario escenario = new Escenario(http, config);
+            int productos = escenario.cargarProductos(1000);
+            System.out.printf("%d compradores, %d productos, mezcla %s, calentamiento %s, medición %s%n",
+                    config.usuariosVirtuales(), productos, config.mezcla(), config.calentamiento(), config.duracion());
+
+            long inicioMedicion = System.nanoTime() + config.calentamiento().toNanos();
+            long fin = inicioMedicion + config.duracion().toNanos();
+
+            List<Mediciones> mediciones = new ArrayList<>();
+            try (ExecutorService compradores = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < config.usuariosVirtuales(); i++) {
+                    Mediciones propias = new Mediciones();
+                    mediciones.add(propias);
+                    long usuarioId = config.primerUsuario() + i;
+                    SplittableRandom random = new SplittableRandom(42 + i);
+                    compradores.submit(() -> comprar(escenario, config, usuarioId, random, propias, inicioMedicion, fin));
+                }
+            }
+
+            Reporte reporte = new Reporte(mediciones, config.duracion());
+            reporte.imprimir();
+            reporte.guardar(config.salida(), config.etiqueta());
+            System.out.printf("%nResultados agregados a %s (etiqueta \"%s\")%n", config.salida(), config.etiqueta());
+        } finally {
+            if (stub != null) stub.close();
+        }
+    }
+
+    private static Void comprar(Escenario escenario, Configuracion config, long usuarioId, SplittableRandom random,
+                                Mediciones mediciones, long inicioMedicion, long fin) throws InterruptedException {
+        long ahora;
+        while ((ahora = System.nanoTime()) < fin) {
+            Operacion operacion = config.mezcla().elegir(random);
+            boolean medir = ahora >= inicioMedicion;
+            try {
+                long nanos = escenario.ejecutar(operacion, usuarioId, random);
+                if (medir) mediciones.registrar(operacion, nanos);
+            } catch (IOException e) {
+                if (medir) mediciones.error(operacion);
+            }
+            if (!config.pausa().isZero()) Thread.sleep(config.pausa());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.carga;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Junta las mediciones de todos los compradores y calcula rendimiento y percentiles.
+ */
+final class Reporte {
+
+    private static final String ENCABEZADO_CSV = "fecha,etiqueta,operacion,peticiones,errores,rps,p50_ms,p90_ms,p99_ms,max_ms";
+
+    private final List<Fila> filas = new ArrayList<>();
+
+    Reporte(List<Mediciones> mediciones, Duration duracion) {
+        double segundos = duracion.toNanos() / 1e9;
+        for (Operacion operacion : Operacion.values()) {
+            long errores = 0;
+            int cantidad = 0;
+            for (Mediciones m : mediciones) {
+                Mediciones.Latencias latencias = m.de(operacion);
+                if (latencias == null) continue;
+                errores += latencias.errores;
+                cantidad += latencias.cantidad;
+            }
+            if (cantidad == 0 && errores == 0) continue;
+
+            long[] todas = new long[cantidad];
+            int posicion = 0;
+            for (Mediciones m : mediciones) {
+                Mediciones.Latencias latencias = m.de(operacion);
+                if (latencias == null) continue;
+                System.arraycopy(latencias.valores, 0, todas, posicion, latencias.cantidad);
+                posicion += latencias.cantidad;
+            }
+            Arrays.sort(todas);
+
+            filas.add(new Fila(operacion, cantidad, errores, cantidad / segundos,
+                    percentil(todas, 50), percentil(todas, 90), percentil(todas, 99),
+                    cantidad > 0 ? todas[cantidad - 1] / 1e6 : 0));
+        }
+    }
+
+    // Percentil por rango más cercano, en milisegundos
+    static double percentil(long[] ordenadas, double p) {
+        if (ordenadas.length == 0) return 0;
+        int indice = (int) Math.ceil(p / 100 * ordenadas.length) - 1;
+        return ordenadas[Math.max(0, indice)] / 1e6;
+    }
+
+    void imprimir() {
+        System.out.printf(Locale.ROOT, "%n%-36s %10s %8s %10s %9s %9s %9s %9s%n",
+                "operación", "peticiones", "errores", "rps", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        for (Fila fila : filas) {
+            System.out.printf(Locale.ROOT, "%-36s %10d %8d %10.1f %9.2f %9.2f %9.2f %9.2f%n",
+                    fila.operacion().descripcion, fila.peticiones(), fila.errores(), fila.rps(),
+                    fila.p50(), fila.p90(), fila.p99(), fila.max());
+        }
+    }
+
+    // Agrega una línea por operación al CSV, para comparar corridas entre cambios
+    void guardar(Path archivo, String etiqueta) throws IOException {
+        List<String> lineas = new ArrayList<>();
+        if (!Files.exists(archivo)) lineas.add(ENCABEZADO_CSV);
+        String fecha = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        for (Fila fila : filas) {
+            lineas.add(String.format(Locale.ROOT, "%s,%s,%s,%d,%d,%.1f,%.3f,%.3f,%.3f,%.3f",
+                    fecha, etiqueta, fila.operacion().name().toLowerCase(), fila.peticiones(), fila.errores(),
+                    fila.rps(), fila.p50(), fila.p90(), fila.p99(), fila.max()));
+        }
+        Files.write(archivo, lineas, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private record Fila(Operacion operacion, int peticiones, long errores, double rps,
+                        double p50, double p90, double p99, double max) {}
+}
@@ -0,0 +1,54 @@
+package com.example.carga;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * Servicio de usuarios falso: GET /usuarios/{id} responde siempre un usuario con ese id.
+ * Evita tener que levantar usuarios y cargarle miles de cuentas para la prueba.
+ */
+final class StubUsuarios implements AutoCloseable {
+
+    private final HttpServer servidor;
+
+    private StubUsuarios(HttpServer servidor) {
+        this.servidor = servidor;
+    }
+
+    static StubUsuarios iniciar(int puerto) throws IOException {
+        HttpServer servidor = HttpServer.create(new InetSocketAddress(puerto), 0);
+        servidor.createContext("/usuarios/", StubUsuarios::responder);
+        servidor.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        servidor.start();
+        return new StubUsuarios(servidor);
+    }
+
+    private static void responder(HttpExchange intercambio) throws IOException {
+        try (intercambio) {
+            String id = intercambio.getRequestURI().getPath().substring("/usuarios/".length());
+            if (!"GET".equals(intercambio.getRequestMethod()) || !id.matches("\\d+")) {
+                intercambio.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            byte[] cuerpo = ("{\"id\":" + id + ",\"nombre\":\"Usuario " + id + "\",\"email\":\"usuario" + id
+                    + "@carga.test\",\"rol\":\"CLIENTE\"}").getBytes(StandardCharsets.UTF_8);
+            intercambio.getResponseHeaders().set("Content-Type", "application/json");
+            intercambio.sendResponseHeaders(200, cuerpo.length);
+            try (OutputStream salida = intercambio.getResponseBody()) {
+                salida.write(cuerpo);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        servidor.stop(0);
+    }
+}